@@ -0,0 +1,242 @@
+package com.mrdinner.bench;
+
+import static com.mrdinner.bench.BenchSupport.*;
+
+import com.mrdinner.domain.common.Address;
+import com.mrdinner.domain.common.Money;
+import com.mrdinner.domain.common.MoneyAccumulator;
+import com.mrdinner.domain.customer.Customer;
+import com.mrdinner.domain.inventory.StockItem;
+import com.mrdinner.domain.menu.FrenchDinner;
+import com.mrdinner.domain.menu.ItemType;
+import com.mrdinner.domain.menu.MenuItem;
+import com.mrdinner.domain.order.Order;
+import com.mrdinner.domain.order.OrderStatus;
+import com.mrdinner.service.DeliveryService;
+import com.mrdinner.service.InventoryService;
+import com.mrdinner.service.OrderService;
+import com.mrdinner.service.PricingService;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Batch order intake: createOrders and confirmOrders must create, price and
+ * confirm the same orders, and take the same stock, as the single-order
+ * methods called in a loop, and a batch member short of stock must fail
+ * alone. Also times both ways of taking a burst of orders.
+ *
+ * createOrders prices each order once instead of after every line, and
+ * confirmOrders takes the order locks once. Each member still reserves its
+ * own stock rather than the batch reserving one aggregate, so one short
+ * order cannot fail the rest; confirming a batch therefore does about the
+ * same work as confirming its orders one at a time.
+ */
+public class BatchOrderBench {
+    private static final int ORDERS = 20_000;
+    private static final int ROUNDS = 4;
+    private static final int STOCK = 10_000_000;
+
+    public static void main(String[] args) throws Exception {
+        run();
+    }
+
+    static void run() {
+        List<OrderService.OrderRequest> requests = requests();
+        for (int round = 0; round < ROUNDS; round++) {
+            // Alternate which way goes first, so neither always runs on a warmer JVM
+            Intake looped = new Intake();
+            Intake batched = new Intake();
+            if (round % 2 == 0) {
+                takeLooped(looped, requests);
+                takeBatched(batched, requests);
+            } else {
+                takeBatched(batched, requests);
+                takeLooped(looped, requests);
+            }
+
+            check(batched.orders.size() == ORDERS, "batch confirmed %d of %d orders", batched.orders.size(), ORDERS);
+            check(total(batched.orders).equals(total(looped.orders)), "batch orders total %s, looped orders %s",
+                total(batched.orders), total(looped.orders));
+            for (int i = 0; i < ORDERS; i++) {
+                Order batch = batched.orders.get(i);
+                Order loop = looped.orders.get(i);
+                check(batch.getStatus() == OrderStatus.CONFIRMED && batch.getTotalAmount().equals(loop.getTotalAmount()),
+                    "batch order %d is %s for %s, looped order is %s", i, batch.getStatus(),
+                    batch.getTotalAmount(), loop.getTotalAmount());
+            }
+            for (int s = 0; s < looped.kitchen.stock.length; s++) {
+                StockItem loop = looped.kitchen.stock[s];
+                StockItem batch = batched.kitchen.stock[s];
+                check(batch.getCurrentQuantity() == loop.getCurrentQuantity(), "%s: batch left %d, loop left %d",
+                    loop.getItemName(), batch.getCurrentQuantity(), loop.getCurrentQuantity());
+            }
+            report("%d orders: create loop %.0f ns, batch %.0f ns (%.1fx); confirm loop %.0f ns, batch %.0f ns (%.1fx)",
+                ORDERS, nanosPerOp(looped.createNanos, ORDERS), nanosPerOp(batched.createNanos, ORDERS),
+                (double) looped.createNanos / batched.createNanos, nanosPerOp(looped.confirmNanos, ORDERS),
+                nanosPerOp(batched.confirmNanos, ORDERS), (double) looped.confirmNanos / batched.confirmNanos);
+        }
+        checkShortOrderFailsAlone();
+    }
+
+    private static void takeLooped(Intake intake, List<OrderService.OrderRequest> requests) {
+        OrderService orderService = intake.kitchen.orderService;
+        List<OrderService.OrderRequest> translated = intake.kitchen.translate(requests);
+        System.gc();
+        long start = System.nanoTime();
+        for (OrderService.OrderRequest request : translated) {
+            Order order = orderService.createOrder(request.getCustomer(), request.getDeliveryAddress());
+            for (OrderService.OrderRequest.Line line : request.getLines()) {
+                if (line.getMenuItem() != null) {
+                    orderService.addMenuItemToOrder(order, line.getMenuItem(), line.getQuantity());
+                } else {
+                    orderService.addDinnerToOrder(order, line.getDinner(), line.getQuantity());
+                }
+            }
+            intake.orders.add(order);
+        }
+        intake.createNanos = System.nanoTime() - start;
+        System.gc();
+        start = System.nanoTime();
+        for (Order order : intake.orders) {
+            orderService.confirmOrder(order);
+        }
+        intake.confirmNanos = System.nanoTime() - start;
+    }
+
+    private static void takeBatched(Intake intake, List<OrderService.OrderRequest> requests) {
+        OrderService orderService = intake.kitchen.orderService;
+        List<OrderService.OrderRequest> translated = intake.kitchen.translate(requests);
+        System.gc();
+        long start = System.nanoTime();
+        OrderService.OrderBatchResult created = orderService.createOrders(translated);
+        intake.createNanos = System.nanoTime() - start;
+        check(created.isAllSuccessful(), "batch created %s", created);
+        List<Order> orders = created.getSuccessfulOrders();
+        System.gc();
+        start = System.nanoTime();
+        OrderService.OrderBatchResult confirmed = orderService.confirmOrders(orders);
+        intake.confirmNanos = System.nanoTime() - start;
+        intake.orders.addAll(confirmed.getSuccessfulOrders());
+    }
+
+    private static void checkShortOrderFailsAlone() {
+        Kitchen kitchen = new Kitchen();
+        StockItem beef = kitchen.stock[0];
+        int available = beef.getCurrentQuantity();
+        Customer customer = customer(31);
+        Address address = address();
+        List<OrderService.OrderRequest> requests = Arrays.asList(
+            new OrderService.OrderRequest(customer, address).addMenuItem(kitchen.menu[0], 1),
+            new OrderService.OrderRequest(customer, address).addMenuItem(kitchen.menu[0], available),
+            new OrderService.OrderRequest(customer, address).addMenuItem(kitchen.menu[0], 2));
+        List<Order> orders = kitchen.orderService.createOrders(requests).getSuccessfulOrders();
+        OrderService.OrderBatchResult result = kitchen.orderService.confirmOrders(orders);
+        check(result.getSuccessCount() == 2 && !result.getResults().get(1).isSuccessful()
+                && orders.get(1).getStatus() == OrderStatus.PENDING,
+            "a short order in the batch gave %s", result);
+        // Dish 0 takes two beef
+        check(beef.getCurrentQuantity() == available - 2 * 3, "beef left %d, expected %d",
+            beef.getCurrentQuantity(), available - 2 * 3);
+    }
+
+    private static List<OrderService.OrderRequest> requests() {
+        Random random = new Random(3);
+        Kitchen template = new Kitchen();
+        Customer[] customers = new Customer[50];
+        for (int i = 0; i < customers.length; i++) {
+            customers[i] = customer(100 + i);
+        }
+        Address address = address();
+        List<OrderService.OrderRequest> requests = new ArrayList<>(ORDERS);
+        for (int i = 0; i < ORDERS; i++) {
+            OrderService.OrderRequest request = new OrderService.OrderRequest(customers[i % customers.length], address);
+            int lines = 1 + random.nextInt(4);
+            for (int l = 0; l < lines; l++) {
+                if (random.nextInt(5) == 0) {
+                    request.addDinner(template.dinner, 1 + random.nextInt(2));
+                } else {
+                    request.addMenuItem(template.menu[random.nextInt(template.menu.length)], 1 + random.nextInt(3));
+                }
+            }
+            requests.add(request);
+        }
+        return requests;
+    }
+
+    private static Money total(List<Order> orders) {
+        MoneyAccumulator total = new MoneyAccumulator("USD");
+        for (Order order : orders) {
+            total.add(order.getTotalAmount(), 1);
+        }
+        return total.toMoney();
+    }
+
+    /**
+     * Orders taken one way, with how long creating and confirming them took
+     */
+    private static final class Intake {
+        private final Kitchen kitchen = new Kitchen();
+        private final List<Order> orders = new ArrayList<>(ORDERS);
+        private long createNanos;
+        private long confirmNanos;
+    }
+
+    /**
+     * One service stack with its own menu, recipes and stock, so both ways
+     * of taking orders start from the same state
+     */
+    private static final class Kitchen {
+        private final InventoryService inventory = new InventoryService();
+        private final OrderService orderService;
+        private final StockItem[] stock = new StockItem[3];
+        private final MenuItem[] menu = new MenuItem[8];
+        private final FrenchDinner dinner;
+
+        Kitchen() {
+            stock[0] = stock("Beef");
+            stock[1] = stock("Bread");
+            stock[2] = stock("Wine");
+            for (int i = 0; i < menu.length; i++) {
+                menu[i] = new MenuItem("Dish " + i, "Bench dish", Money.ofMinor(1600 + i * 150L, "USD"),
+                    ItemType.MAIN_COURSE);
+                inventory.defineRecipe(menu[i], Collections.singletonMap(stock[i % 2], 2));
+            }
+            dinner = new FrenchDinner("French Dinner", "Bench dinner", Money.of(30, "USD"));
+            inventory.defineRecipe(dinner, Collections.singletonMap(stock[2], 1));
+            orderService = new OrderService(new PricingService(), new DeliveryService(), inventory);
+        }
+
+        /**
+         * The same requests against this kitchen's menu
+         */
+        List<OrderService.OrderRequest> translate(List<OrderService.OrderRequest> requests) {
+            List<OrderService.OrderRequest> translated = new ArrayList<>(requests.size());
+            for (OrderService.OrderRequest request : requests) {
+                OrderService.OrderRequest copy = new OrderService.OrderRequest(request.getCustomer(),
+                    request.getDeliveryAddress());
+                for (OrderService.OrderRequest.Line line : request.getLines()) {
+                    if (line.getMenuItem() != null) {
+                        copy.addMenuItem(menu[indexOf(line.getMenuItem())], line.getQuantity());
+                    } else {
+                        copy.addDinner(dinner, line.getQuantity());
+                    }
+                }
+                translated.add(copy);
+            }
+            return translated;
+        }
+
+        private int indexOf(MenuItem item) {
+            return Integer.parseInt(item.getName().substring("Dish ".length()));
+        }
+
+        private StockItem stock(String name) {
+            return inventory.addStockItem(name, "Bench stock", "Bench", "unit", STOCK, 0, STOCK,
+                Money.of(1, "USD"), LocalDate.now().plusDays(30), "Bench supplier", "Bench shelf");
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.mrdinner.bench;
+
+import com.mrdinner.domain.common.Address;
+import com.mrdinner.domain.customer.Customer;
+
+/**
+ * Checks, timing and fixtures shared by the benchmark harnesses
+ */
+final class BenchSupport {
+    private BenchSupport() {
+    }
+
+    /**
+     * Fail the running harness unless {@code condition} holds
+     */
+    static void check(boolean condition, String message, Object... args) {
+        if (!condition) {
+            throw new IllegalStateException(String.format(message, args));
+        }
+    }
+
+    static void report(String format, Object... args) {
+        System.out.printf("  " + format + "%n", args);
+    }
+
+    static double nanosPerOp(long elapsedNanos, long operations) {
+        return operations > 0 ? (double) elapsedNanos / operations : 0;
+    }
+
+    static int threads() {
+        return Math.max(4, Runtime.getRuntime().availableProcessors());
+    }
+
+    static Address address() {
+        return new Address("1 Main St", "New York", "NY", "10001", "USA");
+    }
+
+    static Customer customer(int number) {
+        return new Customer("Customer " + number, "customer" + number + "@example.com",
+            String.format("555%07d", number), address());
+    }
+}
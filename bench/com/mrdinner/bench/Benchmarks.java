@@ -0,0 +1,60 @@
+package com.mrdinner.bench;
+
+import com.mrdinner.infrastructure.EventLogger;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs the benchmark harnesses. Each harness checks the invariants of the
+ * code it exercises, failing with an exception if one is broken, and prints
+ * its timings. Pass harness names to run only those; the exit status is 1 if
+ * any harness failed.
+ */
+public class Benchmarks {
+    interface Harness {
+        void run() throws Exception;
+    }
+
+    private static final Map<String, Harness> HARNESSES = new LinkedHashMap<>();
+
+    static {
+        HARNESSES.put("repository", OrderRepositoryBench::run);
+        HARNESSES.put("locking", OrderLockingBench::run);
+        HARNESSES.put("totals", OrderTotalsBench::run);
+        HARNESSES.put("journal", OrderJournalBench::run);
+        HARNESSES.put("batch", BatchOrderBench::run);
+        HARNESSES.put("ids", IdGeneratorBench::run);
+        HARNESSES.put("money", MoneyBench::run);
+        HARNESSES.put("pricing", PricingRulesBench::run);
+        HARNESSES.put("promo", PromoCodeBench::run);
+        HARNESSES.put("stock", StockReservationBench::run);
+    }
+
+    public static void main(String[] args) {
+        EventLogger.getLogger().setLevel(EventLogger.Level.WARN);
+        Iterable<String> names = args.length > 0 ? Arrays.asList(args) : HARNESSES.keySet();
+        int failed = 0;
+        for (String name : names) {
+            Harness harness = HARNESSES.get(name);
+            if (harness == null) {
+                System.out.println("Unknown harness: " + name + ", expected one of " + HARNESSES.keySet());
+                failed++;
+                continue;
+            }
+            System.out.println("[" + name + "]");
+            long start = System.nanoTime();
+            try {
+                harness.run();
+                System.out.printf("  passed in %.0f ms%n", (System.nanoTime() - start) / 1e6);
+            } catch (Exception | Error e) {
+                System.out.println("  FAILED: " + e);
+                failed++;
+            }
+        }
+        if (failed > 0) {
+            System.out.println(failed + " harness(es) failed");
+            System.exit(1);
+        }
+    }
+}
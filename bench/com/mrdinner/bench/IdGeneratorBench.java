@@ -0,0 +1,111 @@
+package com.mrdinner.bench;
+
+import static com.mrdinner.bench.BenchSupport.*;
+
+import com.mrdinner.domain.common.Ids;
+import com.mrdinner.domain.common.SnowflakeIdGenerator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Snowflake IDs: threads drawing from one generator must never see a
+ * duplicate, each thread's IDs must sort in the order it drew them, and the
+ * encoded form must keep that order and the issue time. Also times the
+ * shared generator against random UUIDs.
+ */
+public class IdGeneratorBench {
+    private static final int IDS_PER_THREAD = 200_000;
+    private static final int TIMED_IDS = 1_000_000;
+
+    public static void main(String[] args) throws Exception {
+        run();
+    }
+
+    static void run() throws Exception {
+        checkConcurrentUniqueness();
+        checkEncoding();
+        timeGeneration();
+    }
+
+    private static void checkConcurrentUniqueness() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(7);
+        int threads = threads();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<long[]>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    long[] ids = new long[IDS_PER_THREAD];
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = generator.nextLong();
+                        check(i == 0 || ids[i] > ids[i - 1], "ID %d went backwards within a thread", ids[i]);
+                    }
+                    return ids;
+                }));
+            }
+            start.countDown();
+            long[] all = new long[threads * IDS_PER_THREAD];
+            int filled = 0;
+            for (Future<long[]> future : futures) {
+                long[] ids = future.get();
+                System.arraycopy(ids, 0, all, filled, ids.length);
+                filled += ids.length;
+            }
+            Arrays.sort(all);
+            for (int i = 1; i < all.length; i++) {
+                check(all[i] != all[i - 1], "duplicate ID %d", all[i]);
+            }
+            for (long id : all) {
+                check((id & SnowflakeIdGenerator.MAX_NODE_ID) == 7, "ID %d lost its node number", id);
+            }
+            report("%d threads drew %d unique IDs", threads, all.length);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void checkEncoding() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1);
+        long before = System.currentTimeMillis();
+        long previous = generator.nextLong();
+        String previousText = SnowflakeIdGenerator.encode(previous);
+        for (int i = 0; i < 100_000; i++) {
+            long id = generator.nextLong();
+            String text = SnowflakeIdGenerator.encode(id);
+            check(text.compareTo(previousText) > 0, "%s does not sort after %s", text, previousText);
+            previousText = text;
+            previous = id;
+        }
+        long issued = SnowflakeIdGenerator.timestampOf(previous);
+        // Bursts may run the sequence slightly ahead of the clock
+        check(issued >= before && issued <= System.currentTimeMillis() + 1_000,
+            "last ID claims to be issued at %d, generated from %d", issued, before);
+    }
+
+    private static void timeGeneration() {
+        long sink = 0;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < TIMED_IDS; i++) {
+                sink += Ids.next().length();
+            }
+            long snowflake = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < TIMED_IDS; i++) {
+                sink += UUID.randomUUID().toString().length();
+            }
+            long uuid = System.nanoTime() - start;
+            report("Ids.next %.0f ns/id, UUID.randomUUID %.0f ns/id",
+                nanosPerOp(snowflake, TIMED_IDS), nanosPerOp(uuid, TIMED_IDS));
+        }
+        check(sink > 0, "no IDs generated");
+    }
+}
@@ -0,0 +1,166 @@
+package com.mrdinner.bench;
+
+import static com.mrdinner.bench.BenchSupport.*;
+
+import com.mrdinner.domain.common.Money;
+import com.mrdinner.domain.common.MoneyAccumulator;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Scaled-long Money: every operation must give the same result as the same
+ * operation on BigDecimal rounded half-up to cents, including multipliers too
+ * wide for the long fast path; threads interning the same new currencies must
+ * agree on their codes; and the allocation-free accumulator must match a
+ * chain of adds. Also times arithmetic against BigDecimal.
+ */
+public class MoneyBench {
+    private static final int CASES = 500_000;
+    private static final int TIMED_OPS = 2_000_000;
+
+    public static void main(String[] args) throws Exception {
+        run();
+    }
+
+    static void run() throws Exception {
+        checkAgainstBigDecimal();
+        checkCurrencyInterning();
+        checkAccumulator();
+        timeArithmetic();
+    }
+
+    private static void checkAgainstBigDecimal() {
+        Random random = new Random(14);
+        for (int i = 0; i < CASES; i++) {
+            long a = random.nextInt(10_000_000);
+            long b = random.nextInt(10_000_000);
+            Money x = Money.ofMinor(a, "USD");
+            Money y = Money.ofMinor(b, "USD");
+            BigDecimal bx = BigDecimal.valueOf(a, 2);
+            BigDecimal by = BigDecimal.valueOf(b, 2);
+
+            expect(x.add(y), bx.add(by), "add", x, y);
+            if (a >= b) {
+                expect(x.subtract(y), bx.subtract(by), "subtract", x, y);
+            } else {
+                checkRejected(x, y);
+            }
+            check(Integer.signum(x.compareTo(y)) == bx.compareTo(by), "compare %s with %s", x, y);
+
+            BigDecimal multiplier = BigDecimal.valueOf(random.nextInt(2_000_000), random.nextInt(7));
+            expect(x.multiply(multiplier), bx.multiply(multiplier), "multiply by " + multiplier, x, y);
+            long quantity = random.nextInt(1_000);
+            expect(x.multiply(quantity), bx.multiply(BigDecimal.valueOf(quantity)), "multiply by " + quantity, x, y);
+        }
+
+        // Too many digits for the long path; must fall back to BigDecimal
+        Money large = Money.ofMinor(900_000_000_000_000L, "USD");
+        BigDecimal wide = new BigDecimal("1.0000000000000000001");
+        expect(large.multiply(wide), large.getAmount().multiply(wide), "wide multiply", large, large);
+        report("%d random cases matched BigDecimal", CASES);
+    }
+
+    private static void expect(Money actual, BigDecimal exact, String operation, Money x, Money y) {
+        BigDecimal expected = exact.setScale(2, RoundingMode.HALF_UP);
+        check(actual.getAmount().equals(expected) && actual.getCurrency().equals("USD"),
+            "%s on %s and %s gave %s, expected %s", operation, x, y, actual, expected);
+    }
+
+    private static void checkRejected(Money x, Money y) {
+        try {
+            x.subtract(y);
+        } catch (IllegalArgumentException expected) {
+            return;
+        }
+        throw new IllegalStateException("subtracting " + y + " from " + x + " did not fail");
+    }
+
+    private static void checkCurrencyInterning() throws Exception {
+        int threads = threads();
+        String[] currencies = new String[64];
+        for (int i = 0; i < currencies.length; i++) {
+            currencies[i] = "B" + (char) ('A' + i / 26) + (char) ('A' + i % 26);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<int[]>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                boolean lowerCase = t % 2 == 1;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    int[] codes = new int[currencies.length];
+                    for (int i = 0; i < codes.length; i++) {
+                        String text = lowerCase ? " " + currencies[i].toLowerCase() : currencies[i];
+                        codes[i] = Money.zero(text).getCurrencyCode();
+                    }
+                    return codes;
+                }));
+            }
+            start.countDown();
+            int[] first = futures.get(0).get();
+            for (Future<int[]> future : futures) {
+                int[] codes = future.get();
+                for (int i = 0; i < codes.length; i++) {
+                    check(codes[i] == first[i], "threads disagree on the code for %s", currencies[i]);
+                    check(Money.currencyName(codes[i]).equals(currencies[i]), "code %d names %s, expected %s",
+                        codes[i], Money.currencyName(codes[i]), currencies[i]);
+                }
+            }
+            for (int i = 1; i < first.length; i++) {
+                check(first[i] != first[i - 1], "%s and %s share a code", currencies[i - 1], currencies[i]);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void checkAccumulator() {
+        Random random = new Random(41);
+        MoneyAccumulator accumulator = new MoneyAccumulator("USD");
+        Money sum = Money.zero("USD");
+        for (int i = 0; i < 100_000; i++) {
+            Money amount = Money.ofMinor(random.nextInt(100_000), "USD");
+            int quantity = 1 + random.nextInt(4);
+            accumulator.add(amount, quantity);
+            sum = sum.add(amount.multiply(quantity));
+        }
+        check(accumulator.toMoney().equals(sum), "accumulator gave %s, adds gave %s", accumulator.toMoney(), sum);
+    }
+
+    private static void timeArithmetic() {
+        Money[] amounts = new Money[1024];
+        BigDecimal[] decimals = new BigDecimal[amounts.length];
+        Random random = new Random(7);
+        for (int i = 0; i < amounts.length; i++) {
+            amounts[i] = Money.ofMinor(random.nextInt(100_000), "USD");
+            decimals[i] = amounts[i].getAmount();
+        }
+        BigDecimal taxRate = new BigDecimal("0.08");
+        long sink = 0;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < TIMED_OPS; i++) {
+                Money amount = amounts[i & 1023];
+                sink += amount.add(amount.multiply(taxRate)).getMinorUnits();
+            }
+            long money = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < TIMED_OPS; i++) {
+                BigDecimal amount = decimals[i & 1023];
+                sink += amount.add(amount.multiply(taxRate).setScale(2, RoundingMode.HALF_UP)).unscaledValue().longValue();
+            }
+            long decimal = System.nanoTime() - start;
+            report("amount + tax: Money %.1f ns, BigDecimal %.1f ns",
+                nanosPerOp(money, TIMED_OPS), nanosPerOp(decimal, TIMED_OPS));
+        }
+        check(sink != 0, "no arithmetic done");
+    }
+}
@@ -0,0 +1,370 @@
+package com.mrdinner.bench;
+
+import static com.mrdinner.bench.BenchSupport.*;
+
+import com.mrdinner.domain.common.Address;
+import com.mrdinner.domain.common.Money;
+import com.mrdinner.domain.customer.Customer;
+import com.mrdinner.domain.delivery.Delivery;
+import com.mrdinner.domain.inventory.StockItem;
+import com.mrdinner.domain.menu.FrenchDinner;
+import com.mrdinner.domain.menu.ItemType;
+import com.mrdinner.domain.menu.MenuCatalog;
+import com.mrdinner.domain.menu.MenuItem;
+import com.mrdinner.domain.order.ArchivedOrder;
+import com.mrdinner.domain.order.Order;
+import com.mrdinner.domain.order.OrderItem;
+import com.mrdinner.domain.order.OrderStatus;
+import com.mrdinner.domain.payment.PaymentMethod;
+import com.mrdinner.domain.staff.Courier;
+import com.mrdinner.infrastructure.EventBus;
+import com.mrdinner.infrastructure.OrderArchive;
+import com.mrdinner.infrastructure.OrderJournal;
+import com.mrdinner.service.DeliveryService;
+import com.mrdinner.service.InventoryService;
+import com.mrdinner.service.OrderService;
+import com.mrdinner.service.PricingService;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Order journal: orders taken through every status, delivery and refund
+ * included, are appended as about a million records across many chunks, then
+ * replayed into a fresh service. Each restored order must match the original
+ * in status, status time, items and totals, link to the live menu objects,
+ * and leave the transition counters untouched; every finished order must
+ * then be archivable from the restored service. A change whose record cannot
+ * be appended must not be applied, and compaction must move the journal to a
+ * new generation without the archived orders, or leave it usable if it fails.
+ * Archive segments appended with interleaved order times must merge without
+ * losing, changing or misordering a row.
+ */
+public class OrderJournalBench {
+    private static final int ORDERS = 160_000;
+    private static final int RECORDS = 1_000_000;
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final int ARCHIVED = 80_000;
+
+    public static void main(String[] args) throws Exception {
+        run();
+    }
+
+    static void run() throws Exception {
+        Path directory = Files.createTempDirectory("mrdinner-journal-bench");
+        try {
+            runIn(directory.resolve("orders.journal"), directory.resolve("archive"));
+            checkFailedAppend(directory.resolve("closed.journal"));
+            checkCompaction(directory);
+            checkArchiveMerge(directory.resolve("merge-archive"));
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(OrderJournalBench::deleteQuietly);
+            }
+        }
+    }
+
+    private static void runIn(Path file, Path archiveDirectory) {
+        MenuCatalog catalog = new MenuCatalog();
+        MenuItem[] menu = new MenuItem[50];
+        for (int i = 0; i < menu.length; i++) {
+            menu[i] = new MenuItem("Item " + i, "Bench item", Money.ofMinor(1500 + i * 25L, "USD"), ItemType.MAIN_COURSE);
+            catalog.addMenuItem(menu[i]);
+        }
+        FrenchDinner dinner = new FrenchDinner("French Dinner", "Bench dinner", Money.of(30, "USD"));
+        catalog.addDinner(dinner);
+
+        OrderJournal journal = new OrderJournal(file, CHUNK_SIZE, OrderJournal.DEFAULT_SYNC_INTERVAL_MILLIS);
+        DeliveryService deliveryService = new DeliveryService();
+        OrderService orderService = new OrderService(new PricingService(), deliveryService,
+            new InventoryService(), journal);
+        Courier courier = new Courier("Bench", "Courier", "courier@example.com", "5550000001", address(),
+            Money.of(15, "USD"), "Car", "DL000001");
+        Customer customer = customer(5);
+        Address address = address();
+        List<Order> orders = new ArrayList<>(ORDERS);
+        long start = System.nanoTime();
+        for (int i = 0; i < ORDERS; i++) {
+            Order order = orderService.createOrder(customer, address);
+            orderService.addMenuItemToOrder(order, menu[i % menu.length], 1 + i % 3);
+            if (i % 10 == 0) {
+                orderService.addDinnerToOrder(order, dinner, 1);
+            }
+            if (i % 7 == 0) {
+                orderService.addMenuItemToOrder(order, menu[(i + 1) % menu.length], 1);
+                List<OrderItem> items = order.getOrderItems();
+                orderService.removeItemFromOrder(order, items.get(items.size() - 1));
+            }
+            advance(orderService, deliveryService, courier, order, i % 7);
+            orders.add(order);
+        }
+        long written = System.nanoTime() - start;
+        long records = journal.getRecordCount();
+        journal.close();
+        check(records >= RECORDS, "only %d records journaled, expected at least %d", records, RECORDS);
+        report("journaled %d records for %d orders: %.0f ns/record including the service work",
+            records, ORDERS, nanosPerOp(written, records));
+
+        long transitionsBefore = Order.stateMachine().getTotalTransitionCount();
+        start = System.nanoTime();
+        OrderJournal reopened = new OrderJournal(file, CHUNK_SIZE, OrderJournal.DEFAULT_SYNC_INTERVAL_MILLIS);
+        OrderService restored = new OrderService(new PricingService(), new DeliveryService(),
+            new InventoryService(), reopened, catalog);
+        long replayed = System.nanoTime() - start;
+        try {
+            check(Order.stateMachine().getTotalTransitionCount() == transitionsBefore,
+                "replay counted %d transitions", Order.stateMachine().getTotalTransitionCount() - transitionsBefore);
+            for (Order original : orders) {
+                Order copy = restored.getOrderById(original.getOrderId()).orElse(null);
+                check(copy != null, "order %s was not restored", original.getOrderId());
+                compare(original, copy);
+            }
+            report("replayed %d orders in %.1f ms (%.0f ns/record)", ORDERS, replayed / 1e6,
+                nanosPerOp(replayed, records));
+
+            LocalDateTime from = LocalDateTime.now().minusDays(1);
+            LocalDateTime to = LocalDateTime.now().plusDays(1);
+            Money revenue = restored.calculateRevenue(from, to, "USD");
+            long finished = orders.stream().filter(order -> order.getStatus().isFinal()).count();
+            OrderArchive archive = new OrderArchive(archiveDirectory);
+            int archived = restored.archiveFinalOrders(archive, Duration.ZERO);
+            check(archived == finished, "archived %d orders after replay, %d were finished", archived, finished);
+            check(restored.calculateRevenue(from, to, "USD", archive).equals(revenue),
+                "revenue with the archive is %s, was %s before archiving",
+                restored.calculateRevenue(from, to, "USD", archive), revenue);
+            check(restored.calculateRevenue(from, to, "USD").compareTo(revenue) < 0,
+                "live-only revenue still includes the delivered orders");
+            check(restored.getOrdersByCustomer(customer).size() + archive.findByCustomer(customer.getCustomerId()).size()
+                == ORDERS, "live and archived orders of the customer do not add up to %d", ORDERS);
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private static void checkFailedAppend(Path file) {
+        InventoryService inventory = new InventoryService();
+        StockItem beef = inventory.addStockItem("Beef", "Bench stock", "Bench", "unit", 15, 0, 100,
+            Money.of(1, "USD"), LocalDate.now().plusDays(30), "Bench supplier", "Bench shelf");
+        MenuItem steak = new MenuItem("Steak", "Bench steak", Money.of(20, "USD"), ItemType.MAIN_COURSE);
+        inventory.defineRecipe(steak, Collections.singletonMap(beef, 1));
+        OrderJournal journal = new OrderJournal(file, CHUNK_SIZE, OrderJournal.DEFAULT_SYNC_INTERVAL_MILLIS);
+        OrderService orderService = new OrderService(new PricingService(), new DeliveryService(), inventory, journal);
+        EventBus bus = new EventBus();
+        orderService.setEventBus(bus);
+        Order order = orderService.createOrder(customer(6), address());
+        orderService.addMenuItemToOrder(order, steak, 1);
+        Money total = order.getTotalAmount();
+        journal.close();
+
+        try {
+            orderService.confirmOrder(order);
+            throw new IllegalStateException("confirmed an order with a closed journal");
+        } catch (IllegalStateException expected) {
+            check(expected.getMessage().equals("Order journal is closed"), "%s", expected.getMessage());
+        }
+        try {
+            orderService.addMenuItemToOrder(order, steak, 2);
+            throw new IllegalStateException("added an item with a closed journal");
+        } catch (IllegalStateException expected) {
+            // nothing applied
+        }
+        check(order.getStatus() == OrderStatus.PENDING && order.getOrderItems().size() == 1
+                && order.getTotalAmount().equals(total),
+            "failed appends changed the order to %s with %d items", order.getStatus(), order.getOrderItems().size());
+        check(beef.getCurrentQuantity() == 15, "failed confirmation left stock at %d", beef.getCurrentQuantity());
+        check(bus.getPublishedCount() == 0, "failed confirmation published %d events", bus.getPublishedCount());
+        bus.close();
+    }
+
+    private static void checkCompaction(Path directory) throws IOException {
+        Path file = directory.resolve("compact.journal");
+        MenuItem item = new MenuItem("Platter", "Bench platter", Money.of(20, "USD"), ItemType.MAIN_COURSE);
+        OrderJournal journal = new OrderJournal(file, CHUNK_SIZE, OrderJournal.DEFAULT_SYNC_INTERVAL_MILLIS);
+        OrderService orderService = new OrderService(new PricingService(), new DeliveryService(),
+            new InventoryService(), journal);
+        Customer customer = customer(7);
+        List<Order> live = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            Order order = orderService.createOrder(customer, address());
+            orderService.addMenuItemToOrder(order, item, 1);
+            if (i % 5 < 3) {
+                orderService.confirmOrder(order);
+                orderService.cancelOrder(order, "bench");
+            } else {
+                live.add(order);
+            }
+        }
+
+        // A directory where the next generation goes makes the switch fail
+        Path next = directory.resolve("compact.journal.1");
+        Files.createDirectory(next);
+        OrderArchive archive = new OrderArchive(directory.resolve("compact-archive"));
+        check(orderService.archiveFinalOrders(archive, Duration.ZERO) == 600, "cancelled orders were not archived");
+        check(Files.isDirectory(next) && !Files.exists(directory.resolve("compact.journal.1.tmp")),
+            "failed compaction left files behind");
+        live.add(orderService.createOrder(customer, address()));
+        long before = journal.getRecordCount();
+
+        Files.delete(next);
+        long dropped = journal.compact();
+        check(dropped > 0 && journal.getRecordCount() == before - dropped,
+            "compaction dropped %d of %d records, %d left", dropped, before, journal.getRecordCount());
+        check(Files.isRegularFile(next) && !Files.exists(file), "compaction did not move to the next generation");
+        check(journal.compact() == 0, "compacted again without new archived orders");
+        live.add(orderService.createOrder(customer, address()));
+        journal.close();
+
+        OrderJournal reopened = new OrderJournal(file, CHUNK_SIZE, OrderJournal.DEFAULT_SYNC_INTERVAL_MILLIS);
+        try {
+            List<Order> restored = reopened.replay();
+            check(restored.size() == live.size(), "reopened journal restored %d orders, %d are live",
+                restored.size(), live.size());
+            for (int i = 0; i < live.size(); i++) {
+                check(restored.get(i).getOrderId().equals(live.get(i).getOrderId()), "order %d restored out of order", i);
+            }
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private static void checkArchiveMerge(Path directory) {
+        MenuItem item = new MenuItem("Platter", "Bench platter", Money.of(20, "USD"), ItemType.MAIN_COURSE);
+        Customer[] customers = {customer(10), customer(11), customer(12), customer(13)};
+        List<Order> orders = new ArrayList<>(ARCHIVED);
+        for (int i = 0; i < ARCHIVED; i++) {
+            Order order = new Order(customers[i % customers.length], address());
+            order.addOrderItem(new OrderItem(item, 1 + i % 3));
+            orders.add(order);
+        }
+        // Each batch takes orders from the whole time range, so merges interleave
+        Collections.shuffle(orders, new Random(66));
+
+        OrderArchive archive = new OrderArchive(directory);
+        Map<String, ArchivedOrder> expected = new HashMap<>();
+        int merges = 0;
+        long merging = 0;
+        for (int from = 0, batch = ARCHIVED / 4; from < ARCHIVED; from += batch, batch = Math.max(1_000, batch / 2)) {
+            List<Order> slice = orders.subList(from, Math.min(ARCHIVED, from + batch));
+            archive.append(slice);
+            for (Order order : slice) {
+                expected.put(order.getOrderId(), archive.findById(order.getOrderId()).orElse(null));
+            }
+            long start = System.nanoTime();
+            merges += archive.mergeSegments();
+            merging += System.nanoTime() - start;
+        }
+        check(merges > 0 && archive.count() == ARCHIVED, "%d merges left %d archived orders, expected %d",
+            merges, archive.count(), ARCHIVED);
+
+        OrderArchive reopened = new OrderArchive(directory);
+        check(reopened.getSegmentCount() == archive.getSegmentCount(), "reopened archive has %d segments, was %d",
+            reopened.getSegmentCount(), archive.getSegmentCount());
+        for (Map.Entry<String, ArchivedOrder> entry : expected.entrySet()) {
+            ArchivedOrder found = reopened.findById(entry.getKey()).orElse(null);
+            check(entry.getValue() != null && entry.getValue().equals(found), "merged %s as %s",
+                entry.getValue(), found);
+        }
+        List<ArchivedOrder> sorted = new ArrayList<>(expected.values());
+        sorted.sort(Comparator.comparing(ArchivedOrder::getOrderTime));
+        LocalDateTime lower = sorted.get(ARCHIVED / 3).getOrderTime();
+        LocalDateTime upper = sorted.get(2 * ARCHIVED / 3).getOrderTime();
+        long inRange = sorted.stream()
+            .filter(order -> !order.getOrderTime().isBefore(lower) && order.getOrderTime().isBefore(upper)).count();
+        check(reopened.findByOrderTimeBetween(lower, upper).size() == inRange,
+            "time range found %d merged orders, expected %d", reopened.findByOrderTimeBetween(lower, upper).size(),
+            inRange);
+        int byCustomer = reopened.findByCustomer(customers[0].getCustomerId()).size();
+        check(byCustomer == ARCHIVED / customers.length, "customer lookup after merging found %d orders, expected %d",
+            byCustomer, ARCHIVED / customers.length);
+        report("%d merges of %d archived orders into %d segments in %.1f ms", merges, ARCHIVED,
+            archive.getSegmentCount(), merging / 1e6);
+    }
+
+    /**
+     * Steps 0-6 leave the order pending, confirmed, paid, ready, cancelled,
+     * delivered or refunded
+     */
+    private static void advance(OrderService orderService, DeliveryService deliveryService, Courier courier,
+                                Order order, int steps) {
+        if (steps == 0) {
+            return;
+        }
+        orderService.confirmOrder(order);
+        if (steps == 1) {
+            return;
+        }
+        if (steps == 4) {
+            orderService.cancelOrder(order, "bench");
+            return;
+        }
+        orderService.processPayment(order, PaymentMethod.CASH, "bench@example.com");
+        if (steps == 2) {
+            return;
+        }
+        orderService.markOrderReady(order);
+        if (steps == 3) {
+            return;
+        }
+        Delivery delivery = new Delivery(order, address(), order.getDeliveryAddress(),
+            LocalDateTime.now().plusHours(1), order.getDeliveryFee());
+        deliveryService.assignCourier(delivery, courier);
+        deliveryService.markPickedUp(delivery);
+        deliveryService.markInTransit(delivery);
+        deliveryService.markDelivered(delivery, null);
+        if (steps == 6) {
+            orderService.refundOrder(order, "bench");
+        }
+    }
+
+    private static void compare(Order original, Order copy) {
+        String id = original.getOrderId();
+        check(copy.getStatus() == original.getStatus(), "order %s restored as %s, was %s",
+            id, copy.getStatus(), original.getStatus());
+        check(copy.getOrderTime().equals(original.getOrderTime()), "order %s order time %s, was %s",
+            id, copy.getOrderTime(), original.getOrderTime());
+        check(sameTime(copy.getStatusChangedTime(), original.getStatusChangedTime()),
+            "order %s status time %s, was %s", id, copy.getStatusChangedTime(), original.getStatusChangedTime());
+        check(copy.getSubtotal().equals(original.getSubtotal()) && copy.getTotalAmount().equals(original.getTotalAmount()),
+            "order %s restored with total %s, was %s", id, copy.getTotalAmount(), original.getTotalAmount());
+        List<OrderItem> originalItems = original.getOrderItems();
+        List<OrderItem> copiedItems = copy.getOrderItems();
+        check(copiedItems.size() == originalItems.size(), "order %s restored with %d items, had %d",
+            id, copiedItems.size(), originalItems.size());
+        for (int i = 0; i < originalItems.size(); i++) {
+            OrderItem was = originalItems.get(i);
+            OrderItem now = copiedItems.get(i);
+            check(now.getMenuItem() == was.getMenuItem() && now.getDinner() == was.getDinner(),
+                "order %s item %d is not linked to the live menu", id, i);
+            check(now.getQuantity() == was.getQuantity() && now.getUnitPrice().equals(was.getUnitPrice()),
+                "order %s item %d restored as %s, was %s", id, i, now, was);
+        }
+    }
+
+    /**
+     * A status change is restored with the time its record was written, to
+     * the millisecond, which is just before the change itself was applied
+     */
+    private static boolean sameTime(LocalDateTime restored, LocalDateTime original) {
+        return !restored.isAfter(original) && restored.isAfter(original.truncatedTo(ChronoUnit.MILLIS).minusSeconds(1));
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.out.println("  could not delete " + path + ": " + e.getMessage());
+        }
+    }
+}
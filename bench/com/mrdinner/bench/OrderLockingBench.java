@@ -0,0 +1,177 @@
+package com.mrdinner.bench;
+
+import static com.mrdinner.bench.BenchSupport.*;
+
+import com.mrdinner.domain.common.Address;
+import com.mrdinner.domain.common.Money;
+import com.mrdinner.domain.customer.Customer;
+import com.mrdinner.domain.menu.ItemType;
+import com.mrdinner.domain.menu.MenuItem;
+import com.mrdinner.domain.order.Order;
+import com.mrdinner.domain.order.OrderItem;
+import com.mrdinner.domain.order.OrderStatus;
+import com.mrdinner.domain.payment.PaymentMethod;
+import com.mrdinner.service.DeliveryService;
+import com.mrdinner.service.InventoryService;
+import com.mrdinner.service.OrderService;
+import com.mrdinner.service.PricingService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-order striped locking in OrderService: many threads adding items to the
+ * same orders must not lose an item or a subtotal update, and threads racing
+ * one order through confirm, payment and then ready or cancel must leave it
+ * paid at most once and in exactly one status
+ */
+public class OrderLockingBench {
+    private static final int ORDERS = 200;
+    private static final int ADDS_PER_THREAD = 20;
+
+    public static void main(String[] args) throws Exception {
+        run();
+    }
+
+    static void run() throws Exception {
+        int threads = threads();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            checkConcurrentAdds(executor, threads);
+            checkLifecycleRace(executor, threads);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void checkConcurrentAdds(ExecutorService executor, int threads) throws Exception {
+        OrderService orderService = newOrderService(new DeliveryService());
+        Customer customer = customer(1);
+        Address address = address();
+        MenuItem steak = new MenuItem("Steak", "Grilled steak", Money.of(20, "USD"), ItemType.MAIN_COURSE);
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            orders.add(orderService.createOrder(customer, address));
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < ADDS_PER_THREAD; i++) {
+                    for (Order order : orders) {
+                        orderService.addMenuItemToOrder(order, steak, 1);
+                    }
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        int expectedItems = threads * ADDS_PER_THREAD;
+        for (Order order : orders) {
+            check(order.getOrderItems().size() == expectedItems, "order %s has %d items, expected %d",
+                order.getOrderId(), order.getOrderItems().size(), expectedItems);
+            Money itemTotal = Money.zero("USD");
+            for (OrderItem item : order.getOrderItems()) {
+                itemTotal = itemTotal.add(item.getTotalPrice());
+            }
+            check(order.getSubtotal().equals(itemTotal), "order %s subtotal %s, items add up to %s",
+                order.getOrderId(), order.getSubtotal(), itemTotal);
+            check(order.getTotalAmount().equals(order.getSubtotal().add(order.getTax()).add(order.getDeliveryFee())),
+                "order %s total is out of step with its charges", order.getOrderId());
+        }
+        long adds = (long) expectedItems * ORDERS;
+        report("%d threads, %d adds on %d shared orders: %.0f ns/add", threads, adds, ORDERS,
+            nanosPerOp(elapsed, adds));
+    }
+
+    private static void checkLifecycleRace(ExecutorService executor, int threads) throws Exception {
+        DeliveryService deliveryService = new DeliveryService();
+        OrderService orderService = newOrderService(deliveryService);
+        Customer customer = customer(2);
+        MenuItem steak = new MenuItem("Steak", "Grilled steak", Money.of(20, "USD"), ItemType.MAIN_COURSE);
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            Order order = orderService.createOrder(customer, address());
+            orderService.addMenuItemToOrder(order, steak, 1);
+            orders.add(order);
+        }
+
+        Map<String, AtomicInteger> payments = new ConcurrentHashMap<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < orders.size(); i++) {
+                    Order order = orders.get(i);
+                    try {
+                        orderService.confirmOrder(order);
+                    } catch (IllegalStateException expected) {
+                        // another thread got there first
+                    }
+                    try {
+                        if (orderService.processPayment(order, PaymentMethod.CASH, "race@example.com").isSuccessful()) {
+                            payments.computeIfAbsent(order.getOrderId(), id -> new AtomicInteger()).incrementAndGet();
+                        }
+                    } catch (IllegalStateException expected) {
+                        // not confirmed, or already paid
+                    }
+                    try {
+                        if (i % 4 == 0) {
+                            orderService.cancelOrder(order, "race");
+                        } else {
+                            orderService.markOrderReady(order);
+                        }
+                    } catch (IllegalStateException expected) {
+                        // already ready or cancelled
+                    }
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        for (Map.Entry<String, AtomicInteger> entry : payments.entrySet()) {
+            check(entry.getValue().get() == 1, "order %s was paid %d times", entry.getKey(), entry.getValue().get());
+        }
+        int counted = 0;
+        for (OrderStatus status : OrderStatus.values()) {
+            int inStatus = orderService.countOrdersByStatus(status);
+            check(inStatus == orderService.getOrdersByStatus(status).size(), "count for %s disagrees with its bucket",
+                status);
+            counted += inStatus;
+        }
+        check(counted == ORDERS, "status counts add up to %d, expected %d", counted, ORDERS);
+        int ready = orderService.countOrdersByStatus(OrderStatus.READY);
+        int cancelled = orderService.countOrdersByStatus(OrderStatus.CANCELLED);
+        check(cancelled == ORDERS / 4 && ready == ORDERS - cancelled, "%d ready and %d cancelled, expected %d and %d",
+            ready, cancelled, ORDERS - ORDERS / 4, ORDERS / 4);
+        int deliveries = deliveryService.getDeliveryStats().getTotalDeliveries();
+        check(deliveries == ready, "%d deliveries for %d ready orders", deliveries, ready);
+        report("%d threads racing %d orders: %d paid, %d ready, %d cancelled in %.1f ms", threads, ORDERS,
+            payments.size(), ready, cancelled, elapsed / 1e6);
+    }
+
+    private static OrderService newOrderService(DeliveryService deliveryService) {
+        return new OrderService(new PricingService(), deliveryService, new InventoryService());
+    }
+}
@@ -0,0 +1,161 @@
+package com.mrdinner.bench;
+
+import static com.mrdinner.bench.BenchSupport.*;
+
+import com.mrdinner.domain.customer.Customer;
+import com.mrdinner.domain.order.Order;
+import com.mrdinner.domain.order.OrderPage;
+import com.mrdinner.domain.order.OrderRepository;
+import com.mrdinner.domain.order.OrderStatus;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Order repository indexes: lookups by customer, status and time range
+ * against a linear scan of the same orders, cursor paging, and the indexes
+ * staying consistent through status changes and removals
+ */
+public class OrderRepositoryBench {
+    private static final int ORDERS = 20_000;
+    private static final int CUSTOMERS = 200;
+    private static final int LOOKUPS = 2_000;
+
+    public static void main(String[] args) throws Exception {
+        run();
+    }
+
+    static void run() {
+        OrderRepository repository = new OrderRepository();
+        List<Order> orders = new ArrayList<>(ORDERS);
+        Customer[] customers = new Customer[CUSTOMERS];
+        for (int i = 0; i < CUSTOMERS; i++) {
+            customers[i] = customer(i);
+        }
+        LocalDateTime base = LocalDateTime.of(2026, 1, 1, 12, 0);
+        for (int i = 0; i < ORDERS; i++) {
+            // IDs run against time so that ordering by ID would show up
+            Order order = new Order(String.format("O%06d", ORDERS - i), customers[i % CUSTOMERS],
+                address(), base.plusSeconds(i));
+            repository.save(order);
+            if (i % 3 == 0) {
+                order.setStatus(OrderStatus.CANCELLED);
+            }
+            orders.add(order);
+        }
+
+        checkLookups(repository, orders, customers);
+        checkPaging(repository, orders, base);
+        checkRemoval(repository, orders, customers[0]);
+        timeLookups(repository, orders, customers);
+    }
+
+    private static void checkLookups(OrderRepository repository, List<Order> orders, Customer[] customers) {
+        for (Customer customer : customers) {
+            List<Order> expected = new ArrayList<>();
+            for (Order order : orders) {
+                if (order.getCustomer().equals(customer)) {
+                    expected.add(order);
+                }
+            }
+            check(repository.findByCustomer(customer).equals(expected),
+                "customer lookup for %s differs from a scan", customer.getName());
+        }
+        for (OrderStatus status : OrderStatus.values()) {
+            List<Order> expected = new ArrayList<>();
+            for (Order order : orders) {
+                if (order.getStatus() == status) {
+                    expected.add(order);
+                }
+            }
+            check(repository.findByStatus(status).equals(expected), "status lookup for %s differs from a scan", status);
+            check(repository.countByStatus(status) == expected.size(), "count for %s is %d, expected %d",
+                status, repository.countByStatus(status), expected.size());
+        }
+    }
+
+    private static void checkPaging(OrderRepository repository, List<Order> orders, LocalDateTime base) {
+        LocalDateTime from = base.plusSeconds(200);
+        LocalDateTime to = base.plusSeconds(10_000);
+        List<Order> expected = new ArrayList<>();
+        for (Order order : orders) {
+            if (order.getStatus() == OrderStatus.PENDING
+                    && !order.getOrderTime().isBefore(from) && order.getOrderTime().isBefore(to)) {
+                expected.add(order);
+            }
+        }
+        check(repository.findByOrderTimeBetween(from, to, EnumSet.of(OrderStatus.PENDING)).equals(expected),
+            "time range lookup differs from a scan");
+
+        List<Order> paged = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            OrderPage page = repository.findPageByOrderTime(from, to, EnumSet.of(OrderStatus.PENDING), cursor, 97);
+            for (Order order : page.getOrders()) {
+                check(seen.add(order.getOrderId()), "order %s returned on two pages", order.getOrderId());
+            }
+            paged.addAll(page.getOrders());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+        check(paged.equals(expected), "paging returned %d orders, expected %d in order", paged.size(), expected.size());
+        report("paged %d orders in %d pages", paged.size(), pages);
+    }
+
+    private static void checkRemoval(OrderRepository repository, List<Order> orders, Customer customer) {
+        int before = repository.count();
+        int removed = 0;
+        for (Order order : repository.findByCustomer(customer)) {
+            repository.remove(order);
+            removed++;
+        }
+        check(repository.findByCustomer(customer).isEmpty(), "removed customer still has orders");
+        check(repository.count() == before - removed, "count is %d after removing %d of %d",
+            repository.count(), removed, before);
+        int counted = 0;
+        for (OrderStatus status : OrderStatus.values()) {
+            counted += repository.countByStatus(status);
+        }
+        check(counted == repository.count(), "status counts add up to %d, expected %d", counted, repository.count());
+        for (Order order : orders) {
+            if (order.getCustomer().equals(customer)) {
+                repository.save(order);
+            }
+        }
+    }
+
+    private static void timeLookups(OrderRepository repository, List<Order> orders, Customer[] customers) {
+        long sink = 0;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                sink += repository.findByCustomer(customers[i % CUSTOMERS]).size();
+                sink += repository.findById(orders.get(i * 7 % ORDERS).getOrderId()).isPresent() ? 1 : 0;
+            }
+            long indexed = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                Customer customer = customers[i % CUSTOMERS];
+                String orderId = orders.get(i * 7 % ORDERS).getOrderId();
+                for (Order order : orders) {
+                    if (order.getCustomer().equals(customer)) {
+                        sink++;
+                    }
+                    if (order.getOrderId().equals(orderId)) {
+                        sink++;
+                    }
+                }
+            }
+            long scanned = System.nanoTime() - start;
+            report("customer + ID lookup over %d orders: indexed %.0f ns, scan %.0f ns",
+                ORDERS, nanosPerOp(indexed, LOOKUPS), nanosPerOp(scanned, LOOKUPS));
+        }
+        check(sink > 0, "lookups found nothing");
+    }
+}
@@ -0,0 +1,89 @@
+package com.mrdinner.bench;
+
+import static com.mrdinner.bench.BenchSupport.*;
+
+import com.mrdinner.domain.common.Money;
+import com.mrdinner.domain.menu.ItemType;
+import com.mrdinner.domain.menu.MenuItem;
+import com.mrdinner.domain.order.Order;
+import com.mrdinner.domain.order.OrderItem;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Incremental order totals: after every random add, remove, quantity change
+ * and price change the running subtotal and total must equal a full
+ * recomputation. Also times adding items to small and large orders, which
+ * should cost about the same.
+ */
+public class OrderTotalsBench {
+    private static final int STEPS = 50_000;
+    private static final int LARGE_ORDER = 2_000;
+
+    public static void main(String[] args) throws Exception {
+        run();
+    }
+
+    static void run() {
+        MenuItem[] menu = new MenuItem[16];
+        for (int i = 0; i < menu.length; i++) {
+            menu[i] = new MenuItem("Item " + i, "Bench item", Money.ofMinor(199 + i * 137L, "USD"), ItemType.MAIN_COURSE);
+        }
+        checkRandomEdits(menu);
+        timeAdds(menu);
+    }
+
+    private static void checkRandomEdits(MenuItem[] menu) {
+        Random random = new Random(4);
+        Order order = new Order(customer(4), address());
+        order.setCharges(Money.of(1.25, "USD"), Money.of(4.99, "USD"));
+        List<OrderItem> items = new ArrayList<>();
+        for (int step = 0; step < STEPS; step++) {
+            int action = items.isEmpty() ? 0 : random.nextInt(4);
+            if (action == 0) {
+                OrderItem item = new OrderItem(menu[random.nextInt(menu.length)], 1 + random.nextInt(5));
+                order.addOrderItem(item);
+                items.add(item);
+            } else if (action == 1) {
+                order.removeOrderItem(items.remove(random.nextInt(items.size())));
+            } else if (action == 2) {
+                items.get(random.nextInt(items.size())).setQuantity(1 + random.nextInt(9));
+            } else {
+                items.get(random.nextInt(items.size())).setUnitPrice(Money.ofMinor(1 + random.nextInt(10_000), "USD"));
+            }
+
+            Money recomputed = Money.zero("USD");
+            for (OrderItem item : order.getOrderItems()) {
+                recomputed = recomputed.add(item.getTotalPrice());
+            }
+            check(order.getSubtotal().equals(recomputed), "step %d: subtotal %s, recomputed %s",
+                step, order.getSubtotal(), recomputed);
+            check(order.getTotalAmount().equals(recomputed.add(order.getTax()).add(order.getDeliveryFee())),
+                "step %d: total %s is out of step with the subtotal", step, order.getTotalAmount());
+        }
+        report("%d random edits, subtotal matched a full recomputation after each", STEPS);
+    }
+
+    private static void timeAdds(MenuItem[] menu) {
+        for (int round = 0; round < 3; round++) {
+            double small = nanosPerAdd(menu, 10);
+            double large = nanosPerAdd(menu, LARGE_ORDER);
+            report("add item: %.0f ns on a 10-item order, %.0f ns on a %d-item order", small, large, LARGE_ORDER);
+        }
+    }
+
+    private static double nanosPerAdd(MenuItem[] menu, int orderSize) {
+        int orders = Math.max(1, 20_000 / orderSize);
+        long elapsed = 0;
+        for (int n = 0; n < orders; n++) {
+            Order order = new Order(customer(5), address());
+            long start = System.nanoTime();
+            for (int i = 0; i < orderSize; i++) {
+                order.addOrderItem(new OrderItem(menu[i % menu.length], 1));
+            }
+            elapsed += System.nanoTime() - start;
+        }
+        return nanosPerOp(elapsed, (long) orders * orderSize);
+    }
+}
@@ -0,0 +1,166 @@
+package com.mrdinner.bench;
+
+import static com.mrdinner.bench.BenchSupport.*;
+
+import com.mrdinner.domain.common.Money;
+import com.mrdinner.service.PricingRules;
+import com.mrdinner.service.PricingService;
+import java.math.BigDecimal;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Compiled pricing rules: the built-in rules must price every subtotal and
+ * dinner quantity exactly like the original hard-coded rules, custom rules
+ * must apply as written and reject bad values, and pricing while the rules are
+ * being swapped must always use one complete rule set. Also times pricing a
+ * cart.
+ */
+public class PricingRulesBench {
+    private static final int CASES = 500_000;
+    private static final BigDecimal ORIGINAL_TAX_RATE = new BigDecimal("0.08");
+    private static final Money ORIGINAL_MINIMUM = Money.of(15.00, "USD");
+    private static final Money ORIGINAL_FREE_DELIVERY = Money.of(50.00, "USD");
+    private static final Money ORIGINAL_DELIVERY_FEE = Money.of(4.99, "USD");
+
+    public static void main(String[] args) throws Exception {
+        run();
+    }
+
+    static void run() throws Exception {
+        checkDefaultsMatchOriginal();
+        checkCustomRules();
+        checkSwapUnderLoad();
+        timePricing();
+    }
+
+    private static void checkDefaultsMatchOriginal() {
+        PricingRules rules = PricingRules.defaults();
+        Random random = new Random(16);
+        for (int i = 0; i < CASES; i++) {
+            Money subtotal = Money.ofMinor(random.nextInt(20_000), "USD");
+            Money tax = subtotal.multiply(ORIGINAL_TAX_RATE);
+            Money fee = subtotal.compareTo(ORIGINAL_FREE_DELIVERY) >= 0 ? Money.zero("USD") : ORIGINAL_DELIVERY_FEE;
+            PricingService.OrderPricing pricing = rules.price(subtotal);
+            check(pricing.getTax().equals(tax) && pricing.getDeliveryFee().equals(fee)
+                    && pricing.getTotal().equals(subtotal.add(tax).add(fee)),
+                "%s priced as %s", subtotal, pricing);
+            check(rules.meetsMinimum(subtotal) == (subtotal.compareTo(ORIGINAL_MINIMUM) >= 0),
+                "minimum check differs for %s", subtotal);
+        }
+        for (int quantity = 1; quantity <= 50; quantity++) {
+            check(rules.volumeMultiplier(quantity).compareTo(originalVolumeMultiplier(quantity)) == 0,
+                "volume multiplier for %d is %s, was %s", quantity, rules.volumeMultiplier(quantity),
+                originalVolumeMultiplier(quantity));
+        }
+        report("%d subtotals and 50 quantities priced as before", CASES);
+    }
+
+    private static BigDecimal originalVolumeMultiplier(int quantity) {
+        if (quantity >= 10) {
+            return new BigDecimal("0.85");
+        } else if (quantity >= 5) {
+            return new BigDecimal("0.90");
+        } else if (quantity >= 3) {
+            return new BigDecimal("0.95");
+        }
+        return BigDecimal.ONE;
+    }
+
+    private static void checkCustomRules() {
+        Properties properties = new Properties();
+        properties.setProperty("rules.version", "bench");
+        properties.setProperty("tax.rate", "0.10");
+        properties.setProperty("delivery.freeThreshold", "30");
+        properties.setProperty("volume.discount.2", "0.20");
+        PricingRules rules = PricingRules.fromProperties(properties);
+        PricingService.OrderPricing pricing = rules.price(Money.of(40, "USD"));
+        check(pricing.getTax().equals(Money.of(4, "USD")) && pricing.getDeliveryFee().isZero()
+                && pricing.getTotal().equals(Money.of(44, "USD")), "custom rules priced $40 as %s", pricing);
+        check(rules.volumeMultiplier(1).compareTo(BigDecimal.ONE) == 0
+                && rules.volumeMultiplier(7).compareTo(new BigDecimal("0.80")) == 0,
+            "custom volume tiers not applied");
+
+        String[][] invalid = {{"tax.rate", "1.5"}, {"tax.rate", "-0.1"}, {"delivery.fee", "abc"},
+            {"volume.discount.0", "0.1"}, {"promo.maxDiscount", "2"}};
+        for (String[] entry : invalid) {
+            Properties bad = new Properties();
+            bad.setProperty(entry[0], entry[1]);
+            try {
+                PricingRules.fromProperties(bad);
+            } catch (IllegalArgumentException expected) {
+                continue;
+            }
+            throw new IllegalStateException("rules accepted " + entry[0] + "=" + entry[1]);
+        }
+    }
+
+    private static void checkSwapUnderLoad() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("tax.rate", "0.10");
+        properties.setProperty("delivery.fee", "2.50");
+        PricingRules first = PricingRules.defaults();
+        PricingRules second = PricingRules.fromProperties(properties);
+        PricingService pricingService = new PricingService(first);
+        Money subtotal = Money.of(20, "USD");
+        Money firstTotal = first.price(subtotal).getTotal();
+        Money secondTotal = second.price(subtotal).getTotal();
+
+        int readers = threads() - 1;
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong priced = new AtomicLong();
+        AtomicReference<String> failure = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(readers);
+        for (int t = 0; t < readers; t++) {
+            Thread reader = new Thread(() -> {
+                try {
+                    while (running.get()) {
+                        Money total = pricingService.calculatePricing(subtotal, null).getTotal();
+                        if (!total.equals(firstTotal) && !total.equals(secondTotal)) {
+                            failure.compareAndSet(null, "mixed rules priced " + subtotal + " at " + total);
+                        }
+                        priced.incrementAndGet();
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+            reader.setDaemon(true);
+            reader.start();
+        }
+        int swaps = 0;
+        long until = System.nanoTime() + 300_000_000L;
+        while (System.nanoTime() < until) {
+            pricingService.setRules(swaps++ % 2 == 0 ? second : first);
+            Thread.yield();
+        }
+        running.set(false);
+        done.await();
+        check(failure.get() == null, "%s", failure.get());
+        report("%d rule swaps while %d readers priced %d carts", swaps, readers, priced.get());
+    }
+
+    private static void timePricing() {
+        Money[] subtotals = new Money[1024];
+        Random random = new Random(61);
+        for (int i = 0; i < subtotals.length; i++) {
+            subtotals[i] = Money.ofMinor(random.nextInt(20_000), "USD");
+        }
+        PricingService pricingService = new PricingService(PricingRules.defaults());
+        long sink = 0;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < CASES; i++) {
+                sink += pricingService.calculatePricing(subtotals[i & 1023], null).getTotal().getMinorUnits();
+                sink += pricingService.getRules().volumeMultiplier(i & 15).scale();
+            }
+            long elapsed = System.nanoTime() - start;
+            report("price a cart: %.0f ns", nanosPerOp(elapsed, CASES));
+        }
+        check(sink > 0, "nothing priced");
+    }
+}
@@ -0,0 +1,183 @@
+package com.mrdinner.bench;
+
+import static com.mrdinner.bench.BenchSupport.*;
+
+import com.mrdinner.domain.common.Money;
+import com.mrdinner.service.PricingRules;
+import com.mrdinner.service.PricingService;
+import com.mrdinner.service.PromoCodeService;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Promo code redemption: threads redeeming one popular code must never exceed
+ * the global or the per-customer cap and must account for every success,
+ * released redemptions must free their slots exactly once, and discounts must
+ * stay within the pricing rules' maximum both when a code is defined and when
+ * the rules are lowered afterwards, and a discount only applies when it is an
+ * active code's own. Also times contended redemption.
+ */
+public class PromoCodeBench {
+    private static final int ATTEMPTS = 400_000;
+    private static final int CUSTOMERS = 2_000;
+    private static final int GLOBAL_CAP = 150_000;
+    private static final int PER_CUSTOMER_CAP = 60;
+
+    public static void main(String[] args) throws Exception {
+        run();
+    }
+
+    static void run() throws Exception {
+        checkCapsUnderContention();
+        checkRelease();
+        checkPricingRulesCap();
+    }
+
+    private static void checkCapsUnderContention() throws Exception {
+        PromoCodeService promoCodes = new PromoCodeService();
+        LocalDateTime now = LocalDateTime.now();
+        PromoCodeService.PromoCode code = promoCodes.defineCode("VIRAL", new BigDecimal("0.10"),
+            now.minusDays(1), now.plusDays(1), GLOBAL_CAP, PER_CUSTOMER_CAP);
+        String[] customers = new String[CUSTOMERS];
+        for (int i = 0; i < customers.length; i++) {
+            customers[i] = "C" + i;
+        }
+
+        int threads = threads();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                int first = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    int redeemed = 0;
+                    for (int i = first; i < ATTEMPTS; i += threads) {
+                        if (promoCodes.redeem("viral", customers[i % CUSTOMERS]).isSuccessful()) {
+                            redeemed++;
+                        }
+                    }
+                    return redeemed;
+                }));
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            int redeemed = 0;
+            for (Future<Integer> future : futures) {
+                redeemed += future.get();
+            }
+            long elapsed = System.nanoTime() - begin;
+
+            // 2000 customers x 60 = 120,000 slots, below the global cap
+            int expected = Math.min(GLOBAL_CAP, CUSTOMERS * PER_CUSTOMER_CAP);
+            check(redeemed == expected, "%d redemptions succeeded, expected %d", redeemed, expected);
+            check(code.getRedemptionCount() == redeemed, "code counted %d redemptions, %d succeeded",
+                code.getRedemptionCount(), redeemed);
+            int perCustomer = 0;
+            for (String customer : customers) {
+                int count = code.getRedemptionCount(customer);
+                check(count <= PER_CUSTOMER_CAP, "customer %s redeemed %d times", customer, count);
+                perCustomer += count;
+            }
+            check(perCustomer == redeemed, "customer counts add up to %d, expected %d", perCustomer, redeemed);
+            report("%d threads, %d attempts: %d redeemed, %.0f ns/attempt", threads, ATTEMPTS, redeemed,
+                nanosPerOp(elapsed, ATTEMPTS));
+
+            PromoCodeService.PromoCode scarce = promoCodes.defineCode("SCARCE", new BigDecimal("0.50"),
+                now.minusDays(1), now.plusDays(1), 1_000, PromoCodeService.UNLIMITED);
+            List<Future<Integer>> scarceFutures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int first = t;
+                scarceFutures.add(executor.submit(() -> {
+                    int won = 0;
+                    for (int i = first; i < 20_000; i += threads) {
+                        if (promoCodes.redeem("SCARCE", customers[i % CUSTOMERS]).isSuccessful()) {
+                            won++;
+                        }
+                    }
+                    return won;
+                }));
+            }
+            int won = 0;
+            for (Future<Integer> future : scarceFutures) {
+                won += future.get();
+            }
+            check(won == 1_000 && scarce.getRemainingRedemptions() == 0,
+                "global cap of 1000 gave %d redemptions, %d remaining", won, scarce.getRemainingRedemptions());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void checkRelease() {
+        PromoCodeService promoCodes = new PromoCodeService();
+        LocalDateTime now = LocalDateTime.now();
+        PromoCodeService.PromoCode code = promoCodes.defineCode("ONCE", new BigDecimal("0.25"),
+            now.minusDays(1), now.plusDays(1), 2, 1);
+        PromoCodeService.Redemption redemption = promoCodes.redeem("ONCE", "ann");
+        check(redemption.isSuccessful(), "first redemption failed: %s", redemption);
+        check(promoCodes.redeem("ONCE", "ann").getStatus() == PromoCodeService.RedemptionStatus.CUSTOMER_LIMIT_REACHED,
+            "customer cap not enforced");
+        promoCodes.release(redemption);
+        check(code.getRedemptionCount() == 0 && code.getRedemptionCount("ann") == 0, "release left counts behind");
+        try {
+            promoCodes.release(redemption);
+            throw new IllegalStateException("a redemption was released twice");
+        } catch (IllegalStateException expected) {
+            check(expected.getMessage().equals("Redemption already released"), "%s", expected.getMessage());
+        }
+        check(code.getRedemptionCount() == 0, "double release changed the count to %d", code.getRedemptionCount());
+        check(promoCodes.redeem("ONCE", "ann").isSuccessful(), "released slot could not be redeemed again");
+    }
+
+    private static void checkPricingRulesCap() {
+        Properties properties = new Properties();
+        properties.setProperty("promo.maxDiscount", "0.30");
+        PricingService pricingService = new PricingService(PricingRules.fromProperties(properties));
+        PromoCodeService promoCodes = new PromoCodeService(pricingService);
+        pricingService.setPromoCodeService(promoCodes);
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            promoCodes.defineCode("GREEDY", new BigDecimal("0.31"), now.minusDays(1), now.plusDays(1), 10, 1);
+            throw new IllegalStateException("a discount above the rules' maximum was defined");
+        } catch (IllegalArgumentException expected) {
+            // refused at definition
+        }
+        PromoCodeService.PromoCode code = promoCodes.defineCode("FAIR", new BigDecimal("0.30"),
+            now.minusDays(1), now.plusDays(1), 10, 1);
+        check(pricingService.applyPromoCode(Money.of(40, "USD"), "FAIR", "ann").equals(Money.of(28, "USD")),
+            "30%% off $40 is not $28");
+        check(pricingService.applyPromotionalDiscount(Money.of(40, "USD"), new BigDecimal("0.3"), "fair")
+                .equals(Money.of(28, "USD")) && code.getRedemptionCount() == 1,
+            "quoting a code's own discount failed or redeemed it");
+        String[][] forged = {{"0.25", "FAIR"}, {"0.30", "NOSUCH"}, {"0.30", null}};
+        for (String[] entry : forged) {
+            try {
+                pricingService.applyPromotionalDiscount(Money.of(40, "USD"), new BigDecimal(entry[0]), entry[1]);
+                throw new IllegalStateException("discount " + entry[0] + " accepted for code " + entry[1]);
+            } catch (IllegalArgumentException expected) {
+                // only a defined code's own discount applies
+            }
+        }
+
+        // Rules lowered after the code was defined: the rules win, and the
+        // refused redemption is given back
+        properties.setProperty("promo.maxDiscount", "0.20");
+        pricingService.setRules(PricingRules.fromProperties(properties));
+        try {
+            pricingService.applyPromoCode(Money.of(40, "USD"), "FAIR", "bob");
+            throw new IllegalStateException("a discount above the lowered maximum was applied");
+        } catch (IllegalArgumentException expected) {
+            check(code.getRedemptionCount() == 1 && code.getRedemptionCount("bob") == 0,
+                "refused redemption was not released");
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.mrdinner.bench;
+
+import static com.mrdinner.bench.BenchSupport.*;
+
+import com.mrdinner.domain.common.Money;
+import com.mrdinner.domain.customer.Customer;
+import com.mrdinner.domain.inventory.StockItem;
+import com.mrdinner.domain.menu.ItemType;
+import com.mrdinner.domain.menu.MenuItem;
+import com.mrdinner.domain.order.Order;
+import com.mrdinner.domain.order.OrderItem;
+import com.mrdinner.service.InventoryService;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * All-or-nothing stock reservation: threads reserving overlapping recipes
+ * while others cancel must never oversell or leave stock negative, every unit
+ * must be accounted for by the reservations still held, and restoring an
+ * order with no recorded reservation must give nothing back. Also times
+ * contended reservations.
+ */
+public class StockReservationBench {
+    private static final int ORDERS_PER_THREAD = 5_000;
+    private static final int BEEF = 40_000;
+    private static final int BREAD = 30_000;
+    private static final int WINE = 60_000;
+
+    public static void main(String[] args) throws Exception {
+        run();
+    }
+
+    static void run() throws Exception {
+        InventoryService inventory = new InventoryService();
+        StockItem beef = stock(inventory, "Beef", BEEF);
+        StockItem bread = stock(inventory, "Bread", BREAD);
+        StockItem wine = stock(inventory, "Wine", WINE);
+        MenuItem steak = new MenuItem("Steak", "Beef with bread", Money.of(20, "USD"), ItemType.MAIN_COURSE);
+        MenuItem sandwich = new MenuItem("Sandwich", "Bread with beef", Money.of(12, "USD"), ItemType.MAIN_COURSE);
+        inventory.defineRecipe(steak, recipe(beef, 3, bread, 1, wine, 2));
+        // Same items in the opposite order, so reservations cross
+        inventory.defineRecipe(sandwich, recipe(bread, 2, beef, 1, null, 0));
+
+        Customer customer = customer(25);
+        int threads = threads();
+        List<List<Order>> work = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            List<Order> orders = new ArrayList<>(ORDERS_PER_THREAD);
+            for (int i = 0; i < ORDERS_PER_THREAD; i++) {
+                Order order = new Order(customer, address());
+                order.addOrderItem(new OrderItem((t + i) % 2 == 0 ? steak : sandwich, 1 + i % 3));
+                orders.add(order);
+            }
+            work.add(orders);
+        }
+
+        ConcurrentLinkedQueue<Order> held = new ConcurrentLinkedQueue<>();
+        AtomicInteger reserved = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        AtomicInteger restored = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                List<Order> orders = work.get(t);
+                Random random = new Random(t);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (Order order : orders) {
+                        if (!inventory.reserveStock(order).isReserved()) {
+                            refused.incrementAndGet();
+                            continue;
+                        }
+                        reserved.incrementAndGet();
+                        held.add(order);
+                        // Cancel about a quarter, possibly another thread's
+                        if (random.nextInt(4) == 0) {
+                            Order cancelled = held.poll();
+                            if (cancelled != null && inventory.restoreStockForOrder(cancelled)) {
+                                restored.incrementAndGet();
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long elapsed = System.nanoTime() - begin;
+
+            Map<StockItem, Integer> expected = new HashMap<>();
+            expected.put(beef, BEEF);
+            expected.put(bread, BREAD);
+            expected.put(wine, WINE);
+            for (Order order : held) {
+                for (OrderItem item : order.getOrderItems()) {
+                    int quantity = item.getQuantity();
+                    if (item.getMenuItem() == steak) {
+                        expected.merge(beef, -3 * quantity, Integer::sum);
+                        expected.merge(bread, -quantity, Integer::sum);
+                        expected.merge(wine, -2 * quantity, Integer::sum);
+                    } else {
+                        expected.merge(bread, -2 * quantity, Integer::sum);
+                        expected.merge(beef, -quantity, Integer::sum);
+                    }
+                }
+            }
+            for (Map.Entry<StockItem, Integer> entry : expected.entrySet()) {
+                StockItem item = entry.getKey();
+                check(item.getCurrentQuantity() >= 0, "%s went negative: %d", item.getItemName(),
+                    item.getCurrentQuantity());
+                check(item.getCurrentQuantity() == entry.getValue(), "%s has %d, held reservations leave %d",
+                    item.getItemName(), item.getCurrentQuantity(), entry.getValue());
+            }
+            check(refused.get() > 0, "stock never ran short; the harness did not test contention");
+            report("%d threads: %d reserved, %d refused, %d restored, %.0f ns/reservation", threads,
+                reserved.get(), refused.get(), restored.get(), nanosPerOp(elapsed, (long) threads * ORDERS_PER_THREAD));
+        } finally {
+            executor.shutdown();
+        }
+
+        Order neverReserved = new Order(customer, address());
+        neverReserved.addOrderItem(new OrderItem(steak, 5));
+        int beefBefore = beef.getCurrentQuantity();
+        check(!inventory.restoreStockForOrder(neverReserved) && beef.getCurrentQuantity() == beefBefore,
+            "restoring an order without a reservation changed the stock");
+    }
+
+    private static StockItem stock(InventoryService inventory, String name, int quantity) {
+        return inventory.addStockItem(name, "Bench stock", "Bench", "unit", quantity, 0, 100_000,
+            Money.of(1, "USD"), LocalDate.now().plusDays(30), "Bench supplier", "Bench shelf");
+    }
+
+    private static Map<StockItem, Integer> recipe(StockItem first, int firstQuantity, StockItem second,
+                                                  int secondQuantity, StockItem third, int thirdQuantity) {
+        Map<StockItem, Integer> recipe = new HashMap<>();
+        recipe.put(first, firstQuantity);
+        recipe.put(second, secondQuantity);
+        if (third != null) {
+            recipe.put(third, thirdQuantity);
+        }
+        return recipe;
+    }
+}
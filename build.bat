@@ -70,6 +70,20 @@ if %errorlevel% neq 0 (
     exit /b 1
 )
 
+javac -d . -source 8 -target 8 com\mrdinner\domain\event\*.java
+if %errorlevel% neq 0 (
+    echo Error compiling event domain classes
+    pause
+    exit /b 1
+)
+
+javac -d . -source 8 -target 8 com\mrdinner\infrastructure\*.java
+if %errorlevel% neq 0 (
+    echo Error compiling infrastructure classes
+    pause
+    exit /b 1
+)
+
 javac -d . -source 8 -target 8 com\mrdinner\service\*.java
 if %errorlevel% neq 0 (
     echo Error compiling service classes
@@ -84,10 +98,25 @@ if %errorlevel% neq 0 (
     exit /b 1
 )
 
+javac -d . -cp . -source 8 -target 8 bench\com\mrdinner\bench\*.java
+if %errorlevel% neq 0 (
+    echo Error compiling benchmark harnesses
+    pause
+    exit /b 1
+)
+
 echo.
 echo Build completed successfully!
 echo.
 echo To run the application, use:
 echo java com.mrdinner.app.Main
 echo.
+echo To run the benchmark harnesses: build.bat bench
+echo.
+
+if /i "%~1"=="bench" (
+    echo Running benchmark harnesses...
+    java -cp . com.mrdinner.bench.Benchmarks
+    exit /b
+)
 pause
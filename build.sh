@@ -59,6 +59,18 @@ if [ $? -ne 0 ]; then
     exit 1
 fi
 
+javac -d . -source 8 -target 8 com/mrdinner/domain/event/*.java
+if [ $? -ne 0 ]; then
+    echo "Error compiling event domain classes"
+    exit 1
+fi
+
+javac -d . -source 8 -target 8 com/mrdinner/infrastructure/*.java
+if [ $? -ne 0 ]; then
+    echo "Error compiling infrastructure classes"
+    exit 1
+fi
+
 javac -d . -source 8 -target 8 com/mrdinner/service/*.java
 if [ $? -ne 0 ]; then
     echo "Error compiling service classes"
@@ -77,10 +89,24 @@ if [ $? -ne 0 ]; then
     exit 1
 fi
 
+javac -d . -cp . -source 8 -target 8 bench/com/mrdinner/bench/*.java
+if [ $? -ne 0 ]; then
+    echo "Error compiling benchmark harnesses"
+    exit 1
+fi
+
 echo
 echo "Build completed successfully!"
 echo
 echo "To run the application:"
 echo "Console version: java com.mrdinner.app.Main"
 echo "GUI version: java com.mrdinner.gui.MainGUI"
+echo "Benchmarks: ./build.sh bench [harness...]"
 echo
+
+if [ "$1" = "bench" ]; then
+    shift
+    echo "Running benchmark harnesses..."
+    java -cp . com.mrdinner.bench.Benchmarks "$@"
+    exit $?
+fi
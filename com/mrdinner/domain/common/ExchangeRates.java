@@ -0,0 +1,230 @@
+package com.mrdinner.domain.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Immutable table of exchange rates. Every pair's cross rate is computed
+ * once when the table is built and stored in a square array indexed by
+ * {@link Money#currencyCode interned currency codes}, so a conversion is
+ * two array reads and one {@link Money#multiply(BigDecimal)}.
+ *
+ * One table is current at a time; {@link #install} swaps in a refreshed
+ * table atomically, and conversions already running finish with the old one.
+ * The initial table is loaded from the file named by {@code mrdinner.fx.rates},
+ * if set, in this form (an unreadable or malformed file leaves the table
+ * empty, with a warning on standard error):
+ * <pre>
+ * version=2024-06-01
+ * base=USD
+ * KRW=1352.40       # units of KRW per 1 USD
+ * EUR=0.92
+ * </pre>
+ */
+public final class ExchangeRates {
+    /** Decimal places kept in cross rates */
+    private static final int RATE_SCALE = 10;
+    private static final int NO_SLOT = -1;
+    private static final ExchangeRates EMPTY = new ExchangeRates("none", new int[0], new BigDecimal[0], 0);
+
+    private static volatile ExchangeRates current = initial();
+
+    private final String version;
+    private final int[] slotByCode;
+    private final BigDecimal[] crossRates;
+    private final int size;
+
+    private ExchangeRates(String version, int[] slotByCode, BigDecimal[] crossRates, int size) {
+        this.version = version;
+        this.slotByCode = slotByCode;
+        this.crossRates = crossRates;
+        this.size = size;
+    }
+
+    public static ExchangeRates current() {
+        return current;
+    }
+
+    /**
+     * Make {@code rates} the table used by {@link Money#convertTo(String)}
+     */
+    public static void install(ExchangeRates rates) {
+        if (rates == null) {
+            throw new IllegalArgumentException("Exchange rates cannot be null");
+        }
+        current = rates;
+    }
+
+    public static ExchangeRates empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Table from rates quoted against one base currency
+     *
+     * @param ratesPerBase units of each currency per one unit of {@code baseCurrency}
+     */
+    public static ExchangeRates of(String version, String baseCurrency, Map<String, BigDecimal> ratesPerBase) {
+        if (ratesPerBase == null) {
+            throw new IllegalArgumentException("Rates cannot be null");
+        }
+        int base = Money.currencyCode(baseCurrency);
+        Map<Integer, BigDecimal> perBase = new LinkedHashMap<>();
+        perBase.put(base, BigDecimal.ONE);
+        for (Map.Entry<String, BigDecimal> entry : ratesPerBase.entrySet()) {
+            BigDecimal rate = entry.getValue();
+            if (rate == null || rate.signum() <= 0) {
+                throw new IllegalArgumentException("Exchange rate for " + entry.getKey() + " must be positive");
+            }
+            int code = Money.currencyCode(entry.getKey());
+            if (code != base) {
+                perBase.put(code, rate);
+            }
+        }
+
+        int maxCode = 0;
+        for (int code : perBase.keySet()) {
+            maxCode = Math.max(maxCode, code);
+        }
+        int size = perBase.size();
+        int[] slotByCode = new int[maxCode + 1];
+        Arrays.fill(slotByCode, NO_SLOT);
+        BigDecimal[] rates = new BigDecimal[size];
+        int slot = 0;
+        for (Map.Entry<Integer, BigDecimal> entry : perBase.entrySet()) {
+            slotByCode[entry.getKey()] = slot;
+            rates[slot] = entry.getValue();
+            slot++;
+        }
+
+        // from -> to = (to per base) / (from per base)
+        BigDecimal[] crossRates = new BigDecimal[size * size];
+        for (int from = 0; from < size; from++) {
+            for (int to = 0; to < size; to++) {
+                crossRates[from * size + to] = from == to ? BigDecimal.ONE : crossRate(rates[from], rates[to]);
+            }
+        }
+        return new ExchangeRates(version != null ? version : "", slotByCode, crossRates, size);
+    }
+
+    /**
+     * Rounded to {@code RATE_SCALE} places and stripped of trailing zeros,
+     * keeping the scale non-negative so {@link Money#multiply(BigDecimal)}
+     * can take its long arithmetic path
+     */
+    private static BigDecimal crossRate(BigDecimal fromPerBase, BigDecimal toPerBase) {
+        BigDecimal rate = toPerBase.divide(fromPerBase, MathContext.DECIMAL64)
+            .setScale(RATE_SCALE, RoundingMode.HALF_UP).stripTrailingZeros();
+        if (rate.signum() == 0) {
+            throw new IllegalArgumentException("Exchange rate too small: " + toPerBase + "/" + fromPerBase);
+        }
+        return rate.scale() < 0 ? rate.setScale(0) : rate;
+    }
+
+    public static ExchangeRates load(Path file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("Rate file cannot be null");
+        }
+        try (InputStream in = Files.newInputStream(file);
+             Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            Properties properties = new Properties();
+            properties.load(reader);
+            return fromProperties(properties);
+        }
+    }
+
+    /**
+     * Table from a {@code base} currency key, an optional {@code version} key
+     * and one key per quoted currency
+     */
+    public static ExchangeRates fromProperties(Properties properties) {
+        if (properties == null) {
+            throw new IllegalArgumentException("Properties cannot be null");
+        }
+        String base = properties.getProperty("base");
+        if (base == null || base.trim().isEmpty()) {
+            throw new IllegalArgumentException("Exchange rates need a base currency");
+        }
+        Map<String, BigDecimal> rates = new LinkedHashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.equals("base") || key.equals("version")) {
+                continue;
+            }
+            String raw = properties.getProperty(key).trim();
+            try {
+                rates.put(key, new BigDecimal(raw));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid exchange rate " + key + ": " + raw, e);
+            }
+        }
+        return of(properties.getProperty("version", "default").trim(), base, rates);
+    }
+
+    /**
+     * Units of {@code to} per one unit of {@code from}
+     *
+     * @throws IllegalArgumentException if either currency is not in the table
+     */
+    public BigDecimal getRate(String from, String to) {
+        return rate(Money.currencyCode(from), Money.currencyCode(to));
+    }
+
+    public boolean supports(String currency) {
+        return slot(Money.currencyCode(currency)) != NO_SLOT;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    BigDecimal rate(int fromCode, int toCode) {
+        int from = slot(fromCode);
+        int to = slot(toCode);
+        if (from == NO_SLOT || to == NO_SLOT) {
+            throw new IllegalArgumentException("No exchange rate from " + Money.currencyName(fromCode)
+                + " to " + Money.currencyName(toCode) + " in rates " + version);
+        }
+        return crossRates[from * size + to];
+    }
+
+    private int slot(int code) {
+        return code < slotByCode.length ? slotByCode[code] : NO_SLOT;
+    }
+
+    private static ExchangeRates initial() {
+        String configured = System.getProperty("mrdinner.fx.rates");
+        if (configured == null) {
+            return EMPTY;
+        }
+        try {
+            return load(Paths.get(configured.trim()));
+        } catch (IOException | RuntimeException e) {
+            // Thrown from class init this would surface as NoClassDefFoundError
+            // on every later Money conversion; start without rates instead
+            System.err.println("Cannot load mrdinner.fx.rates " + configured + " (" + e + "); no exchange rates installed");
+            return EMPTY;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ExchangeRates{version='%s', currencies=%d}", version, size);
+    }
+}
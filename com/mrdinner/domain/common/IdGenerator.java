@@ -0,0 +1,9 @@
+package com.mrdinner.domain.common;
+
+/**
+ * Source of unique identifiers for domain entities
+ */
+public interface IdGenerator {
+
+    String nextId();
+}
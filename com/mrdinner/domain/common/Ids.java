@@ -0,0 +1,51 @@
+package com.mrdinner.domain.common;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Shared ID generator used by domain entities. Defaults to a
+ * {@link SnowflakeIdGenerator} whose node number comes from the
+ * {@code mrdinner.node.id} system property, or is picked at random when the
+ * property is unset or invalid.
+ */
+public final class Ids {
+    private static volatile IdGenerator generator = new SnowflakeIdGenerator(defaultNodeId());
+
+    private Ids() {
+    }
+
+    public static String next() {
+        return generator.nextId();
+    }
+
+    public static IdGenerator getGenerator() {
+        return generator;
+    }
+
+    public static void setGenerator(IdGenerator idGenerator) {
+        if (idGenerator == null) {
+            throw new IllegalArgumentException("ID generator cannot be null");
+        }
+        generator = idGenerator;
+    }
+
+    private static int defaultNodeId() {
+        String configured = System.getProperty("mrdinner.node.id");
+        int random = ThreadLocalRandom.current().nextInt(SnowflakeIdGenerator.MAX_NODE_ID + 1);
+        if (configured != null) {
+            try {
+                int nodeId = Integer.parseInt(configured.trim());
+                if (nodeId >= 0 && nodeId <= SnowflakeIdGenerator.MAX_NODE_ID) {
+                    return nodeId;
+                }
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+            // Thrown from class init this would surface as NoClassDefFoundError
+            // on every later entity construction; run with a random node instead
+            System.err.println("Invalid mrdinner.node.id '" + configured + "' (expected 0-"
+                + SnowflakeIdGenerator.MAX_NODE_ID + "); using random node " + random);
+        }
+        return random;
+    }
+}
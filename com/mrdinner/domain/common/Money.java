@@ -1,65 +1,173 @@
 package com.mrdinner.domain.common;
 
 import java.math.BigDecimal;
-import java.util.Objects;
+import java.math.RoundingMode;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Value object representing monetary amounts
+ * Value object representing monetary amounts.
+ *
+ * Amounts are held as a long count of minor units (cents) with a fixed scale
+ * of 2, and currencies are interned to small integer codes, so arithmetic
+ * needs no BigDecimal and a currency check is an int comparison. Rounding
+ * matches the BigDecimal form: every result is rounded half-up to 2 decimal
+ * places, and a result that is negative before rounding is rejected.
+ *
+ * Amounts convert between currencies with {@link #convertTo}, using the
+ * current {@link ExchangeRates} table.
  */
-public class Money {
-    private final BigDecimal amount;
-    private final String currency;
+public class Money implements Comparable<Money> {
+    private static final int SCALE = 2;
+    private static final int MAX_INTERNED_CURRENCIES = 1024;
+    private static final long[] POWERS_OF_TEN = {
+        1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L,
+        1_000_000_000L, 10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L,
+        10_000_000_000_000L, 100_000_000_000_000L, 1_000_000_000_000_000L,
+        10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L
+    };
+    /** Currency code by currency text, as given and normalized */
+    private static final Map<String, Integer> CURRENCY_CODES = new ConcurrentHashMap<>();
+    /** Normalized currency by code; a slot is filled before its code is published */
+    private static final String[] CURRENCY_NAMES = new String[MAX_INTERNED_CURRENCIES];
+    private static final Money[] ZEROS = new Money[MAX_INTERNED_CURRENCIES];
+    private static int currencyCount;
+
+    private final long minorUnits;
+    private final int currencyCode;
 
     public Money(BigDecimal amount, String currency) {
         if (amount == null) {
             throw new IllegalArgumentException("Amount cannot be null");
         }
-        if (currency == null || currency.trim().isEmpty()) {
-            throw new IllegalArgumentException("Currency cannot be null or empty");
-        }
-        if (amount.compareTo(BigDecimal.ZERO) < 0) {
+        int code = currencyCode(currency);
+        if (amount.signum() < 0) {
             throw new IllegalArgumentException("Amount cannot be negative");
         }
-        this.amount = amount.setScale(2, BigDecimal.ROUND_HALF_UP);
-        this.currency = currency.trim().toUpperCase();
+        this.minorUnits = toMinorUnits(amount);
+        this.currencyCode = code;
     }
 
     public Money(double amount, String currency) {
         this(BigDecimal.valueOf(amount), currency);
     }
 
+    private Money(long minorUnits, int currencyCode, boolean normalized) {
+        this.minorUnits = minorUnits;
+        this.currencyCode = currencyCode;
+    }
+
     public BigDecimal getAmount() {
-        return amount;
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    /**
+     * Amount in minor units, e.g. cents for USD
+     */
+    public long getMinorUnits() {
+        return minorUnits;
     }
 
     public String getCurrency() {
-        return currency;
+        return CURRENCY_NAMES[currencyCode];
+    }
+
+    /**
+     * Interned code of this amount's currency; see {@link #currencyCode(String)}
+     */
+    public int getCurrencyCode() {
+        return currencyCode;
+    }
+
+    public boolean isZero() {
+        return minorUnits == 0;
     }
 
     public Money add(Money other) {
         validateSameCurrency(other);
-        return new Money(this.amount.add(other.amount), this.currency);
+        return new Money(Math.addExact(minorUnits, other.minorUnits), currencyCode, true);
     }
 
     public Money subtract(Money other) {
         validateSameCurrency(other);
-        BigDecimal result = this.amount.subtract(other.amount);
-        if (result.compareTo(BigDecimal.ZERO) < 0) {
+        long result = minorUnits - other.minorUnits;
+        if (result < 0) {
             throw new IllegalArgumentException("Result cannot be negative");
         }
-        return new Money(result, this.currency);
+        return new Money(result, currencyCode, true);
     }
 
     public Money multiply(BigDecimal multiplier) {
-        return new Money(this.amount.multiply(multiplier), this.currency);
+        if (multiplier.signum() < 0 && minorUnits != 0) {
+            throw new IllegalArgumentException("Amount cannot be negative");
+        }
+        int scale = multiplier.scale();
+        if (scale >= 0 && scale < POWERS_OF_TEN.length && multiplier.precision() <= 18) {
+            long factor = multiplier.unscaledValue().longValue();
+            long high = Math.multiplyHigh(minorUnits, factor);
+            long product = minorUnits * factor;
+            if ((high == 0 && product >= 0) || (high == -1 && product < 0)) {
+                return new Money(roundHalfUp(product, scale), currencyCode, true);
+            }
+        }
+        return new Money(toMinorUnits(getAmount().multiply(multiplier)), currencyCode, true);
     }
 
     public Money multiply(double multiplier) {
+        long whole = (long) multiplier;
+        if (whole == multiplier && Math.abs(whole) <= Integer.MAX_VALUE) {
+            return multiply(whole);
+        }
         return multiply(BigDecimal.valueOf(multiplier));
     }
 
+    /**
+     * Multiply by a whole quantity; exact, no rounding needed
+     */
+    public Money multiply(long quantity) {
+        if (quantity < 0 && minorUnits != 0) {
+            throw new IllegalArgumentException("Amount cannot be negative");
+        }
+        return new Money(Math.multiplyExact(minorUnits, quantity), currencyCode, true);
+    }
+
+    /**
+     * This amount in {@code currency} at the current exchange rates
+     *
+     * @throws IllegalArgumentException if the current table has no rate for the pair
+     */
+    public Money convertTo(String currency) {
+        return convertTo(currency, ExchangeRates.current());
+    }
+
+    /**
+     * This amount in {@code currency} at the given exchange rates
+     */
+    public Money convertTo(String currency, ExchangeRates rates) {
+        return convertTo(currencyCode(currency), rates);
+    }
+
+    Money convertTo(int targetCode, ExchangeRates rates) {
+        if (targetCode == currencyCode) {
+            return this;
+        }
+        if (rates == null) {
+            throw new IllegalArgumentException("Exchange rates cannot be null");
+        }
+        return new Money(minorUnits, targetCode, true).multiply(rates.rate(currencyCode, targetCode));
+    }
+
+    /**
+     * Compare amounts of the same currency
+     */
+    @Override
+    public int compareTo(Money other) {
+        validateSameCurrency(other);
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
     private void validateSameCurrency(Money other) {
-        if (!this.currency.equals(other.currency)) {
+        if (currencyCode != other.currencyCode) {
             throw new IllegalArgumentException("Cannot operate on different currencies");
         }
     }
@@ -69,25 +177,116 @@ public class Money {
         if (this == obj) return true;
         if (obj == null || getClass() != obj.getClass()) return false;
         Money money = (Money) obj;
-        return Objects.equals(amount, money.amount) && Objects.equals(currency, money.currency);
+        return minorUnits == money.minorUnits && currencyCode == money.currencyCode;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(amount, currency);
+        return 31 * Long.hashCode(minorUnits) + currencyCode;
     }
 
     @Override
     public String toString() {
-        return String.format("%.2f %s", amount, currency);
+        return String.format("%.2f %s", getAmount(), getCurrency());
     }
 
     public static Money zero(String currency) {
-        return new Money(BigDecimal.ZERO, currency);
+        int code = currencyCode(currency);
+        Money zero = ZEROS[code];
+        if (zero == null) {
+            // Racing threads may each create one; any of them is correct
+            zero = new Money(0L, code, true);
+            ZEROS[code] = zero;
+        }
+        return zero;
     }
 
     public static Money of(double amount, String currency) {
         return new Money(amount, currency);
     }
-}
 
+    /**
+     * Create an amount directly from minor units, e.g. cents for USD
+     */
+    public static Money ofMinor(long minorUnits, String currency) {
+        int code = currencyCode(currency);
+        if (minorUnits < 0) {
+            throw new IllegalArgumentException("Amount cannot be negative");
+        }
+        return new Money(minorUnits, code, true);
+    }
+
+    /**
+     * Small integer code for a currency, assigned on first use. Codes are
+     * dense from 0 and stable for the life of the process; text that differs
+     * only in case or surrounding spaces gets the same code.
+     */
+    public static int currencyCode(String currency) {
+        if (currency == null) {
+            throw new IllegalArgumentException("Currency cannot be null or empty");
+        }
+        Integer code = CURRENCY_CODES.get(currency);
+        return code != null ? code : registerCurrency(currency);
+    }
+
+    /**
+     * Currency for a code from {@link #currencyCode(String)}
+     */
+    public static String currencyName(int code) {
+        String name = code >= 0 && code < CURRENCY_NAMES.length ? CURRENCY_NAMES[code] : null;
+        if (name == null) {
+            throw new IllegalArgumentException("Unknown currency code: " + code);
+        }
+        return name;
+    }
+
+    /**
+     * Canonical instance of a trimmed, upper-case currency code
+     */
+    static String internCurrency(String currency) {
+        return CURRENCY_NAMES[currencyCode(currency)];
+    }
+
+    private static synchronized int registerCurrency(String currency) {
+        String normalized = currency.trim().toUpperCase();
+        if (normalized.isEmpty()) {
+            throw new IllegalArgumentException("Currency cannot be null or empty");
+        }
+        Integer code = CURRENCY_CODES.get(normalized);
+        if (code == null) {
+            if (currencyCount == MAX_INTERNED_CURRENCIES) {
+                throw new IllegalArgumentException("Too many currencies, cannot add " + normalized);
+            }
+            code = currencyCount++;
+            CURRENCY_NAMES[code] = normalized;
+            CURRENCY_CODES.put(normalized, code);
+        }
+        // Remember the text as given too, so lookups skip normalizing it
+        if (CURRENCY_CODES.size() < 4 * MAX_INTERNED_CURRENCIES) {
+            CURRENCY_CODES.putIfAbsent(currency, code);
+        }
+        return code;
+    }
+
+    private static long toMinorUnits(BigDecimal amount) {
+        try {
+            return amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount is too large: " + amount, e);
+        }
+    }
+
+    /**
+     * Round a non-negative value with {@code SCALE + extraScale} decimal places
+     * half-up to {@code SCALE} places
+     */
+    private static long roundHalfUp(long value, int extraScale) {
+        if (extraScale == 0) {
+            return value;
+        }
+        long divisor = POWERS_OF_TEN[extraScale];
+        long quotient = value / divisor;
+        long remainder = value - quotient * divisor;
+        return remainder >= divisor - remainder ? quotient + 1 : quotient;
+    }
+}
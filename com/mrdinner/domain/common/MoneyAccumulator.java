@@ -0,0 +1,145 @@
+package com.mrdinner.domain.common;
+
+import java.util.function.Function;
+import java.util.stream.Collector;
+
+/**
+ * Mutable running total of {@link Money} amounts in one currency. Adding an
+ * amount touches only a long, so summing many amounts creates one
+ * {@code Money} at the end instead of one per element. The per-element
+ * currency check compares interned currency codes. Not thread-safe; streams
+ * combine per-thread accumulators with {@link #merge}. For totals that mix
+ * currencies, see {@link MultiCurrencyAccumulator}.
+ */
+public final class MoneyAccumulator {
+    private static final int NO_CURRENCY = -1;
+
+    private int currencyCode = NO_CURRENCY;
+    private long minorUnits;
+    private long count;
+
+    /**
+     * Accumulator whose currency is taken from the first amount added
+     */
+    public MoneyAccumulator() {
+    }
+
+    public MoneyAccumulator(String currency) {
+        this.currencyCode = Money.currencyCode(currency);
+    }
+
+    public MoneyAccumulator add(Money amount) {
+        if (amount == null) {
+            throw new IllegalArgumentException("Amount cannot be null");
+        }
+        checkCurrency(amount.getCurrencyCode());
+        minorUnits = Math.addExact(minorUnits, amount.getMinorUnits());
+        count++;
+        return this;
+    }
+
+    /**
+     * Add {@code unitAmount * quantity} without creating the product
+     */
+    public MoneyAccumulator add(Money unitAmount, long quantity) {
+        if (unitAmount == null) {
+            throw new IllegalArgumentException("Amount cannot be null");
+        }
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity cannot be negative");
+        }
+        checkCurrency(unitAmount.getCurrencyCode());
+        minorUnits = Math.addExact(minorUnits, Math.multiplyExact(unitAmount.getMinorUnits(), quantity));
+        count++;
+        return this;
+    }
+
+    /**
+     * Add another accumulator's total into this one
+     */
+    public MoneyAccumulator merge(MoneyAccumulator other) {
+        if (other.currencyCode != NO_CURRENCY) {
+            checkCurrency(other.currencyCode);
+        }
+        minorUnits = Math.addExact(minorUnits, other.minorUnits);
+        count += other.count;
+        return this;
+    }
+
+    public void reset() {
+        minorUnits = 0;
+        count = 0;
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    /**
+     * Number of amounts added
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public String getCurrency() {
+        return currencyCode == NO_CURRENCY ? null : Money.currencyName(currencyCode);
+    }
+
+    /**
+     * The total as a {@code Money}. An accumulator with no currency yet
+     * cannot produce one.
+     */
+    public Money toMoney() {
+        if (currencyCode == NO_CURRENCY) {
+            throw new IllegalStateException("Currency unknown: no amounts added and none given");
+        }
+        return Money.ofMinor(minorUnits, Money.currencyName(currencyCode));
+    }
+
+    /**
+     * Collector summing amounts into one {@code Money}; an empty stream gives
+     * zero in {@code currency}
+     */
+    public static Collector<Money, MoneyAccumulator, Money> summing(String currency) {
+        String code = Money.internCurrency(currency);
+        return Collector.of(
+            () -> new MoneyAccumulator(code),
+            MoneyAccumulator::add,
+            MoneyAccumulator::merge,
+            MoneyAccumulator::toMoney,
+            Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * Collector summing the amount {@code mapper} returns for each element
+     */
+    public static <T> Collector<T, MoneyAccumulator, Money> summing(String currency,
+                                                                Function<? super T, Money> mapper) {
+        String code = Money.internCurrency(currency);
+        return Collector.of(
+            () -> new MoneyAccumulator(code),
+            (accumulator, element) -> accumulator.add(mapper.apply(element)),
+            MoneyAccumulator::merge,
+            MoneyAccumulator::toMoney,
+            Collector.Characteristics.UNORDERED);
+    }
+
+    private void checkCurrency(int otherCode) {
+        if (currencyCode == NO_CURRENCY) {
+            currencyCode = otherCode;
+        } else if (currencyCode != otherCode) {
+            throw new IllegalArgumentException("Cannot operate on different currencies");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return currencyCode == NO_CURRENCY ? "MoneyAccumulator{empty}"
+            : String.format("MoneyAccumulator{%s, count=%d}", toMoney(), count);
+    }
+}
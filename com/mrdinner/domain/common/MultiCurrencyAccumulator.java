@@ -0,0 +1,167 @@
+package com.mrdinner.domain.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collector;
+
+/**
+ * Mutable running totals of {@link Money} amounts in any mix of currencies.
+ * Each amount is added to a long slot indexed by its interned currency code,
+ * so adding never converts; {@link #toMoney(String, ExchangeRates)} converts
+ * each currency's total once at the end. Not thread-safe; streams combine
+ * per-thread accumulators with {@link #merge}.
+ */
+public final class MultiCurrencyAccumulator {
+    private long[] minorUnitsByCode = new long[4];
+    private long count;
+
+    public MultiCurrencyAccumulator add(Money amount) {
+        if (amount == null) {
+            throw new IllegalArgumentException("Amount cannot be null");
+        }
+        int code = slotFor(amount.getCurrencyCode());
+        minorUnitsByCode[code] = Math.addExact(minorUnitsByCode[code], amount.getMinorUnits());
+        count++;
+        return this;
+    }
+
+    /**
+     * Add {@code unitAmount * quantity} without creating the product
+     */
+    public MultiCurrencyAccumulator add(Money unitAmount, long quantity) {
+        if (unitAmount == null) {
+            throw new IllegalArgumentException("Amount cannot be null");
+        }
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity cannot be negative");
+        }
+        int code = slotFor(unitAmount.getCurrencyCode());
+        minorUnitsByCode[code] = Math.addExact(minorUnitsByCode[code],
+            Math.multiplyExact(unitAmount.getMinorUnits(), quantity));
+        count++;
+        return this;
+    }
+
+    /**
+     * Add another accumulator's totals into this one
+     */
+    public MultiCurrencyAccumulator merge(MultiCurrencyAccumulator other) {
+        if (other.minorUnitsByCode.length > minorUnitsByCode.length) {
+            minorUnitsByCode = Arrays.copyOf(minorUnitsByCode, other.minorUnitsByCode.length);
+        }
+        for (int code = 0; code < other.minorUnitsByCode.length; code++) {
+            minorUnitsByCode[code] = Math.addExact(minorUnitsByCode[code], other.minorUnitsByCode[code]);
+        }
+        count += other.count;
+        return this;
+    }
+
+    public void reset() {
+        Arrays.fill(minorUnitsByCode, 0);
+        count = 0;
+    }
+
+    /**
+     * Unconverted total of the amounts added in {@code currency}
+     */
+    public Money getTotal(String currency) {
+        int code = Money.currencyCode(currency);
+        return Money.ofMinor(code < minorUnitsByCode.length ? minorUnitsByCode[code] : 0, currency);
+    }
+
+    /**
+     * Unconverted total per currency, for currencies with a non-zero total
+     */
+    public List<Money> getTotals() {
+        List<Money> totals = new ArrayList<>();
+        for (int code = 0; code < minorUnitsByCode.length; code++) {
+            if (minorUnitsByCode[code] != 0) {
+                totals.add(Money.ofMinor(minorUnitsByCode[code], Money.currencyName(code)));
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Number of amounts added
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Grand total in {@code currency} at the current exchange rates
+     */
+    public Money toMoney(String currency) {
+        return toMoney(currency, ExchangeRates.current());
+    }
+
+    /**
+     * Grand total in {@code currency}, converting each currency's total once
+     *
+     * @throws IllegalArgumentException if a currency with a non-zero total has no rate
+     */
+    public Money toMoney(String currency, ExchangeRates rates) {
+        int target = Money.currencyCode(currency);
+        long total = 0;
+        for (int code = 0; code < minorUnitsByCode.length; code++) {
+            long minorUnits = minorUnitsByCode[code];
+            if (minorUnits == 0) {
+                continue;
+            }
+            if (code != target) {
+                minorUnits = Money.ofMinor(minorUnits, Money.currencyName(code))
+                    .convertTo(target, rates).getMinorUnits();
+            }
+            total = Math.addExact(total, minorUnits);
+        }
+        return Money.ofMinor(total, currency);
+    }
+
+    /**
+     * Collector summing amounts of any currency into one {@code Money} in
+     * {@code currency} at the current exchange rates
+     */
+    public static Collector<Money, MultiCurrencyAccumulator, Money> converting(String currency) {
+        Money.currencyCode(currency);
+        return Collector.of(
+            MultiCurrencyAccumulator::new,
+            MultiCurrencyAccumulator::add,
+            MultiCurrencyAccumulator::merge,
+            accumulator -> accumulator.toMoney(currency),
+            Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * Collector summing the amount {@code mapper} returns for each element,
+     * converted once per currency at the end
+     */
+    public static <T> Collector<T, MultiCurrencyAccumulator, Money> converting(String currency,
+                                                                          Function<? super T, Money> mapper) {
+        Money.currencyCode(currency);
+        return Collector.of(
+            MultiCurrencyAccumulator::new,
+            (accumulator, element) -> accumulator.add(mapper.apply(element)),
+            MultiCurrencyAccumulator::merge,
+            accumulator -> accumulator.toMoney(currency),
+            Collector.Characteristics.UNORDERED);
+    }
+
+    private int slotFor(int code) {
+        if (code >= minorUnitsByCode.length) {
+            minorUnitsByCode = Arrays.copyOf(minorUnitsByCode, Math.max(code + 1, minorUnitsByCode.length * 2));
+        }
+        return code;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MultiCurrencyAccumulator{totals=%s, count=%d}", getTotals(), count);
+    }
+}
@@ -0,0 +1,102 @@
+package com.mrdinner.domain.common;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shared transition engine for one kind of entity: validates state changes
+ * against a {@link TransitionTable}, counts every transition taken and
+ * notifies registered listeners.
+ */
+public class StateMachine<T, S extends Enum<S>> {
+    private final TransitionTable<S> table;
+    private final LongAdder[] counters;
+    private final List<TransitionListener<T, S>> listeners = new CopyOnWriteArrayList<>();
+    private final LongAdder listenerFailures = new LongAdder();
+
+    public StateMachine(TransitionTable<S> table) {
+        if (table == null) {
+            throw new IllegalArgumentException("Transition table cannot be null");
+        }
+        this.table = table;
+        int states = table.stateCount();
+        this.counters = new LongAdder[states * states];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Throw if the table does not allow moving from {@code from} to {@code to}
+     */
+    public void checkTransition(S from, S to) {
+        if (!table.isAllowed(from, to)) {
+            throw new IllegalArgumentException(
+                String.format("Cannot transition from %s to %s", from, to));
+        }
+    }
+
+    /**
+     * Record a transition the entity has just applied and notify listeners.
+     * A failing listener does not undo the transition or stop other listeners;
+     * failures are counted instead.
+     */
+    public void transitioned(T entity, S from, S to, LocalDateTime timestamp) {
+        counters[from.ordinal() * table.stateCount() + to.ordinal()].increment();
+        if (listeners.isEmpty()) {
+            return;
+        }
+        StateTransition<T, S> transition = new StateTransition<>(entity, from, to, timestamp);
+        for (TransitionListener<T, S> listener : listeners) {
+            try {
+                listener.onTransition(transition);
+            } catch (RuntimeException e) {
+                listenerFailures.increment();
+            }
+        }
+    }
+
+    public void addListener(TransitionListener<T, S> listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null");
+        }
+        listeners.add(listener);
+    }
+
+    public boolean removeListener(TransitionListener<T, S> listener) {
+        return listeners.remove(listener);
+    }
+
+    public long getTransitionCount(S from, S to) {
+        return counters[from.ordinal() * table.stateCount() + to.ordinal()].sum();
+    }
+
+    /**
+     * Number of transitions into {@code to} from any state
+     */
+    public long getTransitionCountInto(S to) {
+        long total = 0;
+        for (int from = 0; from < table.stateCount(); from++) {
+            total += counters[from * table.stateCount() + to.ordinal()].sum();
+        }
+        return total;
+    }
+
+    public long getTotalTransitionCount() {
+        long total = 0;
+        for (LongAdder counter : counters) {
+            total += counter.sum();
+        }
+        return total;
+    }
+
+    public long getListenerFailureCount() {
+        return listenerFailures.sum();
+    }
+
+    public TransitionTable<S> getTable() {
+        return table;
+    }
+}
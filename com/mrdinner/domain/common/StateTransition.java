@@ -0,0 +1,41 @@
+package com.mrdinner.domain.common;
+
+import java.time.LocalDateTime;
+
+/**
+ * A single state change of an entity, as passed to {@link TransitionListener}s
+ */
+public class StateTransition<T, S extends Enum<S>> {
+    private final T entity;
+    private final S from;
+    private final S to;
+    private final LocalDateTime timestamp;
+
+    public StateTransition(T entity, S from, S to, LocalDateTime timestamp) {
+        this.entity = entity;
+        this.from = from;
+        this.to = to;
+        this.timestamp = timestamp;
+    }
+
+    public T getEntity() {
+        return entity;
+    }
+
+    public S getFrom() {
+        return from;
+    }
+
+    public S getTo() {
+        return to;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StateTransition{%s -> %s at %s}", from, to, timestamp);
+    }
+}
@@ -0,0 +1,10 @@
+package com.mrdinner.domain.common;
+
+/**
+ * Receives every state change applied through a {@link StateMachine}. Called
+ * synchronously on the thread that changed the state, after the change.
+ */
+public interface TransitionListener<T, S extends Enum<S>> {
+
+    void onTransition(StateTransition<T, S> transition);
+}
@@ -0,0 +1,77 @@
+package com.mrdinner.domain.common;
+
+/**
+ * Precomputed table of allowed state transitions for an enum with at most 64
+ * constants. Each state maps to a bitmask of the states it may move to, so a
+ * check is a single array load and bit test. Tables are immutable once
+ * built, so the shared tables handed out by the status enums are safe to
+ * expose.
+ */
+public final class TransitionTable<S extends Enum<S>> {
+    private final Class<S> stateType;
+    private final long[] allowed;
+
+    private TransitionTable(Class<S> stateType, long[] allowed) {
+        this.stateType = stateType;
+        this.allowed = allowed;
+    }
+
+    public static <S extends Enum<S>> Builder<S> builder(Class<S> stateType) {
+        if (stateType == null) {
+            throw new IllegalArgumentException("State type cannot be null");
+        }
+        return new Builder<>(stateType);
+    }
+
+    public boolean isAllowed(S from, S to) {
+        return from != null && to != null && (allowed[from.ordinal()] & (1L << to.ordinal())) != 0;
+    }
+
+    /**
+     * Bitmask of the states {@code from} may move to, indexed by ordinal
+     */
+    public long allowedMask(S from) {
+        return allowed[from.ordinal()];
+    }
+
+    public boolean isTerminal(S state) {
+        return allowed[state.ordinal()] == 0;
+    }
+
+    public Class<S> getStateType() {
+        return stateType;
+    }
+
+    public int stateCount() {
+        return allowed.length;
+    }
+
+    public static final class Builder<S extends Enum<S>> {
+        private final Class<S> stateType;
+        private final long[] allowed;
+
+        private Builder(Class<S> stateType) {
+            S[] states = stateType.getEnumConstants();
+            if (states.length > Long.SIZE) {
+                throw new IllegalArgumentException("Transition tables support at most 64 states");
+            }
+            this.stateType = stateType;
+            this.allowed = new long[states.length];
+        }
+
+        /**
+         * Allow {@code from} to move to each of {@code targets}
+         */
+        @SafeVarargs
+        public final Builder<S> allow(S from, S... targets) {
+            for (S target : targets) {
+                allowed[from.ordinal()] |= 1L << target.ordinal();
+            }
+            return this;
+        }
+
+        public TransitionTable<S> build() {
+            return new TransitionTable<>(stateType, allowed.clone());
+        }
+    }
+}
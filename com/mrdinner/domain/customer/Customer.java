@@ -1,8 +1,8 @@
 package com.mrdinner.domain.customer;
 
 import com.mrdinner.domain.common.Address;
+import com.mrdinner.domain.common.Ids;
 import java.util.Objects;
-import java.util.UUID;
 
 /**
  * Customer entity representing a customer in the system
@@ -16,7 +16,14 @@ public class Customer {
     private CustomerStatus status;
 
     public Customer(String name, String email, String phoneNumber, Address deliveryAddress) {
-        this.customerId = UUID.randomUUID().toString();
+        this(Ids.next(), name, email, phoneNumber, deliveryAddress);
+    }
+
+    /**
+     * Recreate an existing customer with its original ID
+     */
+    public Customer(String customerId, String name, String email, String phoneNumber, Address deliveryAddress) {
+        this.customerId = Objects.requireNonNull(customerId, "Customer ID cannot be null");
         this.name = validateAndTrim(name, "Name");
         this.email = validateEmail(email);
         this.phoneNumber = validatePhoneNumber(phoneNumber);
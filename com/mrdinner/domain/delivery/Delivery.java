@@ -1,23 +1,28 @@
 package com.mrdinner.domain.delivery;
 
 import com.mrdinner.domain.common.Address;
+import com.mrdinner.domain.common.Ids;
 import com.mrdinner.domain.common.Money;
+import com.mrdinner.domain.common.StateMachine;
 import com.mrdinner.domain.order.Order;
 import com.mrdinner.domain.staff.Courier;
 import java.time.LocalDateTime;
 import java.util.Objects;
-import java.util.UUID;
 
 /**
  * Entity representing a delivery
  */
 public class Delivery {
+    private static final StateMachine<Delivery, DeliveryStatus> STATE_MACHINE =
+        new StateMachine<>(DeliveryStatus.transitions());
+
     private final String deliveryId;
     private final Order order;
     private final Address pickupAddress;
     private final Address deliveryAddress;
     private final LocalDateTime requestedDeliveryTime;
     private DeliveryStatus status;
+    private LocalDateTime statusChangedTime;
     private Courier assignedCourier;
     private LocalDateTime assignedTime;
     private LocalDateTime pickupTime;
@@ -29,12 +34,13 @@ public class Delivery {
 
     public Delivery(Order order, Address pickupAddress, Address deliveryAddress, 
                    LocalDateTime requestedDeliveryTime, Money deliveryFee) {
-        this.deliveryId = UUID.randomUUID().toString();
+        this.deliveryId = Ids.next();
         this.order = Objects.requireNonNull(order, "Order cannot be null");
         this.pickupAddress = Objects.requireNonNull(pickupAddress, "Pickup address cannot be null");
         this.deliveryAddress = Objects.requireNonNull(deliveryAddress, "Delivery address cannot be null");
         this.requestedDeliveryTime = Objects.requireNonNull(requestedDeliveryTime, "Requested delivery time cannot be null");
         this.status = DeliveryStatus.PENDING;
+        this.statusChangedTime = LocalDateTime.now();
         this.deliveryFee = Objects.requireNonNull(deliveryFee, "Delivery fee cannot be null");
         this.tip = Money.zero("USD");
         this.deliveryNotes = "";
@@ -66,11 +72,27 @@ public class Delivery {
     }
 
     public void setStatus(DeliveryStatus status) {
-        if (!this.status.canTransitionTo(status)) {
-            throw new IllegalArgumentException(
-                String.format("Cannot transition from %s to %s", this.status, status));
-        }
+        STATE_MACHINE.checkTransition(this.status, status);
+        DeliveryStatus previousStatus = this.status;
+        LocalDateTime changedTime = LocalDateTime.now();
         this.status = status;
+        this.statusChangedTime = changedTime;
+        STATE_MACHINE.transitioned(this, previousStatus, status, changedTime);
+    }
+
+    /**
+     * Time of the last status change, or creation time if none yet
+     */
+    public LocalDateTime getStatusChangedTime() {
+        return statusChangedTime;
+    }
+
+    /**
+     * Transition engine shared by all deliveries; register listeners and read
+     * per-transition counters here
+     */
+    public static StateMachine<Delivery, DeliveryStatus> stateMachine() {
+        return STATE_MACHINE;
     }
 
     public Courier getAssignedCourier() {
@@ -109,6 +131,7 @@ public class Delivery {
             throw new IllegalStateException("No courier assigned to delivery");
         }
         
+        assignedCourier.startDelivery(this);
         this.pickupTime = LocalDateTime.now();
         setStatus(DeliveryStatus.PICKED_UP);
     }
@@ -1,5 +1,7 @@
 package com.mrdinner.domain.delivery;
 
+import com.mrdinner.domain.common.TransitionTable;
+
 /**
  * Enumeration representing the status of a delivery
  */
@@ -13,6 +15,15 @@ public enum DeliveryStatus {
     RETURNED("Order returned to restaurant"),
     CANCELLED("Delivery was cancelled");
 
+    private static final TransitionTable<DeliveryStatus> TRANSITIONS = TransitionTable.builder(DeliveryStatus.class)
+        .allow(PENDING, ASSIGNED, CANCELLED)
+        .allow(ASSIGNED, PICKED_UP, CANCELLED)
+        .allow(PICKED_UP, IN_TRANSIT, RETURNED, CANCELLED)
+        .allow(IN_TRANSIT, DELIVERED, FAILED, CANCELLED)
+        .allow(FAILED, RETURNED, CANCELLED)
+        .allow(RETURNED, PICKED_UP, CANCELLED)
+        .build();
+
     private final String description;
 
     DeliveryStatus(String description) {
@@ -24,26 +35,14 @@ public enum DeliveryStatus {
     }
 
     public boolean canTransitionTo(DeliveryStatus newStatus) {
-        switch (this) {
-            case PENDING:
-                return newStatus == ASSIGNED || newStatus == CANCELLED;
-            case ASSIGNED:
-                return newStatus == PICKED_UP || newStatus == CANCELLED;
-            case PICKED_UP:
-                return newStatus == IN_TRANSIT || newStatus == RETURNED || newStatus == CANCELLED;
-            case IN_TRANSIT:
-                return newStatus == DELIVERED || newStatus == FAILED || newStatus == CANCELLED;
-            case DELIVERED:
-                return false; // Cannot transition from delivered
-            case FAILED:
-                return newStatus == RETURNED || newStatus == CANCELLED;
-            case RETURNED:
-                return newStatus == PICKED_UP || newStatus == CANCELLED;
-            case CANCELLED:
-                return false; // Cannot transition from cancelled
-            default:
-                return false;
-        }
+        return TRANSITIONS.isAllowed(this, newStatus);
+    }
+
+    /**
+     * Allowed transitions between DeliveryStatus values
+     */
+    public static TransitionTable<DeliveryStatus> transitions() {
+        return TRANSITIONS;
     }
 
     public boolean isActive() {
@@ -0,0 +1,37 @@
+package com.mrdinner.domain.event;
+
+import com.mrdinner.domain.delivery.Delivery;
+import com.mrdinner.domain.staff.Courier;
+import java.util.Objects;
+
+/**
+ * A courier was assigned to a delivery
+ */
+public class DeliveryAssignedEvent extends DomainEvent {
+    private final Delivery delivery;
+    private final Courier courier;
+
+    public DeliveryAssignedEvent(Delivery delivery, Courier courier) {
+        this.delivery = Objects.requireNonNull(delivery, "Delivery cannot be null");
+        this.courier = Objects.requireNonNull(courier, "Courier cannot be null");
+    }
+
+    public Delivery getDelivery() {
+        return delivery;
+    }
+
+    public Courier getCourier() {
+        return courier;
+    }
+
+    @Override
+    public String getPartitionKey() {
+        return delivery.getOrder().getOrderId();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DeliveryAssignedEvent{delivery='%s', courier='%s'}",
+            delivery.getDeliveryId(), courier.getFullName());
+    }
+}
@@ -0,0 +1,29 @@
+package com.mrdinner.domain.event;
+
+import com.mrdinner.domain.delivery.Delivery;
+import java.util.Objects;
+
+/**
+ * A delivery reached the customer
+ */
+public class DeliveryCompletedEvent extends DomainEvent {
+    private final Delivery delivery;
+
+    public DeliveryCompletedEvent(Delivery delivery) {
+        this.delivery = Objects.requireNonNull(delivery, "Delivery cannot be null");
+    }
+
+    public Delivery getDelivery() {
+        return delivery;
+    }
+
+    @Override
+    public String getPartitionKey() {
+        return delivery.getOrder().getOrderId();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DeliveryCompletedEvent{delivery='%s'}", delivery.getDeliveryId());
+    }
+}
@@ -0,0 +1,25 @@
+package com.mrdinner.domain.event;
+
+import java.time.LocalDateTime;
+
+/**
+ * Something that happened in the domain. Events with the same partition key
+ * are delivered in the order they were published.
+ */
+public abstract class DomainEvent {
+    private final LocalDateTime occurredAt;
+
+    protected DomainEvent() {
+        this.occurredAt = LocalDateTime.now();
+    }
+
+    public LocalDateTime getOccurredAt() {
+        return occurredAt;
+    }
+
+    /**
+     * Key that decides which partition of the event bus carries this event,
+     * typically the ID of the aggregate the event is about
+     */
+    public abstract String getPartitionKey();
+}
@@ -0,0 +1,35 @@
+package com.mrdinner.domain.event;
+
+import com.mrdinner.domain.order.Order;
+import java.util.Objects;
+
+/**
+ * An order was cancelled
+ */
+public class OrderCancelledEvent extends DomainEvent {
+    private final Order order;
+    private final String reason;
+
+    public OrderCancelledEvent(Order order, String reason) {
+        this.order = Objects.requireNonNull(order, "Order cannot be null");
+        this.reason = reason != null ? reason : "";
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    @Override
+    public String getPartitionKey() {
+        return order.getOrderId();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("OrderCancelledEvent{order='%s', reason='%s'}", order.getOrderId(), reason);
+    }
+}
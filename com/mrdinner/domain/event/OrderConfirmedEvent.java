@@ -0,0 +1,29 @@
+package com.mrdinner.domain.event;
+
+import com.mrdinner.domain.order.Order;
+import java.util.Objects;
+
+/**
+ * An order was confirmed and its stock consumed
+ */
+public class OrderConfirmedEvent extends DomainEvent {
+    private final Order order;
+
+    public OrderConfirmedEvent(Order order) {
+        this.order = Objects.requireNonNull(order, "Order cannot be null");
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    @Override
+    public String getPartitionKey() {
+        return order.getOrderId();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("OrderConfirmedEvent{order='%s'}", order.getOrderId());
+    }
+}
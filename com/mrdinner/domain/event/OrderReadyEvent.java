@@ -0,0 +1,29 @@
+package com.mrdinner.domain.event;
+
+import com.mrdinner.domain.order.Order;
+import java.util.Objects;
+
+/**
+ * An order left the kitchen and is ready for pickup or delivery
+ */
+public class OrderReadyEvent extends DomainEvent {
+    private final Order order;
+
+    public OrderReadyEvent(Order order) {
+        this.order = Objects.requireNonNull(order, "Order cannot be null");
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    @Override
+    public String getPartitionKey() {
+        return order.getOrderId();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("OrderReadyEvent{order='%s'}", order.getOrderId());
+    }
+}
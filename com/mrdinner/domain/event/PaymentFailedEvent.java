@@ -0,0 +1,30 @@
+package com.mrdinner.domain.event;
+
+import com.mrdinner.domain.payment.Payment;
+import java.util.Objects;
+
+/**
+ * Payment for an order was declined or could not be processed
+ */
+public class PaymentFailedEvent extends DomainEvent {
+    private final Payment payment;
+
+    public PaymentFailedEvent(Payment payment) {
+        this.payment = Objects.requireNonNull(payment, "Payment cannot be null");
+    }
+
+    public Payment getPayment() {
+        return payment;
+    }
+
+    @Override
+    public String getPartitionKey() {
+        return payment.getOrder().getOrderId();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PaymentFailedEvent{order='%s', amount=%s}",
+            payment.getOrder().getOrderId(), payment.getAmount());
+    }
+}
@@ -0,0 +1,45 @@
+package com.mrdinner.domain.event;
+
+import com.mrdinner.domain.inventory.StockItem;
+import java.util.Objects;
+
+/**
+ * A stock item dropped to or below its minimum quantity
+ */
+public class StockLowEvent extends DomainEvent {
+    private final StockItem stockItem;
+    private final int quantity;
+    private final int minimumQuantity;
+
+    public StockLowEvent(StockItem stockItem) {
+        this.stockItem = Objects.requireNonNull(stockItem, "Stock item cannot be null");
+        this.quantity = stockItem.getCurrentQuantity();
+        this.minimumQuantity = stockItem.getMinimumQuantity();
+    }
+
+    public StockItem getStockItem() {
+        return stockItem;
+    }
+
+    /**
+     * Quantity on hand when the event was raised
+     */
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public int getMinimumQuantity() {
+        return minimumQuantity;
+    }
+
+    @Override
+    public String getPartitionKey() {
+        return stockItem.getStockItemId();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StockLowEvent{item='%s', quantity=%d, minimum=%d}",
+            stockItem.getItemName(), quantity, minimumQuantity);
+    }
+}
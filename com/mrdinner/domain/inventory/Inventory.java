@@ -1,27 +1,33 @@
 package com.mrdinner.domain.inventory;
 
+import com.mrdinner.domain.common.Ids;
 import com.mrdinner.domain.common.Money;
+import com.mrdinner.domain.common.MoneyAccumulator;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.stream.Collectors;
 
 /**
- * Entity representing the restaurant's inventory management system
+ * Entity representing the restaurant's inventory management system.
+ *
+ * Stock items and the transaction log are concurrent collections and stock
+ * quantities are atomic, so reservations for different orders proceed
+ * without a shared lock. The total value is computed when asked for.
  */
 public class Inventory {
     private final String inventoryId;
-    private Map<String, StockItem> stockItems;
-    private List<InventoryTransaction> transactions;
-    private LocalDate lastInventoryCheck;
-    private Money totalInventoryValue;
+    private final Map<String, StockItem> stockItems;
+    private final Queue<InventoryTransaction> transactions;
+    private volatile LocalDate lastInventoryCheck;
 
     public Inventory() {
-        this.inventoryId = UUID.randomUUID().toString();
-        this.stockItems = new HashMap<>();
-        this.transactions = new ArrayList<>();
+        this.inventoryId = Ids.next();
+        this.stockItems = new ConcurrentHashMap<>();
+        this.transactions = new ConcurrentLinkedQueue<>();
         this.lastInventoryCheck = LocalDate.now();
-        this.totalInventoryValue = Money.zero("USD");
     }
 
     public String getInventoryId() {
@@ -55,8 +61,6 @@ public class Inventory {
             "Added new stock item to inventory"
         );
         transactions.add(transaction);
-        
-        recalculateTotalValue();
     }
 
     public void removeStockItem(String stockItemId) {
@@ -70,8 +74,6 @@ public class Inventory {
                 "Removed stock item from inventory"
             );
             transactions.add(transaction);
-            
-            recalculateTotalValue();
         }
     }
 
@@ -91,8 +93,6 @@ public class Inventory {
             stockItem.removeStock(-difference);
             recordTransaction(TransactionType.CONSUMPTION, stockItem, -difference, "Stock consumed");
         }
-        
-        recalculateTotalValue();
     }
 
     public void consumeStock(String stockItemId, int quantity, String reason) {
@@ -103,7 +103,64 @@ public class Inventory {
         
         stockItem.removeStock(quantity);
         recordTransaction(TransactionType.CONSUMPTION, stockItem, quantity, reason);
-        recalculateTotalValue();
+    }
+
+    /**
+     * Reserve the stock in {@code requirements}: all of it or none. Items are
+     * claimed in stock index order, each with a compare-and-set bounded by
+     * what is on hand; if one is short, the items already claimed are put
+     * back. Concurrent reservations never oversell and never wait on each
+     * other, and competing ones meet on their first shared item. A reservation
+     * being rolled back can briefly make another see too little stock, never
+     * too much.
+     *
+     * @return the position in {@code requirements} of the first short item,
+     *         or -1 if everything was reserved
+     */
+    public int reserveStock(RecipeBook.Requirements requirements, String reason) {
+        StockItem[] items = requirements.stockItems;
+        int[] quantities = requirements.quantities;
+        for (int i = 0; i < items.length; i++) {
+            StockItem stockItem = items[i];
+            boolean claimed = stockItem != null && stockItems.get(stockItem.getStockItemId()) == stockItem
+                && stockItem.tryRemoveStock(quantities[i]);
+            if (!claimed) {
+                for (int j = i - 1; j >= 0; j--) {
+                    items[j].undoRemoveStock(quantities[j]);
+                }
+                return i;
+            }
+        }
+        for (int i = 0; i < items.length; i++) {
+            recordTransaction(TransactionType.CONSUMPTION, items[i], quantities[i], reason);
+        }
+        return -1;
+    }
+
+    /**
+     * Put back the stock in {@code requirements}, e.g. for a cancelled
+     * order. Items no longer in the inventory are skipped, and an item is
+     * only filled up to its maximum quantity.
+     *
+     * @return units that could not be put back
+     */
+    public int returnStock(RecipeBook.Requirements requirements, String reason) {
+        StockItem[] items = requirements.stockItems;
+        int[] quantities = requirements.quantities;
+        int notReturned = 0;
+        for (int i = 0; i < items.length; i++) {
+            StockItem stockItem = items[i];
+            if (stockItem == null || stockItems.get(stockItem.getStockItemId()) != stockItem) {
+                notReturned += quantities[i];
+                continue;
+            }
+            int returned = stockItem.returnStock(quantities[i]);
+            if (returned > 0) {
+                recordTransaction(TransactionType.RESTOCK, stockItem, returned, reason);
+            }
+            notReturned += quantities[i] - returned;
+        }
+        return notReturned;
     }
 
     public void restockItem(String stockItemId, int quantity, String reason) {
@@ -114,7 +171,6 @@ public class Inventory {
         
         stockItem.addStock(quantity);
         recordTransaction(TransactionType.RESTOCK, stockItem, quantity, reason);
-        recalculateTotalValue();
     }
 
     private void recordTransaction(TransactionType type, StockItem stockItem, int quantity, String reason) {
@@ -125,7 +181,7 @@ public class Inventory {
     }
 
     public List<InventoryTransaction> getTransactions() {
-        return Collections.unmodifiableList(transactions);
+        return Collections.unmodifiableList(new ArrayList<>(transactions));
     }
 
     public List<InventoryTransaction> getTransactionsByType(TransactionType type) {
@@ -171,13 +227,11 @@ public class Inventory {
     }
 
     public Money getTotalInventoryValue() {
-        return totalInventoryValue;
-    }
-
-    private void recalculateTotalValue() {
-        this.totalInventoryValue = stockItems.values().stream()
-            .map(StockItem::getTotalValue)
-            .reduce(Money.zero("USD"), Money::add);
+        MoneyAccumulator total = new MoneyAccumulator("USD");
+        for (StockItem item : stockItems.values()) {
+            total.add(item.getUnitCost(), item.getCurrentQuantity());
+        }
+        return total.toMoney();
     }
 
     public LocalDate getLastInventoryCheck() {
@@ -222,7 +276,7 @@ public class Inventory {
     @Override
     public String toString() {
         return String.format("Inventory{id='%s', items=%d, totalValue=%s, lastCheck=%s}", 
-            inventoryId, stockItems.size(), totalInventoryValue, lastInventoryCheck);
+            inventoryId, stockItems.size(), getTotalInventoryValue(), lastInventoryCheck);
     }
 
     public enum TransactionType {
@@ -254,7 +308,7 @@ public class Inventory {
 
         public InventoryTransaction(TransactionType transactionType, StockItem stockItem, 
                                   int quantity, String reason) {
-            this.transactionId = UUID.randomUUID().toString();
+            this.transactionId = Ids.next();
             this.transactionType = transactionType;
             this.stockItem = stockItem;
             this.quantity = quantity;
@@ -0,0 +1,330 @@
+package com.mrdinner.domain.inventory;
+
+import com.mrdinner.domain.menu.Dinner;
+import com.mrdinner.domain.menu.MenuItem;
+import com.mrdinner.domain.order.Order;
+import com.mrdinner.domain.order.OrderItem;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bill of materials: the stock each menu item and dinner consumes.
+ *
+ * Stock items are numbered densely as recipes first use them, and a recipe
+ * is one int array of (stock index, quantity) pairs. A dinner's recipe is
+ * flattened once - its own extras plus the recipe of every menu item in it,
+ * with repeated stock merged - and flattened again only after the dinner's
+ * items or a recipe change. Working out the stock an order needs is then a
+ * single pass over precomputed pairs per order line.
+ *
+ * Menu items and dinners without a recipe consume no stock.
+ */
+public class RecipeBook {
+    private static final Recipe EMPTY = new Recipe(new int[0]);
+
+    private final Map<String, Integer> stockIndexes = new ConcurrentHashMap<>();
+    private volatile StockItem[] stock = new StockItem[0];
+    private final Map<String, Recipe> menuItemRecipes = new ConcurrentHashMap<>();
+    private final Map<String, Recipe> dinnerExtras = new ConcurrentHashMap<>();
+    private final Map<String, FlattenedRecipe> flattenedDinners = new ConcurrentHashMap<>();
+    /** Bumped by every recipe or stock change; flattened dinners built before it are stale */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Set the stock one unit of {@code menuItem} consumes, replacing any
+     * previous recipe
+     */
+    public void defineRecipe(MenuItem menuItem, Map<StockItem, Integer> ingredients) {
+        if (menuItem == null) {
+            throw new IllegalArgumentException("Menu item cannot be null");
+        }
+        menuItemRecipes.put(menuItem.getItemId(), compile(ingredients));
+        version.incrementAndGet();
+    }
+
+    /**
+     * Set the stock one unit of {@code dinner} consumes on top of its menu
+     * items' recipes, e.g. the champagne bottle of a champagne feast
+     */
+    public void defineRecipe(Dinner dinner, Map<StockItem, Integer> extras) {
+        if (dinner == null) {
+            throw new IllegalArgumentException("Dinner cannot be null");
+        }
+        dinnerExtras.put(dinner.getDinnerId(), compile(extras));
+        version.incrementAndGet();
+    }
+
+    public void removeRecipe(MenuItem menuItem) {
+        if (menuItemRecipes.remove(menuItem.getItemId()) != null) {
+            version.incrementAndGet();
+        }
+    }
+
+    public void removeRecipe(Dinner dinner) {
+        if (dinnerExtras.remove(dinner.getDinnerId()) != null) {
+            flattenedDinners.remove(dinner.getDinnerId());
+            version.incrementAndGet();
+        }
+    }
+
+    /**
+     * Forget a stock item that left the inventory; recipes still using it
+     * can no longer be satisfied
+     */
+    public synchronized void stockRemoved(StockItem stockItem) {
+        Integer index = stockIndexes.get(stockItem.getStockItemId());
+        if (index != null && stock[index] != null) {
+            StockItem[] updated = stock.clone();
+            updated[index] = null;
+            stock = updated;
+            version.incrementAndGet();
+        }
+    }
+
+    public Recipe recipeFor(MenuItem menuItem) {
+        Recipe recipe = menuItemRecipes.get(menuItem.getItemId());
+        return recipe != null ? recipe : EMPTY;
+    }
+
+    /**
+     * The dinner's flattened recipe: its extras plus its menu items' recipes
+     */
+    public Recipe recipeFor(Dinner dinner) {
+        long dinnerVersion = dinner.getVersion();
+        long bookVersion = version.get();
+        FlattenedRecipe cached = flattenedDinners.get(dinner.getDinnerId());
+        if (cached != null && cached.dinnerVersion == dinnerVersion && cached.bookVersion == bookVersion) {
+            return cached.recipe;
+        }
+        Recipe extras = dinnerExtras.get(dinner.getDinnerId());
+        int[] pairs = extras != null ? extras.pairs.clone() : new int[0];
+        int length = pairs.length;
+        for (MenuItem menuItem : dinner.getMenuItems()) {
+            Recipe itemRecipe = menuItemRecipes.get(menuItem.getItemId());
+            if (itemRecipe == null) {
+                continue;
+            }
+            for (int i = 0; i < itemRecipe.pairs.length; i += 2) {
+                int at = indexOfStock(pairs, length, itemRecipe.pairs[i]);
+                if (at >= 0) {
+                    pairs[at + 1] = Math.addExact(pairs[at + 1], itemRecipe.pairs[i + 1]);
+                } else {
+                    if (length == pairs.length) {
+                        pairs = Arrays.copyOf(pairs, Math.max(8, length * 2));
+                    }
+                    pairs[length] = itemRecipe.pairs[i];
+                    pairs[length + 1] = itemRecipe.pairs[i + 1];
+                    length += 2;
+                }
+            }
+        }
+        Recipe recipe = length == 0 ? EMPTY : new Recipe(Arrays.copyOf(pairs, length));
+        flattenedDinners.put(dinner.getDinnerId(), new FlattenedRecipe(recipe, dinnerVersion, bookVersion));
+        return recipe;
+    }
+
+    /**
+     * Total stock needed by one order
+     */
+    public Requirements requirementsFor(Order order) {
+        return requirementsFor(Collections.singletonList(order));
+    }
+
+    /**
+     * Total stock needed by several orders together
+     */
+    public Requirements requirementsFor(Collection<Order> orders) {
+        StockItem[] stockSnapshot = stock;
+        int[] needed = new int[stockSnapshot.length];
+        int[] touched = new int[Math.min(stockSnapshot.length, 16)];
+        int touchedCount = 0;
+        for (Order order : orders) {
+            List<OrderItem> orderItems = order.getOrderItems();
+            for (int line = 0; line < orderItems.size(); line++) {
+                OrderItem orderItem = orderItems.get(line);
+                Recipe recipe = orderItem.isDinner() ? recipeFor(orderItem.getDinner())
+                    : recipeFor(orderItem.getMenuItem());
+                int[] pairs = recipe.pairs;
+                for (int i = 0; i < pairs.length; i += 2) {
+                    int index = pairs[i];
+                    if (index >= needed.length) {
+                        // Stock first used by a recipe defined after the snapshot
+                        stockSnapshot = stock;
+                        needed = Arrays.copyOf(needed, stockSnapshot.length);
+                    }
+                    if (needed[index] == 0) {
+                        if (touchedCount == touched.length) {
+                            touched = Arrays.copyOf(touched, Math.max(16, touchedCount * 2));
+                        }
+                        touched[touchedCount++] = index;
+                    }
+                    needed[index] = Math.addExact(needed[index],
+                        Math.multiplyExact(pairs[i + 1], orderItem.getQuantity()));
+                }
+            }
+        }
+
+        // A fixed order lets concurrent reservations claim shared stock in the same sequence
+        Arrays.sort(touched, 0, touchedCount);
+        StockItem[] items = new StockItem[touchedCount];
+        int[] quantities = new int[touchedCount];
+        for (int i = 0; i < touchedCount; i++) {
+            items[i] = stockSnapshot[touched[i]];
+            quantities[i] = needed[touched[i]];
+        }
+        return new Requirements(items, quantities);
+    }
+
+    public int getRecipeCount() {
+        return menuItemRecipes.size() + dinnerExtras.size();
+    }
+
+    private Recipe compile(Map<StockItem, Integer> ingredients) {
+        if (ingredients == null) {
+            throw new IllegalArgumentException("Ingredients cannot be null");
+        }
+        int[] pairs = new int[ingredients.size() * 2];
+        int length = 0;
+        for (Map.Entry<StockItem, Integer> ingredient : ingredients.entrySet()) {
+            StockItem stockItem = ingredient.getKey();
+            Integer quantity = ingredient.getValue();
+            if (stockItem == null) {
+                throw new IllegalArgumentException("Stock item cannot be null");
+            }
+            if (quantity == null || quantity <= 0) {
+                throw new IllegalArgumentException("Quantity of " + stockItem.getItemName() + " must be positive");
+            }
+            pairs[length++] = indexOf(stockItem);
+            pairs[length++] = quantity;
+        }
+        return new Recipe(pairs);
+    }
+
+    private int indexOf(StockItem stockItem) {
+        Integer index = stockIndexes.get(stockItem.getStockItemId());
+        return index != null && stock[index] == stockItem ? index : register(stockItem);
+    }
+
+    private synchronized int register(StockItem stockItem) {
+        Integer index = stockIndexes.get(stockItem.getStockItemId());
+        StockItem[] updated;
+        if (index == null) {
+            index = stock.length;
+            updated = Arrays.copyOf(stock, index + 1);
+        } else {
+            // Stock item added back after being removed
+            updated = stock.clone();
+        }
+        updated[index] = stockItem;
+        stock = updated;
+        stockIndexes.put(stockItem.getStockItemId(), index);
+        return index;
+    }
+
+    private static int indexOfStock(int[] pairs, int length, int stockIndex) {
+        for (int i = 0; i < length; i += 2) {
+            if (pairs[i] == stockIndex) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Stock consumed by one unit of a menu item or dinner, as (stock index,
+     * quantity) pairs with each stock item appearing once
+     */
+    public static final class Recipe {
+        private final int[] pairs;
+
+        private Recipe(int[] pairs) {
+            this.pairs = pairs;
+        }
+
+        public int size() {
+            return pairs.length / 2;
+        }
+
+        public boolean isEmpty() {
+            return pairs.length == 0;
+        }
+
+        public int getStockIndex(int i) {
+            return pairs[2 * i];
+        }
+
+        public int getQuantity(int i) {
+            return pairs[2 * i + 1];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Recipe{stockItems=%d}", size());
+        }
+    }
+
+    /**
+     * Stock needed by one or more orders, one entry per stock item in stock
+     * index order; a null stock item was removed from the inventory after
+     * the recipe used it
+     */
+    public static final class Requirements {
+        final StockItem[] stockItems;
+        final int[] quantities;
+
+        private Requirements(StockItem[] stockItems, int[] quantities) {
+            this.stockItems = stockItems;
+            this.quantities = quantities;
+        }
+
+        public int size() {
+            return stockItems.length;
+        }
+
+        public boolean isEmpty() {
+            return stockItems.length == 0;
+        }
+
+        public StockItem getStockItem(int i) {
+            return stockItems[i];
+        }
+
+        public int getQuantity(int i) {
+            return quantities[i];
+        }
+
+        /**
+         * Check the current stock covers every requirement
+         */
+        public boolean isAvailable() {
+            for (int i = 0; i < stockItems.length; i++) {
+                if (stockItems[i] == null || stockItems[i].getCurrentQuantity() < quantities[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Requirements{stockItems=%d}", stockItems.length);
+        }
+    }
+
+    private static final class FlattenedRecipe {
+        private final Recipe recipe;
+        private final long dinnerVersion;
+        private final long bookVersion;
+
+        private FlattenedRecipe(Recipe recipe, long dinnerVersion, long bookVersion) {
+            this.recipe = recipe;
+            this.dinnerVersion = dinnerVersion;
+            this.bookVersion = bookVersion;
+        }
+    }
+}
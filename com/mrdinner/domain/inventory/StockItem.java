@@ -1,14 +1,19 @@
 package com.mrdinner.domain.inventory;
 
+import com.mrdinner.domain.common.Ids;
 import com.mrdinner.domain.common.Money;
 import com.mrdinner.domain.menu.MenuItem;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Objects;
-import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Entity representing a stock item in inventory
+ * Entity representing a stock item in inventory.
+ *
+ * The current quantity is an atomic counter changed only by compare-and-set
+ * against the minimum of zero and the maximum quantity, so concurrent
+ * consumers can never take more than is on hand.
  */
 public class StockItem {
     private final String stockItemId;
@@ -16,25 +21,25 @@ public class StockItem {
     private String description;
     private String category;
     private String unit;
-    private int currentQuantity;
+    private final AtomicInteger currentQuantity;
     private int minimumQuantity;
     private int maximumQuantity;
     private Money unitCost;
     private LocalDate expirationDate;
     private String supplier;
     private String location;
-    private LocalDateTime lastUpdated;
-    private StockStatus status;
+    private volatile LocalDateTime lastUpdated;
+    private volatile StockStatus status;
 
     public StockItem(String itemName, String description, String category, String unit,
                     int initialQuantity, int minimumQuantity, int maximumQuantity,
                     Money unitCost, LocalDate expirationDate, String supplier, String location) {
-        this.stockItemId = UUID.randomUUID().toString();
+        this.stockItemId = Ids.next();
         this.itemName = validateAndTrim(itemName, "Item name");
         this.description = validateAndTrim(description, "Description");
         this.category = validateAndTrim(category, "Category");
         this.unit = validateAndTrim(unit, "Unit");
-        this.currentQuantity = validateQuantity(initialQuantity, "Initial quantity");
+        this.currentQuantity = new AtomicInteger(validateQuantity(initialQuantity, "Initial quantity"));
         this.minimumQuantity = validateQuantity(minimumQuantity, "Minimum quantity");
         this.maximumQuantity = validateQuantity(maximumQuantity, "Maximum quantity");
         this.unitCost = Objects.requireNonNull(unitCost, "Unit cost cannot be null");
@@ -65,7 +70,7 @@ public class StockItem {
         if (minimumQuantity > maximumQuantity) {
             throw new IllegalArgumentException("Minimum quantity cannot be greater than maximum quantity");
         }
-        if (currentQuantity > maximumQuantity) {
+        if (currentQuantity.get() > maximumQuantity) {
             throw new IllegalArgumentException("Current quantity cannot exceed maximum quantity");
         }
     }
@@ -111,7 +116,7 @@ public class StockItem {
     }
 
     public int getCurrentQuantity() {
-        return currentQuantity;
+        return currentQuantity.get();
     }
 
     public int getMinimumQuantity() {
@@ -188,12 +193,13 @@ public class StockItem {
             throw new IllegalArgumentException("Quantity to add must be positive");
         }
         
-        int newQuantity = currentQuantity + quantity;
-        if (newQuantity > maximumQuantity) {
-            throw new IllegalArgumentException("Adding stock would exceed maximum quantity");
-        }
-        
-        this.currentQuantity = newQuantity;
+        int current;
+        do {
+            current = currentQuantity.get();
+            if (current + quantity > maximumQuantity) {
+                throw new IllegalArgumentException("Adding stock would exceed maximum quantity");
+            }
+        } while (!currentQuantity.compareAndSet(current, current + quantity));
         updateStatus();
         updateLastModified();
     }
@@ -202,21 +208,74 @@ public class StockItem {
         if (quantity <= 0) {
             throw new IllegalArgumentException("Quantity to remove must be positive");
         }
-        if (quantity > currentQuantity) {
+        if (!tryRemoveStock(quantity)) {
             throw new IllegalArgumentException("Cannot remove more stock than available");
         }
-        
-        this.currentQuantity -= quantity;
+    }
+
+    /**
+     * Remove {@code quantity} if that much is on hand; otherwise leave the
+     * stock unchanged and return false
+     */
+    public boolean tryRemoveStock(int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity to remove must be positive");
+        }
+        int current;
+        do {
+            current = currentQuantity.get();
+            if (current < quantity) {
+                return false;
+            }
+        } while (!currentQuantity.compareAndSet(current, current - quantity));
+        updateStatus();
+        updateLastModified();
+        return true;
+    }
+
+    /**
+     * Put back up to {@code quantity}, stopping at the maximum quantity
+     *
+     * @return the quantity actually put back
+     */
+    public int returnStock(int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity to return must be positive");
+        }
+        int current;
+        int returned;
+        do {
+            current = currentQuantity.get();
+            returned = Math.min(quantity, maximumQuantity - current);
+            if (returned <= 0) {
+                return 0;
+            }
+        } while (!currentQuantity.compareAndSet(current, current + returned));
+        updateStatus();
+        updateLastModified();
+        return returned;
+    }
+
+    /**
+     * Add back exactly {@code quantity} taken by a successful
+     * {@link #tryRemoveStock}, ignoring the maximum: a restock that landed in
+     * between must not make those units disappear
+     */
+    void undoRemoveStock(int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity to undo must be positive");
+        }
+        currentQuantity.addAndGet(quantity);
         updateStatus();
         updateLastModified();
     }
 
     public boolean isLowStock() {
-        return currentQuantity <= minimumQuantity;
+        return currentQuantity.get() <= minimumQuantity;
     }
 
     public boolean isOutOfStock() {
-        return currentQuantity == 0;
+        return currentQuantity.get() == 0;
     }
 
     public boolean isExpired() {
@@ -239,7 +298,7 @@ public class StockItem {
     }
 
     public Money getTotalValue() {
-        return unitCost.multiply(currentQuantity);
+        return unitCost.multiply(currentQuantity.get());
     }
 
     public boolean needsRestocking() {
@@ -247,6 +306,7 @@ public class StockItem {
     }
 
     private void updateStatus() {
+        // Racing updates may briefly leave a stale status; the quantity stays exact
         if (isOutOfStock()) {
             status = StockStatus.OUT_OF_STOCK;
         } else if (isLowStock()) {
@@ -278,7 +338,7 @@ public class StockItem {
     @Override
     public String toString() {
         return String.format("StockItem{id='%s', name='%s', quantity=%d/%d, status=%s}", 
-            stockItemId, itemName, currentQuantity, maximumQuantity, status);
+            stockItemId, itemName, currentQuantity.get(), maximumQuantity, status);
     }
 
     public enum StockStatus {
@@ -54,8 +54,8 @@ public class ChampagneFeastDinner extends Dinner {
     }
 
     @Override
-    public Money calculateTotalPrice() {
-        Money total = super.calculateTotalPrice();
+    protected Money computeTotalPrice() {
+        Money total = super.computeTotalPrice();
         return total.add(CHAMPAGNE_PREMIUM);
     }
 
@@ -1,14 +1,20 @@
 package com.mrdinner.domain.menu;
 
+import com.mrdinner.domain.common.Ids;
 import com.mrdinner.domain.common.Money;
+import com.mrdinner.domain.common.MoneyAccumulator;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
-import java.util.UUID;
 
 /**
- * Abstract base class for dinner packages
+ * Abstract base class for dinner packages.
+ *
+ * The total price is memoized with version stamps: the dinner's own version
+ * changes with its base price and item list, and each menu item's version
+ * changes with its price. A cached price is returned only while every stamp
+ * it was computed from is unchanged.
  */
 public abstract class Dinner {
     protected final String dinnerId;
@@ -19,9 +25,11 @@ public abstract class Dinner {
     protected List<MenuItem> menuItems;
     protected boolean isAvailable;
     protected int totalPreparationTimeMinutes;
+    private volatile long version;
+    private volatile PriceMemo priceMemo;
 
     protected Dinner(String name, String description, Money basePrice, ServingStyle servingStyle) {
-        this.dinnerId = UUID.randomUUID().toString();
+        this.dinnerId = Ids.next();
         this.name = validateAndTrim(name, "Name");
         this.description = validateAndTrim(description, "Description");
         this.basePrice = Objects.requireNonNull(basePrice, "Base price cannot be null");
@@ -64,6 +72,7 @@ public abstract class Dinner {
 
     public void setBasePrice(Money basePrice) {
         this.basePrice = Objects.requireNonNull(basePrice, "Base price cannot be null");
+        invalidatePrice();
     }
 
     public ServingStyle getServingStyle() {
@@ -83,11 +92,14 @@ public abstract class Dinner {
             throw new IllegalArgumentException("Menu item cannot be null");
         }
         this.menuItems.add(menuItem);
+        invalidatePrice();
         updatePreparationTime();
     }
 
     public void removeMenuItem(MenuItem menuItem) {
-        this.menuItems.remove(menuItem);
+        if (this.menuItems.remove(menuItem)) {
+            invalidatePrice();
+        }
         updatePreparationTime();
     }
 
@@ -109,16 +121,56 @@ public abstract class Dinner {
             .sum();
     }
 
+    /**
+     * Total price for this dinner. Repeat calls return the memoized price
+     * until the base price, the item list or an item's price changes.
+     */
+    public final Money calculateTotalPrice() {
+        PriceMemo memo = priceMemo;
+        long priceChanges = MenuItem.priceChangeCount();
+        if (memo != null && memo.version == version) {
+            if (memo.priceChanges == priceChanges) {
+                return memo.price;
+            }
+            // Some item's price changed; only recompute if it is one of ours
+            if (memo.itemVersions == itemVersionSum()) {
+                priceMemo = new PriceMemo(memo.price, memo.version, priceChanges, memo.itemVersions);
+                return memo.price;
+            }
+        }
+        long currentVersion = version;
+        long itemVersions = itemVersionSum();
+        Money price = computeTotalPrice();
+        priceMemo = new PriceMemo(price, currentVersion, priceChanges, itemVersions);
+        return price;
+    }
+
     /**
      * Calculate the total price for this dinner
      * Subclasses can override this method to add special pricing logic
      */
-    public Money calculateTotalPrice() {
-        Money total = basePrice;
+    protected Money computeTotalPrice() {
+        MoneyAccumulator total = new MoneyAccumulator(basePrice.getCurrency()).add(basePrice);
         for (MenuItem item : menuItems) {
-            total = total.add(item.getPrice());
+            total.add(item.getPrice());
         }
-        return applyDiscounts(total);
+        return applyDiscounts(total.toMoney());
+    }
+
+    /**
+     * Drop the memoized price. Subclasses call this when state their
+     * pricing depends on changes.
+     */
+    protected final void invalidatePrice() {
+        version++;
+    }
+
+    /**
+     * Changes whenever this dinner's base price, item list or priced options
+     * change, so callers deriving data from its items can detect that it moved
+     */
+    public long getVersion() {
+        return version;
     }
 
     /**
@@ -134,6 +186,17 @@ public abstract class Dinner {
      */
     public abstract String getDinnerType();
 
+    /**
+     * Item versions only grow, so the sum changes whenever any item's price does
+     */
+    private long itemVersionSum() {
+        long sum = 0;
+        for (int i = 0; i < menuItems.size(); i++) {
+            sum += menuItems.get(i).getPriceVersion();
+        }
+        return sum;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
@@ -152,5 +215,18 @@ public abstract class Dinner {
         return String.format("%s{id='%s', name='%s', price=%s, style=%s, available=%s}", 
             getDinnerType(), dinnerId, name, basePrice, servingStyle, isAvailable());
     }
-}
 
+    private static final class PriceMemo {
+        private final Money price;
+        private final long version;
+        private final long priceChanges;
+        private final long itemVersions;
+
+        private PriceMemo(Money price, long version, long priceChanges, long itemVersions) {
+            this.price = price;
+            this.version = version;
+            this.priceChanges = priceChanges;
+            this.itemVersions = itemVersions;
+        }
+    }
+}
@@ -30,8 +30,8 @@ public class EnglishDinner extends Dinner {
     }
 
     @Override
-    public Money calculateTotalPrice() {
-        Money total = super.calculateTotalPrice();
+    protected Money computeTotalPrice() {
+        Money total = super.computeTotalPrice();
         return total.add(TEA_SERVICE_FEE);
     }
 
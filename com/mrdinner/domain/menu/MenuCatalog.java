@@ -0,0 +1,71 @@
+package com.mrdinner.domain.menu;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The live menu items and dinners, looked up by ID. Orders restored from the
+ * order journal are linked back to these objects, so later price and
+ * availability changes reach them like any other order.
+ */
+public class MenuCatalog {
+    private final Map<String, MenuItem> menuItems = new ConcurrentHashMap<>();
+    private final Map<String, Dinner> dinners = new ConcurrentHashMap<>();
+
+    public void addMenuItem(MenuItem menuItem) {
+        if (menuItem == null) {
+            throw new IllegalArgumentException("Menu item cannot be null");
+        }
+        menuItems.put(menuItem.getItemId(), menuItem);
+    }
+
+    /**
+     * Add a dinner together with the menu items it contains
+     */
+    public void addDinner(Dinner dinner) {
+        if (dinner == null) {
+            throw new IllegalArgumentException("Dinner cannot be null");
+        }
+        dinners.put(dinner.getDinnerId(), dinner);
+        for (MenuItem menuItem : dinner.getMenuItems()) {
+            addMenuItem(menuItem);
+        }
+    }
+
+    public boolean removeMenuItem(MenuItem menuItem) {
+        return menuItem != null && menuItems.remove(menuItem.getItemId(), menuItem);
+    }
+
+    public boolean removeDinner(Dinner dinner) {
+        return dinner != null && dinners.remove(dinner.getDinnerId(), dinner);
+    }
+
+    /**
+     * @return the menu item, or null if it is not in the catalog
+     */
+    public MenuItem findMenuItem(String itemId) {
+        return itemId != null ? menuItems.get(itemId) : null;
+    }
+
+    /**
+     * @return the dinner, or null if it is not in the catalog
+     */
+    public Dinner findDinner(String dinnerId) {
+        return dinnerId != null ? dinners.get(dinnerId) : null;
+    }
+
+    public List<MenuItem> getMenuItems() {
+        return new ArrayList<>(menuItems.values());
+    }
+
+    public List<Dinner> getDinners() {
+        return new ArrayList<>(dinners.values());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MenuCatalog{menuItems=%d, dinners=%d}", menuItems.size(), dinners.size());
+    }
+}
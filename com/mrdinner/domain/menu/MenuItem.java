@@ -1,13 +1,17 @@
 package com.mrdinner.domain.menu;
 
+import com.mrdinner.domain.common.Ids;
 import com.mrdinner.domain.common.Money;
 import java.util.Objects;
-import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Entity representing a menu item
  */
 public class MenuItem {
+    /** Price changes across all items; lets dinners skip checking their items */
+    private static final AtomicLong PRICE_CHANGES = new AtomicLong();
+
     private final String itemId;
     private String name;
     private String description;
@@ -17,9 +21,10 @@ public class MenuItem {
     private int preparationTimeMinutes;
     private String[] allergens;
     private int calories;
+    private final AtomicLong priceVersion = new AtomicLong();
 
     public MenuItem(String name, String description, Money price, ItemType itemType) {
-        this.itemId = UUID.randomUUID().toString();
+        this.itemId = Ids.next();
         this.name = validateAndTrim(name, "Name");
         this.description = validateAndTrim(description, "Description");
         this.price = Objects.requireNonNull(price, "Price cannot be null");
@@ -63,6 +68,21 @@ public class MenuItem {
 
     public void setPrice(Money price) {
         this.price = Objects.requireNonNull(price, "Price cannot be null");
+        // Bump the item's version before the global count, so a reader that
+        // sees the new count also sees which item changed
+        priceVersion.incrementAndGet();
+        PRICE_CHANGES.incrementAndGet();
+    }
+
+    /**
+     * Incremented on every price change of this item
+     */
+    long getPriceVersion() {
+        return priceVersion.get();
+    }
+
+    static long priceChangeCount() {
+        return PRICE_CHANGES.get();
     }
 
     public ItemType getItemType() {
@@ -38,8 +38,8 @@ public class ValentineDinner extends Dinner {
     }
 
     @Override
-    public Money calculateTotalPrice() {
-        Money total = super.calculateTotalPrice();
+    protected Money computeTotalPrice() {
+        Money total = super.computeTotalPrice();
         return total.add(ROMANTIC_SETUP_FEE);
     }
 
@@ -0,0 +1,95 @@
+package com.mrdinner.domain.order;
+
+import com.mrdinner.domain.common.Money;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Read-only summary of a finished order that has been moved to cold storage
+ */
+public class ArchivedOrder {
+    private final String orderId;
+    private final String customerId;
+    private final String customerName;
+    private final LocalDateTime orderTime;
+    private final OrderStatus status;
+    private final Money subtotal;
+    private final Money tax;
+    private final Money deliveryFee;
+    private final Money totalAmount;
+    private final int itemCount;
+
+    public ArchivedOrder(String orderId, String customerId, String customerName, LocalDateTime orderTime,
+                         OrderStatus status, Money subtotal, Money tax, Money deliveryFee,
+                         Money totalAmount, int itemCount) {
+        this.orderId = Objects.requireNonNull(orderId, "Order ID cannot be null");
+        this.customerId = Objects.requireNonNull(customerId, "Customer ID cannot be null");
+        this.customerName = Objects.requireNonNull(customerName, "Customer name cannot be null");
+        this.orderTime = Objects.requireNonNull(orderTime, "Order time cannot be null");
+        this.status = Objects.requireNonNull(status, "Status cannot be null");
+        this.subtotal = Objects.requireNonNull(subtotal, "Subtotal cannot be null");
+        this.tax = Objects.requireNonNull(tax, "Tax cannot be null");
+        this.deliveryFee = Objects.requireNonNull(deliveryFee, "Delivery fee cannot be null");
+        this.totalAmount = Objects.requireNonNull(totalAmount, "Total amount cannot be null");
+        this.itemCount = itemCount;
+    }
+
+    public String getOrderId() {
+        return orderId;
+    }
+
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    public String getCustomerName() {
+        return customerName;
+    }
+
+    public LocalDateTime getOrderTime() {
+        return orderTime;
+    }
+
+    public OrderStatus getStatus() {
+        return status;
+    }
+
+    public Money getSubtotal() {
+        return subtotal;
+    }
+
+    public Money getTax() {
+        return tax;
+    }
+
+    public Money getDeliveryFee() {
+        return deliveryFee;
+    }
+
+    public Money getTotalAmount() {
+        return totalAmount;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        ArchivedOrder that = (ArchivedOrder) obj;
+        return Objects.equals(orderId, that.orderId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(orderId);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ArchivedOrder{id='%s', customer='%s', status=%s, total=%s, items=%d}",
+            orderId, customerName, status, totalAmount, itemCount);
+    }
+}
@@ -0,0 +1,178 @@
+package com.mrdinner.domain.order;
+
+import com.mrdinner.domain.menu.Dinner;
+import com.mrdinner.domain.menu.MenuItem;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reverse index from menu items and dinners to the lines of open orders that
+ * use them, so a menu change only visits the orders it affects. An order is
+ * open while it is pending or confirmed, i.e. until the kitchen starts on it.
+ *
+ * A dinner line is also reachable from each of the dinner's menu items. The
+ * dinner's items are recorded when a line is added; call
+ * {@link #dinnerChanged(Dinner)} after changing a dinner's item list.
+ * Lines of orders that have left the open states are dropped when a lookup
+ * finds them, so callers only have to remove lines eagerly where convenient.
+ *
+ * Changes to a dinner's lines and its menu item registrations happen together
+ * inside the dinner's map entry, so adds and removes for the same dinner from
+ * different threads cannot leave a line unreachable from its menu items.
+ */
+public class OpenOrderItemIndex {
+    private final Map<String, Set<OrderItem>> itemsByMenuItem = new ConcurrentHashMap<>();
+    private final Map<String, Set<OrderItem>> itemsByDinner = new ConcurrentHashMap<>();
+    private final Map<String, Set<Dinner>> dinnersByMenuItem = new ConcurrentHashMap<>();
+
+    public static boolean isOpen(Order order) {
+        OrderStatus status = order.getStatus();
+        return status == OrderStatus.PENDING || status == OrderStatus.CONFIRMED;
+    }
+
+    public void add(OrderItem orderItem) {
+        if (orderItem == null) {
+            throw new IllegalArgumentException("Order item cannot be null");
+        }
+        if (orderItem.isMenuItem()) {
+            addTo(itemsByMenuItem, orderItem.getMenuItem().getItemId(), orderItem);
+        } else {
+            Dinner dinner = orderItem.getDinner();
+            // Registered under the dinner's entry so a concurrent removal of
+            // its last line cannot unregister it after this line is added
+            itemsByDinner.compute(dinner.getDinnerId(), (dinnerId, items) -> {
+                Set<OrderItem> set = items != null ? items : ConcurrentHashMap.newKeySet();
+                set.add(orderItem);
+                registerDinner(dinner);
+                return set;
+            });
+        }
+    }
+
+    public void remove(OrderItem orderItem) {
+        if (orderItem == null) {
+            return;
+        }
+        if (orderItem.isMenuItem()) {
+            removeFrom(itemsByMenuItem, orderItem.getMenuItem().getItemId(), orderItem);
+        } else {
+            Dinner dinner = orderItem.getDinner();
+            itemsByDinner.computeIfPresent(dinner.getDinnerId(), (dinnerId, items) -> {
+                items.remove(orderItem);
+                if (!items.isEmpty()) {
+                    return items;
+                }
+                for (MenuItem menuItem : dinner.getMenuItems()) {
+                    removeFrom(dinnersByMenuItem, menuItem.getItemId(), dinner);
+                }
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Remove every line of an order, e.g. when it leaves the open states
+     */
+    public void removeOrder(Order order) {
+        for (OrderItem orderItem : order.getOrderItems()) {
+            remove(orderItem);
+        }
+    }
+
+    /**
+     * Re-record a dinner's menu items after its item list changed
+     */
+    public void dinnerChanged(Dinner dinner) {
+        itemsByDinner.computeIfPresent(dinner.getDinnerId(), (dinnerId, items) -> {
+            registerDinner(dinner);
+            return items;
+        });
+    }
+
+    /**
+     * Open orders with a line for this menu item, directly or inside a
+     * dinner, grouped by order
+     */
+    public Map<Order, List<OrderItem>> findOpenOrdersUsing(MenuItem menuItem) {
+        Map<Order, List<OrderItem>> affected = new LinkedHashMap<>();
+        collect(itemsByMenuItem, menuItem.getItemId(), affected);
+        Set<Dinner> dinners = dinnersByMenuItem.get(menuItem.getItemId());
+        if (dinners != null) {
+            for (Dinner dinner : dinners) {
+                if (dinner.getMenuItems().contains(menuItem)) {
+                    collect(itemsByDinner, dinner.getDinnerId(), affected);
+                } else {
+                    // The item was taken out of the dinner since it was recorded
+                    removeFrom(dinnersByMenuItem, menuItem.getItemId(), dinner);
+                }
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * Open orders with a line for this dinner, grouped by order
+     */
+    public Map<Order, List<OrderItem>> findOpenOrdersUsing(Dinner dinner) {
+        Map<Order, List<OrderItem>> affected = new LinkedHashMap<>();
+        collect(itemsByDinner, dinner.getDinnerId(), affected);
+        return affected;
+    }
+
+    /**
+     * Number of indexed order lines
+     */
+    public int size() {
+        int size = 0;
+        for (Set<OrderItem> items : itemsByMenuItem.values()) {
+            size += items.size();
+        }
+        for (Set<OrderItem> items : itemsByDinner.values()) {
+            size += items.size();
+        }
+        return size;
+    }
+
+    private void registerDinner(Dinner dinner) {
+        for (MenuItem menuItem : dinner.getMenuItems()) {
+            addTo(dinnersByMenuItem, menuItem.getItemId(), dinner);
+        }
+    }
+
+    private void collect(Map<String, Set<OrderItem>> index, String key, Map<Order, List<OrderItem>> affected) {
+        Set<OrderItem> items = index.get(key);
+        if (items == null) {
+            return;
+        }
+        for (OrderItem orderItem : items) {
+            Order order = orderItem.getOrder();
+            if (order == null || !isOpen(order)) {
+                remove(orderItem);
+                continue;
+            }
+            affected.computeIfAbsent(order, o -> new ArrayList<>()).add(orderItem);
+        }
+    }
+
+    private static <V> void addTo(Map<String, Set<V>> index, String key, V value) {
+        index.compute(key, (k, values) -> {
+            Set<V> set = values != null ? values : ConcurrentHashMap.newKeySet();
+            set.add(value);
+            return set;
+        });
+    }
+
+    /**
+     * Remove a value, dropping the key once its set is empty
+     */
+    private static <V> void removeFrom(Map<String, Set<V>> index, String key, V value) {
+        index.computeIfPresent(key, (k, values) -> {
+            values.remove(value);
+            return values.isEmpty() ? null : values;
+        });
+    }
+}
@@ -1,23 +1,28 @@
 package com.mrdinner.domain.order;
 
 import com.mrdinner.domain.common.Address;
+import com.mrdinner.domain.common.Ids;
 import com.mrdinner.domain.common.Money;
+import com.mrdinner.domain.common.StateMachine;
 import com.mrdinner.domain.customer.Customer;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
-import java.util.UUID;
 
 /**
  * Entity representing a customer order
  */
 public class Order {
+    private static final StateMachine<Order, OrderStatus> STATE_MACHINE =
+        new StateMachine<>(OrderStatus.transitions());
+
     private final String orderId;
     private final Customer customer;
     private final LocalDateTime orderTime;
-    private OrderStatus status;
+    private volatile OrderStatus status;
+    private volatile LocalDateTime statusChangedTime;
     private List<OrderItem> orderItems;
     private Money subtotal;
     private Money tax;
@@ -26,13 +31,23 @@ public class Order {
     private Address deliveryAddress;
     private LocalDateTime estimatedDeliveryTime;
     private String notes;
+    private OrderRepository repository;
 
     public Order(Customer customer, Address deliveryAddress) {
-        this.orderId = UUID.randomUUID().toString();
+        this(Ids.next(), customer, deliveryAddress, LocalDateTime.now());
+    }
+
+    /**
+     * Recreate an existing order with its original ID and order time,
+     * e.g. when replaying the order journal
+     */
+    public Order(String orderId, Customer customer, Address deliveryAddress, LocalDateTime orderTime) {
+        this.orderId = Objects.requireNonNull(orderId, "Order ID cannot be null");
         this.customer = Objects.requireNonNull(customer, "Customer cannot be null");
         this.deliveryAddress = Objects.requireNonNull(deliveryAddress, "Delivery address cannot be null");
-        this.orderTime = LocalDateTime.now();
+        this.orderTime = Objects.requireNonNull(orderTime, "Order time cannot be null");
         this.status = OrderStatus.PENDING;
+        this.statusChangedTime = orderTime;
         this.orderItems = new ArrayList<>();
         this.subtotal = Money.zero("USD");
         this.tax = Money.zero("USD");
@@ -58,11 +73,58 @@ public class Order {
     }
 
     public void setStatus(OrderStatus status) {
-        if (!this.status.canTransitionTo(status)) {
-            throw new IllegalArgumentException(
-                String.format("Cannot transition from %s to %s", this.status, status));
+        STATE_MACHINE.checkTransition(this.status, status);
+        OrderStatus previousStatus = this.status;
+        LocalDateTime changedTime = LocalDateTime.now();
+        this.status = status;
+        this.statusChangedTime = changedTime;
+        if (repository != null) {
+            repository.statusChanged(this, previousStatus, status);
         }
+        STATE_MACHINE.transitioned(this, previousStatus, status, changedTime);
+    }
+
+    /**
+     * Re-apply a status change that already happened, e.g. when replaying the
+     * order journal. The transition is still validated, but it keeps its
+     * original time and is not counted or passed to transition listeners.
+     */
+    public void restoreStatus(OrderStatus status, LocalDateTime changedTime) {
+        STATE_MACHINE.checkTransition(this.status, status);
+        OrderStatus previousStatus = this.status;
         this.status = status;
+        this.statusChangedTime = Objects.requireNonNull(changedTime, "Changed time cannot be null");
+        if (repository != null) {
+            repository.statusChanged(this, previousStatus, status);
+        }
+    }
+
+    /**
+     * Time of the last status change, or the order time if none yet
+     */
+    public LocalDateTime getStatusChangedTime() {
+        return statusChangedTime;
+    }
+
+    /**
+     * Transition engine shared by all orders; register listeners and read
+     * per-transition counters here
+     */
+    public static StateMachine<Order, OrderStatus> stateMachine() {
+        return STATE_MACHINE;
+    }
+
+    void attachTo(OrderRepository repository) {
+        if (this.repository != null && this.repository != repository) {
+            throw new IllegalStateException("Order is already stored in another repository: " + orderId);
+        }
+        this.repository = repository;
+    }
+
+    void detachFrom(OrderRepository repository) {
+        if (this.repository == repository) {
+            this.repository = null;
+        }
     }
 
     public List<OrderItem> getOrderItems() {
@@ -76,16 +138,21 @@ public class Order {
         if (status.isFinal()) {
             throw new IllegalStateException("Cannot modify order in final status: " + status);
         }
+        orderItem.attachTo(this);
         this.orderItems.add(orderItem);
-        recalculateTotals();
+        this.subtotal = subtotal.add(orderItem.getTotalPrice());
+        updateTotalAmount();
     }
 
     public void removeOrderItem(OrderItem orderItem) {
         if (status.isFinal()) {
             throw new IllegalStateException("Cannot modify order in final status: " + status);
         }
-        this.orderItems.remove(orderItem);
-        recalculateTotals();
+        if (this.orderItems.remove(orderItem)) {
+            orderItem.detachFrom(this);
+            this.subtotal = subtotal.subtract(orderItem.getTotalPrice());
+            updateTotalAmount();
+        }
     }
 
     public Money getSubtotal() {
@@ -98,7 +165,7 @@ public class Order {
 
     public void setTax(Money tax) {
         this.tax = Objects.requireNonNull(tax, "Tax cannot be null");
-        recalculateTotals();
+        updateTotalAmount();
     }
 
     public Money getDeliveryFee() {
@@ -107,7 +174,16 @@ public class Order {
 
     public void setDeliveryFee(Money deliveryFee) {
         this.deliveryFee = Objects.requireNonNull(deliveryFee, "Delivery fee cannot be null");
-        recalculateTotals();
+        updateTotalAmount();
+    }
+
+    /**
+     * Set tax and delivery fee together, updating the total once
+     */
+    public void setCharges(Money tax, Money deliveryFee) {
+        this.tax = Objects.requireNonNull(tax, "Tax cannot be null");
+        this.deliveryFee = Objects.requireNonNull(deliveryFee, "Delivery fee cannot be null");
+        updateTotalAmount();
     }
 
     public Money getTotalAmount() {
@@ -155,11 +231,16 @@ public class Order {
         return !status.isFinal();
     }
 
-    private void recalculateTotals() {
-        this.subtotal = orderItems.stream()
-            .map(OrderItem::getTotalPrice)
-            .reduce(Money.zero("USD"), Money::add);
-        
+    /**
+     * Apply a change in one item's total price to the running subtotal;
+     * called by {@link OrderItem} when its quantity or unit price changes
+     */
+    void itemTotalChanged(Money oldTotal, Money newTotal) {
+        this.subtotal = subtotal.add(newTotal).subtract(oldTotal);
+        updateTotalAmount();
+    }
+
+    private void updateTotalAmount() {
         this.totalAmount = subtotal.add(tax).add(deliveryFee);
     }
 
@@ -1,10 +1,10 @@
 package com.mrdinner.domain.order;
 
+import com.mrdinner.domain.common.Ids;
 import com.mrdinner.domain.common.Money;
 import com.mrdinner.domain.menu.Dinner;
 import com.mrdinner.domain.menu.MenuItem;
 import java.util.Objects;
-import java.util.UUID;
 
 /**
  * Entity representing an item in an order
@@ -17,9 +17,10 @@ public class OrderItem {
     private Money unitPrice;
     private Money totalPrice;
     private String specialInstructions;
+    private Order order;
 
     public OrderItem(MenuItem menuItem, int quantity) {
-        this.orderItemId = UUID.randomUUID().toString();
+        this.orderItemId = Ids.next();
         this.menuItem = Objects.requireNonNull(menuItem, "Menu item cannot be null");
         this.dinner = null;
         this.quantity = validateQuantity(quantity);
@@ -29,7 +30,7 @@ public class OrderItem {
     }
 
     public OrderItem(Dinner dinner, int quantity) {
-        this.orderItemId = UUID.randomUUID().toString();
+        this.orderItemId = Ids.next();
         this.menuItem = null;
         this.dinner = Objects.requireNonNull(dinner, "Dinner cannot be null");
         this.quantity = validateQuantity(quantity);
@@ -38,6 +39,34 @@ public class OrderItem {
         this.specialInstructions = "";
     }
 
+    /**
+     * Recreate an existing menu item line with its original ID and unit price,
+     * e.g. when replaying the order journal
+     */
+    public OrderItem(String orderItemId, MenuItem menuItem, int quantity, Money unitPrice) {
+        this.orderItemId = Objects.requireNonNull(orderItemId, "Order item ID cannot be null");
+        this.menuItem = Objects.requireNonNull(menuItem, "Menu item cannot be null");
+        this.dinner = null;
+        this.quantity = validateQuantity(quantity);
+        this.unitPrice = Objects.requireNonNull(unitPrice, "Unit price cannot be null");
+        this.totalPrice = unitPrice.multiply(quantity);
+        this.specialInstructions = "";
+    }
+
+    /**
+     * Recreate an existing dinner line with its original ID and unit price,
+     * e.g. when replaying the order journal
+     */
+    public OrderItem(String orderItemId, Dinner dinner, int quantity, Money unitPrice) {
+        this.orderItemId = Objects.requireNonNull(orderItemId, "Order item ID cannot be null");
+        this.menuItem = null;
+        this.dinner = Objects.requireNonNull(dinner, "Dinner cannot be null");
+        this.quantity = validateQuantity(quantity);
+        this.unitPrice = Objects.requireNonNull(unitPrice, "Unit price cannot be null");
+        this.totalPrice = unitPrice.multiply(quantity);
+        this.specialInstructions = "";
+    }
+
     private int validateQuantity(int quantity) {
         if (quantity <= 0) {
             throw new IllegalArgumentException("Quantity must be greater than zero");
@@ -79,7 +108,7 @@ public class OrderItem {
 
     public void setQuantity(int quantity) {
         this.quantity = validateQuantity(quantity);
-        this.totalPrice = unitPrice.multiply(this.quantity);
+        updateTotalPrice();
     }
 
     public Money getUnitPrice() {
@@ -88,7 +117,35 @@ public class OrderItem {
 
     public void setUnitPrice(Money unitPrice) {
         this.unitPrice = Objects.requireNonNull(unitPrice, "Unit price cannot be null");
+        updateTotalPrice();
+    }
+
+    private void updateTotalPrice() {
+        Money oldTotal = this.totalPrice;
         this.totalPrice = unitPrice.multiply(quantity);
+        if (order != null) {
+            order.itemTotalChanged(oldTotal, totalPrice);
+        }
+    }
+
+    void attachTo(Order order) {
+        if (this.order != null && this.order != order) {
+            throw new IllegalStateException("Order item already belongs to another order: " + orderItemId);
+        }
+        this.order = order;
+    }
+
+    void detachFrom(Order order) {
+        if (this.order == order) {
+            this.order = null;
+        }
+    }
+
+    /**
+     * The order this line belongs to, or null once removed
+     */
+    Order getOrder() {
+        return order;
     }
 
     public Money getTotalPrice() {
@@ -0,0 +1,46 @@
+package com.mrdinner.domain.order;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of orders from a time-range query, in order time order. Pass
+ * {@link #getNextCursor()} back to the same query to continue after the last
+ * order on this page.
+ */
+public class OrderPage {
+    private final List<Order> orders;
+    private final String nextCursor;
+
+    public OrderPage(List<Order> orders, String nextCursor) {
+        if (orders == null) {
+            throw new IllegalArgumentException("Orders cannot be null");
+        }
+        this.orders = Collections.unmodifiableList(orders);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Order> getOrders() {
+        return orders;
+    }
+
+    /**
+     * Cursor for the next page, or null if this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+
+    public int size() {
+        return orders.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("OrderPage{orders=%d, hasMore=%s}", orders.size(), hasMore());
+    }
+}
@@ -0,0 +1,276 @@
+package com.mrdinner.domain.order;
+
+import com.mrdinner.domain.customer.Customer;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Repository holding orders with a hash index on order ID, customer and status
+ * buckets, and a sorted index on order time for range queries.
+ * Customer and status buckets are ordered by order time, then order ID, so
+ * lookups return orders oldest first; a customer's bucket is dropped when its
+ * last order is removed.
+ * Status buckets are kept current by the orders themselves: a saved order
+ * reports every status change back to its repository. All indexes are
+ * concurrent, so one repository can be shared by many threads.
+ */
+public class OrderRepository {
+    private static final Comparator<Order> BY_ORDER_TIME =
+        Comparator.comparing(Order::getOrderTime).thenComparing(Order::getOrderId);
+
+    private final Map<String, Order> ordersById;
+    private final Map<String, Set<Order>> ordersByCustomer;
+    private final EnumMap<OrderStatus, Set<Order>> ordersByStatus;
+    private final EnumMap<OrderStatus, AtomicInteger> statusCounts;
+    private final ConcurrentSkipListMap<OrderTimeKey, Order> ordersByTime;
+
+    public OrderRepository() {
+        this.ordersById = new ConcurrentHashMap<>();
+        this.ordersByCustomer = new ConcurrentHashMap<>();
+        this.ordersByStatus = new EnumMap<>(OrderStatus.class);
+        this.statusCounts = new EnumMap<>(OrderStatus.class);
+        for (OrderStatus status : OrderStatus.values()) {
+            ordersByStatus.put(status, new ConcurrentSkipListSet<>(BY_ORDER_TIME));
+            statusCounts.put(status, new AtomicInteger());
+        }
+        this.ordersByTime = new ConcurrentSkipListMap<>();
+    }
+
+    /**
+     * Store an order and index it by ID, customer, status and order time
+     */
+    public void save(Order order) {
+        if (order == null) {
+            throw new IllegalArgumentException("Order cannot be null");
+        }
+        order.attachTo(this);
+        if (ordersById.putIfAbsent(order.getOrderId(), order) != null) {
+            return;
+        }
+
+        ordersByCustomer.compute(order.getCustomer().getCustomerId(), (id, customerOrders) -> {
+            Set<Order> bucket = customerOrders != null ? customerOrders : new ConcurrentSkipListSet<>(BY_ORDER_TIME);
+            bucket.add(order);
+            return bucket;
+        });
+        addToStatus(order, order.getStatus());
+        ordersByTime.put(new OrderTimeKey(order.getOrderTime(), order.getOrderId()), order);
+    }
+
+    /**
+     * Remove an order from all indexes
+     */
+    public void remove(Order order) {
+        if (order == null || ordersById.remove(order.getOrderId()) == null) {
+            return;
+        }
+
+        ordersByCustomer.computeIfPresent(order.getCustomer().getCustomerId(), (id, customerOrders) -> {
+            customerOrders.remove(order);
+            return customerOrders.isEmpty() ? null : customerOrders;
+        });
+        removeFromStatus(order, order.getStatus());
+        ordersByTime.remove(new OrderTimeKey(order.getOrderTime(), order.getOrderId()));
+        order.detachFrom(this);
+    }
+
+    public Optional<Order> findById(String orderId) {
+        return Optional.ofNullable(ordersById.get(orderId));
+    }
+
+    /**
+     * A customer's orders, oldest first
+     */
+    public List<Order> findByCustomer(Customer customer) {
+        if (customer == null) {
+            return Collections.emptyList();
+        }
+        Set<Order> customerOrders = ordersByCustomer.get(customer.getCustomerId());
+        return customerOrders != null ? new ArrayList<>(customerOrders) : new ArrayList<>();
+    }
+
+    /**
+     * Orders currently in the given status, oldest first
+     */
+    public List<Order> findByStatus(OrderStatus status) {
+        if (status == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(ordersByStatus.get(status));
+    }
+
+    /**
+     * Orders placed in [from, to), oldest first
+     */
+    public List<Order> findByOrderTimeBetween(LocalDateTime from, LocalDateTime to) {
+        return new ArrayList<>(timeRange(from, to).values());
+    }
+
+    /**
+     * Orders placed in [from, to) whose status is one of the given statuses,
+     * oldest first
+     */
+    public List<Order> findByOrderTimeBetween(LocalDateTime from, LocalDateTime to, Set<OrderStatus> statuses) {
+        return findPageByOrderTime(from, to, statuses, null, Integer.MAX_VALUE).getOrders();
+    }
+
+    /**
+     * Page through orders placed in [from, to), oldest first, keeping only the
+     * given statuses (all statuses if null). Start with a null cursor and pass
+     * each page's next cursor to get the following page. Orders added behind
+     * the cursor while paging are not revisited.
+     */
+    public OrderPage findPageByOrderTime(LocalDateTime from, LocalDateTime to, Set<OrderStatus> statuses,
+                                         String cursor, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        Set<OrderStatus> wanted = statuses == null || statuses.isEmpty()
+            ? EnumSet.allOf(OrderStatus.class) : EnumSet.copyOf(statuses);
+
+        NavigableMap<OrderTimeKey, Order> range = timeRange(from, to);
+        if (cursor != null) {
+            range = range.tailMap(OrderTimeKey.parse(cursor), false);
+        }
+
+        List<Order> page = new ArrayList<>(Math.min(limit, 64));
+        OrderTimeKey last = null;
+        for (Map.Entry<OrderTimeKey, Order> entry : range.entrySet()) {
+            if (!wanted.contains(entry.getValue().getStatus())) {
+                continue;
+            }
+            if (page.size() == limit) {
+                return new OrderPage(page, last.toCursor());
+            }
+            page.add(entry.getValue());
+            last = entry.getKey();
+        }
+        return new OrderPage(page, null);
+    }
+
+    /**
+     * Visit orders placed in [from, to), oldest first, without copying them
+     * into a list
+     */
+    public void forEachByOrderTime(LocalDateTime from, LocalDateTime to, Consumer<? super Order> action) {
+        if (action == null) {
+            throw new IllegalArgumentException("Action cannot be null");
+        }
+        for (Order order : timeRange(from, to).values()) {
+            action.accept(order);
+        }
+    }
+
+    public List<Order> findAll() {
+        return new ArrayList<>(ordersById.values());
+    }
+
+    public int count() {
+        return ordersById.size();
+    }
+
+    public int countByStatus(OrderStatus status) {
+        return status != null ? statusCounts.get(status).get() : 0;
+    }
+
+    private NavigableMap<OrderTimeKey, Order> timeRange(LocalDateTime from, LocalDateTime to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Time range cannot be null");
+        }
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Range end cannot be before range start");
+        }
+        return ordersByTime.subMap(OrderTimeKey.lowest(from), true, OrderTimeKey.lowest(to), false);
+    }
+
+    /**
+     * Move an order between status buckets; called by {@link Order#setStatus}
+     */
+    void statusChanged(Order order, OrderStatus oldStatus, OrderStatus newStatus) {
+        removeFromStatus(order, oldStatus);
+        addToStatus(order, newStatus);
+    }
+
+    // The sorted buckets count in O(n), so each keeps its size alongside
+    private void addToStatus(Order order, OrderStatus status) {
+        if (ordersByStatus.get(status).add(order)) {
+            statusCounts.get(status).incrementAndGet();
+        }
+    }
+
+    private void removeFromStatus(Order order, OrderStatus status) {
+        if (ordersByStatus.get(status).remove(order)) {
+            statusCounts.get(status).decrementAndGet();
+        }
+    }
+
+    /**
+     * Sort key for the time index; the order ID breaks ties between orders
+     * placed at the same instant
+     */
+    private static final class OrderTimeKey implements Comparable<OrderTimeKey> {
+        private static final char SEPARATOR = '|';
+
+        private final LocalDateTime orderTime;
+        private final String orderId;
+
+        private OrderTimeKey(LocalDateTime orderTime, String orderId) {
+            this.orderTime = orderTime;
+            this.orderId = orderId;
+        }
+
+        private static OrderTimeKey lowest(LocalDateTime time) {
+            return new OrderTimeKey(time, "");
+        }
+
+        private static OrderTimeKey parse(String cursor) {
+            int separator = cursor.indexOf(SEPARATOR);
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            try {
+                return new OrderTimeKey(LocalDateTime.parse(cursor.substring(0, separator)),
+                    cursor.substring(separator + 1));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+            }
+        }
+
+        private String toCursor() {
+            return orderTime.toString() + SEPARATOR + orderId;
+        }
+
+        @Override
+        public int compareTo(OrderTimeKey other) {
+            int byTime = orderTime.compareTo(other.orderTime);
+            return byTime != 0 ? byTime : orderId.compareTo(other.orderId);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof OrderTimeKey)) return false;
+            return compareTo((OrderTimeKey) obj) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return orderTime.hashCode() * 31 + orderId.hashCode();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.mrdinner.domain.order;
 
+import com.mrdinner.domain.common.TransitionTable;
+
 /**
  * Enumeration representing the status of an order
  */
@@ -13,6 +15,15 @@ public enum OrderStatus {
     CANCELLED("Order was cancelled"),
     REFUNDED("Order was refunded");
 
+    private static final TransitionTable<OrderStatus> TRANSITIONS = TransitionTable.builder(OrderStatus.class)
+        .allow(PENDING, CONFIRMED, CANCELLED)
+        .allow(CONFIRMED, PREPARING, CANCELLED)
+        .allow(PREPARING, READY, CANCELLED)
+        .allow(READY, OUT_FOR_DELIVERY, CANCELLED)
+        .allow(OUT_FOR_DELIVERY, DELIVERED, CANCELLED)
+        .allow(DELIVERED, REFUNDED)
+        .build();
+
     private final String description;
 
     OrderStatus(String description) {
@@ -24,26 +35,14 @@ public enum OrderStatus {
     }
 
     public boolean canTransitionTo(OrderStatus newStatus) {
-        switch (this) {
-            case PENDING:
-                return newStatus == CONFIRMED || newStatus == CANCELLED;
-            case CONFIRMED:
-                return newStatus == PREPARING || newStatus == CANCELLED;
-            case PREPARING:
-                return newStatus == READY || newStatus == CANCELLED;
-            case READY:
-                return newStatus == OUT_FOR_DELIVERY || newStatus == CANCELLED;
-            case OUT_FOR_DELIVERY:
-                return newStatus == DELIVERED || newStatus == CANCELLED;
-            case DELIVERED:
-                return newStatus == REFUNDED;
-            case CANCELLED:
-                return false; // Cannot transition from cancelled
-            case REFUNDED:
-                return false; // Cannot transition from refunded
-            default:
-                return false;
-        }
+        return TRANSITIONS.isAllowed(this, newStatus);
+    }
+
+    /**
+     * Allowed transitions between OrderStatus values
+     */
+    public static TransitionTable<OrderStatus> transitions() {
+        return TRANSITIONS;
     }
 
     public boolean isActive() {
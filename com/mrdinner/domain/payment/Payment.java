@@ -1,20 +1,25 @@
 package com.mrdinner.domain.payment;
 
+import com.mrdinner.domain.common.Ids;
 import com.mrdinner.domain.common.Money;
+import com.mrdinner.domain.common.StateMachine;
 import com.mrdinner.domain.order.Order;
 import java.time.LocalDateTime;
 import java.util.Objects;
-import java.util.UUID;
 
 /**
  * Entity representing a payment
  */
 public class Payment {
+    private static final StateMachine<Payment, PaymentStatus> STATE_MACHINE =
+        new StateMachine<>(PaymentStatus.transitions());
+
     private final String paymentId;
     private final Order order;
     private final Money amount;
     private final PaymentMethod paymentMethod;
     private PaymentStatus status;
+    private LocalDateTime statusChangedTime;
     private LocalDateTime paymentTime;
     private LocalDateTime processedTime;
     private String transactionId;
@@ -27,12 +32,13 @@ public class Payment {
     private String customerEmail;
 
     public Payment(Order order, Money amount, PaymentMethod paymentMethod, String customerEmail) {
-        this.paymentId = UUID.randomUUID().toString();
+        this.paymentId = Ids.next();
         this.order = Objects.requireNonNull(order, "Order cannot be null");
         this.amount = Objects.requireNonNull(amount, "Amount cannot be null");
         this.paymentMethod = Objects.requireNonNull(paymentMethod, "Payment method cannot be null");
         this.customerEmail = validateAndTrim(customerEmail, "Customer email");
         this.status = PaymentStatus.PENDING;
+        this.statusChangedTime = LocalDateTime.now();
         this.paymentTime = LocalDateTime.now();
         this.refundAmount = Money.zero(amount.getCurrency());
     }
@@ -65,11 +71,27 @@ public class Payment {
     }
 
     public void setStatus(PaymentStatus status) {
-        if (!this.status.canTransitionTo(status)) {
-            throw new IllegalArgumentException(
-                String.format("Cannot transition from %s to %s", this.status, status));
-        }
+        STATE_MACHINE.checkTransition(this.status, status);
+        PaymentStatus previousStatus = this.status;
+        LocalDateTime changedTime = LocalDateTime.now();
         this.status = status;
+        this.statusChangedTime = changedTime;
+        STATE_MACHINE.transitioned(this, previousStatus, status, changedTime);
+    }
+
+    /**
+     * Time of the last status change, or creation time if none yet
+     */
+    public LocalDateTime getStatusChangedTime() {
+        return statusChangedTime;
+    }
+
+    /**
+     * Transition engine shared by all payments; register listeners and read
+     * per-transition counters here
+     */
+    public static StateMachine<Payment, PaymentStatus> stateMachine() {
+        return STATE_MACHINE;
     }
 
     public LocalDateTime getPaymentTime() {
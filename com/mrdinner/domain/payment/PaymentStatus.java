@@ -1,5 +1,7 @@
 package com.mrdinner.domain.payment;
 
+import com.mrdinner.domain.common.TransitionTable;
+
 /**
  * Enumeration representing the status of a payment
  */
@@ -13,6 +15,16 @@ public enum PaymentStatus {
     CANCELLED("Payment was cancelled"),
     EXPIRED("Payment authorization has expired");
 
+    private static final TransitionTable<PaymentStatus> TRANSITIONS = TransitionTable.builder(PaymentStatus.class)
+        .allow(PENDING, PROCESSING, COMPLETED, FAILED, CANCELLED, EXPIRED)
+        .allow(PROCESSING, COMPLETED, FAILED, CANCELLED)
+        .allow(COMPLETED, REFUNDED, PARTIALLY_REFUNDED)
+        // Failed, cancelled and expired payments may be retried
+        .allow(FAILED, PROCESSING)
+        .allow(CANCELLED, PROCESSING)
+        .allow(EXPIRED, PROCESSING)
+        .build();
+
     private final String description;
 
     PaymentStatus(String description) {
@@ -24,26 +36,14 @@ public enum PaymentStatus {
     }
 
     public boolean canTransitionTo(PaymentStatus newStatus) {
-        switch (this) {
-            case PENDING:
-                return newStatus == PROCESSING || newStatus == COMPLETED || 
-                       newStatus == FAILED || newStatus == CANCELLED || newStatus == EXPIRED;
-            case PROCESSING:
-                return newStatus == COMPLETED || newStatus == FAILED || newStatus == CANCELLED;
-            case COMPLETED:
-                return newStatus == REFUNDED || newStatus == PARTIALLY_REFUNDED;
-            case FAILED:
-                return newStatus == PROCESSING; // Retry payment
-            case REFUNDED:
-            case PARTIALLY_REFUNDED:
-                return false; // Cannot transition from refunded states
-            case CANCELLED:
-                return newStatus == PROCESSING; // Retry payment
-            case EXPIRED:
-                return newStatus == PROCESSING; // Retry payment
-            default:
-                return false;
-        }
+        return TRANSITIONS.isAllowed(this, newStatus);
+    }
+
+    /**
+     * Allowed transitions between PaymentStatus values
+     */
+    public static TransitionTable<PaymentStatus> transitions() {
+        return TRANSITIONS;
     }
 
     public boolean isSuccessful() {
@@ -1,10 +1,10 @@
 package com.mrdinner.domain.staff;
 
 import com.mrdinner.domain.common.Address;
+import com.mrdinner.domain.common.Ids;
 import com.mrdinner.domain.common.Money;
 import java.time.LocalDate;
 import java.util.Objects;
-import java.util.UUID;
 
 /**
  * Abstract base class for all staff members
@@ -23,7 +23,7 @@ public abstract class Staff {
 
     protected Staff(String firstName, String lastName, String email, String phoneNumber, 
                    Address address, Money hourlyRate, String department) {
-        this.staffId = UUID.randomUUID().toString();
+        this.staffId = Ids.next();
         this.firstName = validateAndTrim(firstName, "First name");
         this.lastName = validateAndTrim(lastName, "Last name");
         this.email = validateEmail(email);
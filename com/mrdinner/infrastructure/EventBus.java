@@ -0,0 +1,405 @@
+package com.mrdinner.infrastructure;
+
+import com.mrdinner.domain.event.DomainEvent;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * In-process bus for {@link DomainEvent}s. Events are spread over partitions
+ * by partition key; each partition is a preallocated ring buffer with one
+ * writer at a time, so events with the same key keep their publish order.
+ *
+ * Subscribers follow the {@link Flow} protocol: each subscription reads the
+ * rings at its own pace, limited by the demand it has requested. Publishers
+ * never wait for subscribers. A subscriber that falls more than a ring's
+ * length behind skips the events it missed, and they are counted as dropped.
+ */
+public class EventBus implements Flow.Publisher<DomainEvent> {
+    public static final int DEFAULT_RING_SIZE = 4096;
+
+    private final Partition[] partitions;
+    private final int partitionMask;
+    private final Executor executor;
+    private final List<BusSubscription<?>> subscriptions = new CopyOnWriteArrayList<>();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder subscriberFailures = new LongAdder();
+    private final LongAdder discardedAfterClose = new LongAdder();
+    private volatile boolean closed;
+
+    public EventBus() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_RING_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param minimumPartitions rounded up to a power of two
+     * @param ringSize          slots per partition, a power of two
+     * @param executor          runs subscriber delivery
+     */
+    public EventBus(int minimumPartitions, int ringSize, Executor executor) {
+        if (minimumPartitions <= 0) {
+            throw new IllegalArgumentException("Partition count must be positive");
+        }
+        if (ringSize <= 0 || Integer.bitCount(ringSize) != 1) {
+            throw new IllegalArgumentException("Ring size must be a positive power of two");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor cannot be null");
+        }
+        int count = Integer.highestOneBit(minimumPartitions);
+        if (count < minimumPartitions) {
+            count <<= 1;
+        }
+        this.partitions = new Partition[count];
+        for (int i = 0; i < count; i++) {
+            partitions[i] = new Partition(ringSize);
+        }
+        this.partitionMask = count - 1;
+        this.executor = executor;
+    }
+
+    /**
+     * Append an event to its partition and wake subscribers; never blocks on
+     * subscribers. Once the bus is closed events are counted and discarded,
+     * so publishers racing with shutdown need no check of their own; an event
+     * published while {@link #close} runs may or may not be delivered.
+     */
+    public void publish(DomainEvent event) {
+        if (event == null) {
+            throw new IllegalArgumentException("Event cannot be null");
+        }
+        if (closed) {
+            discardedAfterClose.increment();
+            return;
+        }
+        partitions[partitionFor(event.getPartitionKey())].append(event);
+        published.increment();
+        for (BusSubscription<?> subscription : subscriptions) {
+            subscription.signal();
+        }
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super DomainEvent> subscriber) {
+        subscribe(DomainEvent.class, subscriber);
+    }
+
+    /**
+     * Subscribe to events of one type only; other events are skipped without
+     * using up demand
+     */
+    public <E extends DomainEvent> void subscribe(Class<E> eventType, Flow.Subscriber<? super E> subscriber) {
+        if (eventType == null) {
+            throw new IllegalArgumentException("Event type cannot be null");
+        }
+        if (subscriber == null) {
+            throw new NullPointerException("Subscriber cannot be null");
+        }
+        BusSubscription<E> subscription = new BusSubscription<>(eventType, subscriber);
+        subscriptions.add(subscription);
+        subscriber.onSubscribe(subscription);
+        if (closed) {
+            subscription.signal();
+        }
+    }
+
+    /**
+     * Convenience subscription with unbounded demand that hands each event of
+     * the given type to {@code handler}. Handler failures are counted and do
+     * not end the subscription.
+     */
+    public <E extends DomainEvent> Flow.Subscription subscribe(Class<E> eventType, Consumer<? super E> handler) {
+        if (handler == null) {
+            throw new IllegalArgumentException("Handler cannot be null");
+        }
+        HandlerSubscriber<E> subscriber = new HandlerSubscriber<>(handler);
+        subscribe(eventType, subscriber);
+        return subscriber.subscription;
+    }
+
+    /**
+     * Stop accepting events. Subscribers receive what was already published
+     * and then {@code onComplete}.
+     */
+    public void close() {
+        closed = true;
+        for (BusSubscription<?> subscription : subscriptions) {
+            subscription.signal();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    /**
+     * Events skipped by subscribers that fell a full ring behind
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Events published after {@link #close} and discarded
+     */
+    public long getDiscardedAfterCloseCount() {
+        return discardedAfterClose.sum();
+    }
+
+    public long getSubscriberFailureCount() {
+        return subscriberFailures.sum();
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    public int getPartitionCount() {
+        return partitions.length;
+    }
+
+    private int partitionFor(String key) {
+        int hash = key != null ? key.hashCode() : 0;
+        hash ^= (hash >>> 16);
+        return hash & partitionMask;
+    }
+
+    /**
+     * Ring buffer for one partition. Writers serialize on the partition; a
+     * slot's sequence is cleared while it is rewritten so readers can detect
+     * being lapped.
+     */
+    private static final class Partition {
+        private static final long WRITING = -1L;
+
+        private final Slot[] slots;
+        private final int mask;
+        private final AtomicLong published = new AtomicLong();
+
+        private Partition(int ringSize) {
+            this.slots = new Slot[ringSize];
+            for (int i = 0; i < ringSize; i++) {
+                slots[i] = new Slot();
+            }
+            this.mask = ringSize - 1;
+        }
+
+        private synchronized void append(DomainEvent event) {
+            long sequence = published.get();
+            Slot slot = slots[(int) sequence & mask];
+            slot.sequence = WRITING;
+            slot.event = event;
+            slot.sequence = sequence;
+            published.lazySet(sequence + 1);
+        }
+
+        private long publishedCount() {
+            return published.get();
+        }
+
+        /**
+         * Event at {@code sequence}, or null if the slot has been overwritten
+         */
+        private DomainEvent read(long sequence) {
+            Slot slot = slots[(int) sequence & mask];
+            if (slot.sequence != sequence) {
+                return null;
+            }
+            DomainEvent event = slot.event;
+            return slot.sequence == sequence ? event : null;
+        }
+
+        private int capacity() {
+            return slots.length;
+        }
+    }
+
+    private static final class Slot {
+        private volatile long sequence = Partition.WRITING;
+        private volatile DomainEvent event;
+    }
+
+    /**
+     * Per-subscriber cursors over every partition. Delivery runs on the
+     * executor, at most one drain at a time, so onNext calls never overlap.
+     */
+    private final class BusSubscription<E extends DomainEvent> implements Flow.Subscription {
+        private final Class<E> eventType;
+        private final Flow.Subscriber<? super E> subscriber;
+        private final long[] cursors;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger pendingSignals = new AtomicInteger();
+        private final AtomicBoolean terminated = new AtomicBoolean();
+        private volatile boolean cancelled;
+        private volatile Throwable requestError;
+        private int nextPartition;
+
+        private BusSubscription(Class<E> eventType, Flow.Subscriber<? super E> subscriber) {
+            this.eventType = eventType;
+            this.subscriber = subscriber;
+            this.cursors = new long[partitions.length];
+            // Only events published after subscribing are delivered
+            for (int i = 0; i < partitions.length; i++) {
+                cursors[i] = partitions[i].publishedCount();
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                requestError = new IllegalArgumentException("Requested demand must be positive: " + n);
+            } else {
+                demand.accumulateAndGet(n, (current, added) -> {
+                    long sum = current + added;
+                    return sum < 0 ? Long.MAX_VALUE : sum;
+                });
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        private void signal() {
+            if (pendingSignals.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                deliverAvailable();
+                missed = pendingSignals.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void deliverAvailable() {
+            while (!cancelled) {
+                if (requestError != null) {
+                    terminate(requestError);
+                    return;
+                }
+                if (demand.get() == 0) {
+                    if (closed && fullyRead()) {
+                        terminate(null);
+                    }
+                    return;
+                }
+                E event = nextEvent();
+                if (event == null) {
+                    if (closed && fullyRead()) {
+                        terminate(null);
+                    }
+                    return;
+                }
+                try {
+                    subscriber.onNext(event);
+                } catch (RuntimeException e) {
+                    subscriberFailures.increment();
+                    terminate(e);
+                    return;
+                }
+                if (demand.get() != Long.MAX_VALUE) {
+                    demand.decrementAndGet();
+                }
+            }
+        }
+
+        /**
+         * Next event of the subscribed type, taking partitions round-robin
+         */
+        private E nextEvent() {
+            for (int scanned = 0; scanned < partitions.length; scanned++) {
+                int index = nextPartition;
+                nextPartition = (nextPartition + 1) & partitionMask;
+                Partition partition = partitions[index];
+                while (cursors[index] < partition.publishedCount()) {
+                    long oldestAvailable = partition.publishedCount() - partition.capacity();
+                    if (cursors[index] < oldestAvailable) {
+                        dropped.add(oldestAvailable - cursors[index]);
+                        cursors[index] = oldestAvailable;
+                    }
+                    DomainEvent event = partition.read(cursors[index]);
+                    if (event == null) {
+                        // Lapped while reading; the size check above catches up
+                        continue;
+                    }
+                    cursors[index]++;
+                    if (eventType.isInstance(event)) {
+                        return eventType.cast(event);
+                    }
+                }
+            }
+            return null;
+        }
+
+        private boolean fullyRead() {
+            for (int i = 0; i < partitions.length; i++) {
+                if (cursors[i] < partitions[i].publishedCount()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void terminate(Throwable error) {
+            cancel();
+            if (!terminated.compareAndSet(false, true)) {
+                return;
+            }
+            if (error == null) {
+                subscriber.onComplete();
+            } else {
+                subscriber.onError(error);
+            }
+        }
+    }
+
+    private final class HandlerSubscriber<E extends DomainEvent> implements Flow.Subscriber<E> {
+        private final Consumer<? super E> handler;
+        private volatile Flow.Subscription subscription;
+
+        private HandlerSubscriber(Consumer<? super E> handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(E event) {
+            try {
+                handler.accept(event);
+            } catch (RuntimeException e) {
+                subscriberFailures.increment();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
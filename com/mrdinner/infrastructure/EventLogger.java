@@ -0,0 +1,283 @@
+package com.mrdinner.infrastructure;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Asynchronous event logger. Callers copy a format template and up to three
+ * arguments into a preallocated ring buffer slot; formatting and output
+ * happen on a background thread. When the buffer is full, events are dropped
+ * and counted rather than blocking the caller.
+ */
+public class EventLogger {
+
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR, OFF
+    }
+
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Event[] ring;
+    private final int mask;
+    private final Consumer<String> sink;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private final int[] sampleRateByLevel = new int[Level.values().length];
+    private final Thread writer;
+    private volatile Level level = Level.INFO;
+    private volatile boolean running = true;
+
+    private static class Holder {
+        private static final EventLogger SHARED = createShared();
+    }
+
+    /**
+     * Logger shared by the service layer, writing to {@code System.out}
+     */
+    public static EventLogger getLogger() {
+        return Holder.SHARED;
+    }
+
+    public EventLogger(int capacity, Consumer<String> sink) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a positive power of two");
+        }
+        if (sink == null) {
+            throw new IllegalArgumentException("Sink cannot be null");
+        }
+        this.ring = new Event[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new Event(i - capacity);
+        }
+        this.mask = capacity - 1;
+        this.sink = sink;
+        for (Level each : Level.values()) {
+            sampleRateByLevel[each.ordinal()] = 1;
+        }
+        this.writer = new Thread(this::drainLoop, "event-logger");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public boolean isEnabled(Level eventLevel) {
+        return eventLevel != Level.OFF && eventLevel.compareTo(level) >= 0;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public void setLevel(Level level) {
+        if (level == null) {
+            throw new IllegalArgumentException("Level cannot be null");
+        }
+        this.level = level;
+    }
+
+    /**
+     * Keep roughly one in {@code oneIn} events at the given level; 1 keeps all
+     */
+    public void setSampleRate(Level eventLevel, int oneIn) {
+        if (eventLevel == null || eventLevel == Level.OFF) {
+            throw new IllegalArgumentException("Sample rate needs a concrete level");
+        }
+        if (oneIn <= 0) {
+            throw new IllegalArgumentException("Sample rate must be positive");
+        }
+        sampleRateByLevel[eventLevel.ordinal()] = oneIn;
+    }
+
+    public int getSampleRate(Level eventLevel) {
+        return eventLevel == Level.OFF ? 1 : sampleRateByLevel[eventLevel.ordinal()];
+    }
+
+    public void debug(String template) { log(Level.DEBUG, template, null, null, null); }
+    public void debug(String template, Object a) { log(Level.DEBUG, template, a, null, null); }
+    public void debug(String template, Object a, Object b) { log(Level.DEBUG, template, a, b, null); }
+    public void debug(String template, Object a, Object b, Object c) { log(Level.DEBUG, template, a, b, c); }
+
+    public void info(String template) { log(Level.INFO, template, null, null, null); }
+    public void info(String template, Object a) { log(Level.INFO, template, a, null, null); }
+    public void info(String template, Object a, Object b) { log(Level.INFO, template, a, b, null); }
+    public void info(String template, Object a, Object b, Object c) { log(Level.INFO, template, a, b, c); }
+
+    public void warn(String template) { log(Level.WARN, template, null, null, null); }
+    public void warn(String template, Object a) { log(Level.WARN, template, a, null, null); }
+    public void warn(String template, Object a, Object b) { log(Level.WARN, template, a, b, null); }
+    public void warn(String template, Object a, Object b, Object c) { log(Level.WARN, template, a, b, c); }
+
+    public void error(String template) { log(Level.ERROR, template, null, null, null); }
+    public void error(String template, Object a) { log(Level.ERROR, template, a, null, null); }
+    public void error(String template, Object a, Object b) { log(Level.ERROR, template, a, b, null); }
+    public void error(String template, Object a, Object b, Object c) { log(Level.ERROR, template, a, b, c); }
+
+    /**
+     * Record an event. Templates use {@link String#format} syntax and are only
+     * formatted on the writer thread, so arguments should be immutable or no
+     * longer modified by the caller.
+     */
+    public void log(Level eventLevel, String template, Object a, Object b, Object c) {
+        if (!isEnabled(eventLevel) || template == null) {
+            return;
+        }
+        int oneIn = sampleRateByLevel[eventLevel.ordinal()];
+        if (oneIn > 1 && ThreadLocalRandom.current().nextInt(oneIn) != 0) {
+            sampledOut.increment();
+            return;
+        }
+
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed.get() >= ring.length) {
+                dropped.increment();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        Event event = ring[(int) sequence & mask];
+        event.timestamp = System.currentTimeMillis();
+        event.level = eventLevel;
+        event.threadName = Thread.currentThread().getName();
+        event.template = template;
+        event.a = a;
+        event.b = b;
+        event.c = c;
+        event.sequence = sequence;
+    }
+
+    /**
+     * Wait until every event recorded before this call has been written
+     */
+    public boolean flush(long timeout, TimeUnit unit) {
+        long target = claimed.get();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (consumed.get() < target) {
+            if (!writer.isAlive() || System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            LockSupport.unpark(writer);
+            Thread.yield();
+        }
+        return true;
+    }
+
+    /**
+     * Write out pending events and stop the writer thread
+     */
+    public void close() {
+        flush(5, TimeUnit.SECONDS);
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getSampledOutCount() {
+        return sampledOut.sum();
+    }
+
+    public long getWrittenCount() {
+        return consumed.get();
+    }
+
+    public int getPendingCount() {
+        return (int) (claimed.get() - consumed.get());
+    }
+
+    private void drainLoop() {
+        long next = 0;
+        StringBuilder line = new StringBuilder(256);
+        while (true) {
+            Event event = ring[(int) next & mask];
+            if (event.sequence != next) {
+                // A claimed slot may still be being filled; only stop once nothing is claimed
+                if (!running && claimed.get() == next) {
+                    return;
+                }
+                LockSupport.parkNanos(this, claimed.get() == next ? IDLE_PARK_NANOS : 1000);
+                continue;
+            }
+
+            line.setLength(0);
+            format(event, line);
+            event.clear();
+            try {
+                sink.accept(line.toString());
+            } catch (RuntimeException e) {
+                dropped.increment();
+            }
+            consumed.lazySet(++next);
+        }
+    }
+
+    private static void format(Event event, StringBuilder line) {
+        line.append(LocalDateTime.ofInstant(Instant.ofEpochMilli(event.timestamp), ZoneId.systemDefault())
+                .format(TIME_FORMAT))
+            .append(' ').append(event.level)
+            .append(" [").append(event.threadName).append("] ");
+        try {
+            line.append(String.format(event.template, event.a, event.b, event.c));
+        } catch (RuntimeException e) {
+            line.append(event.template).append(" (unformattable: ").append(e.getMessage()).append(')');
+        }
+    }
+
+    private static EventLogger createShared() {
+        EventLogger logger = new EventLogger(DEFAULT_CAPACITY, line -> System.out.println(line));
+        String configured = System.getProperty("mrdinner.log.level");
+        if (configured != null) {
+            try {
+                logger.setLevel(Level.valueOf(configured.trim().toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                // A bad flag must not break every class holding the shared logger
+                logger.warn("Unknown log level '%s' in mrdinner.log.level; using %s", configured, logger.getLevel());
+            }
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(logger::close, "event-logger-shutdown"));
+        return logger;
+    }
+
+    private static class Event {
+        private volatile long sequence;
+        private long timestamp;
+        private Level level;
+        private String threadName;
+        private String template;
+        private Object a;
+        private Object b;
+        private Object c;
+
+        private Event(long initialSequence) {
+            this.sequence = initialSequence;
+        }
+
+        private void clear() {
+            threadName = null;
+            template = null;
+            a = null;
+            b = null;
+            c = null;
+        }
+    }
+}
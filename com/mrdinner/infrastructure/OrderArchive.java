@@ -0,0 +1,812 @@
+package com.mrdinner.infrastructure;
+
+import com.mrdinner.domain.common.Money;
+import com.mrdinner.domain.order.ArchivedOrder;
+import com.mrdinner.domain.order.Order;
+import com.mrdinner.domain.order.OrderStatus;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Column-oriented cold store for finished orders.
+ *
+ * Every call to {@link #append} writes one immutable segment file holding its
+ * orders column by column, sorted by order time, plus a sorted hash index and
+ * a bloom filter on order ID. Segments are memory-mapped read-only, so the
+ * heap only holds a few fields per segment no matter how many orders have
+ * been archived. A lookup by ID skips every segment whose bloom filter rules
+ * the order out.
+ *
+ * {@link #mergeSegments} folds small segments into larger ones, keeping each
+ * segment at least half the size of the one before it, so the number of
+ * segments grows with the log of the archive size. Merging streams the two
+ * segments column by column from their mappings into the new file, and stops
+ * at {@code MAX_SEGMENT_ROWS} rows or {@code MAX_SEGMENT_BYTES} bytes, so a
+ * full segment is never rewritten again and every offset fits in an int. A
+ * merged segment records the oldest segment it covers; segments it replaced
+ * that are still on disk after a crash are recognised and deleted when the
+ * archive is opened.
+ */
+public class OrderArchive {
+    private static final EventLogger log = EventLogger.getLogger();
+
+    private static final int MAGIC = 0x4F415243; // "OARC"
+    private static final int VERSION = 2;
+    /** Segments written before bloom filters and merging */
+    private static final int VERSION_1 = 1;
+    private static final int VERSION_1_HEADER_SIZE = 4 + 4 + 4 + 8 + 8;
+    private static final int HEADER_SIZE = VERSION_1_HEADER_SIZE + 4 + 4;
+    private static final String SEGMENT_PREFIX = "orders-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final OrderStatus[] STATUSES = OrderStatus.values();
+
+    private static final int BLOOM_BITS_PER_ORDER = 10;
+    private static final int BLOOM_PROBES = 7;
+    /** A segment is merged into the next newer one until it is more than this many times its size */
+    private static final int MERGE_RATIO = 2;
+    /** Segments are not appended or merged beyond this many rows */
+    private static final int MAX_SEGMENT_ROWS = 1 << 22;
+    /** Merges stop before a segment file would grow past this size */
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    /** Oldest first; replaced as a whole under the archive's lock */
+    private volatile List<Segment> segments;
+    private int nextSegmentNumber;
+
+    public OrderArchive(Path directory) {
+        if (directory == null) {
+            throw new IllegalArgumentException("Archive directory cannot be null");
+        }
+        this.directory = directory;
+        this.segments = Collections.emptyList();
+        try {
+            Files.createDirectories(directory);
+            loadSegments();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open order archive: " + directory, e);
+        }
+    }
+
+    /**
+     * Write the given orders as a new segment. Orders already archived are skipped.
+     * Returns the number of orders written.
+     */
+    public synchronized int append(List<Order> orders) {
+        List<ArchivedOrder> rows = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            if (!contains(order.getOrderId())) {
+                rows.add(summarize(order));
+            }
+        }
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        rows.sort(Comparator.comparing(ArchivedOrder::getOrderTime));
+
+        List<Segment> updated = new ArrayList<>(segments);
+        for (int from = 0; from < rows.size(); from += MAX_SEGMENT_ROWS) {
+            int number = nextSegmentNumber;
+            updated.add(writeSegment(rows.subList(from, Math.min(rows.size(), from + MAX_SEGMENT_ROWS)), number, number));
+            nextSegmentNumber++;
+        }
+        segments = Collections.unmodifiableList(updated);
+        return rows.size();
+    }
+
+    /**
+     * Merge the newest segments while a segment is no more than
+     * {@code MERGE_RATIO} times the size of the one after it and the result
+     * stays within the segment size limits. Lookups keep running against the
+     * old segments until the merged one is published.
+     *
+     * @return the number of merges done
+     */
+    public synchronized int mergeSegments() {
+        int merges = 0;
+        List<Segment> current = segments;
+        while (current.size() >= 2) {
+            Segment older = current.get(current.size() - 2);
+            Segment newer = current.get(current.size() - 1);
+            if ((long) older.rows > (long) newer.rows * MERGE_RATIO
+                    || older.rows + newer.rows > MAX_SEGMENT_ROWS
+                    || (long) older.data.capacity() + newer.data.capacity() > MAX_SEGMENT_BYTES) {
+                break;
+            }
+            Segment merged = writeMergedSegment(older, newer, nextSegmentNumber);
+            nextSegmentNumber++;
+
+            List<Segment> updated = new ArrayList<>(current.subList(0, current.size() - 2));
+            updated.add(merged);
+            current = Collections.unmodifiableList(updated);
+            segments = current;
+            deleteSegmentFile(older);
+            deleteSegmentFile(newer);
+            merges++;
+        }
+        return merges;
+    }
+
+    public boolean contains(String orderId) {
+        return findById(orderId).isPresent();
+    }
+
+    public Optional<ArchivedOrder> findById(String orderId) {
+        if (orderId == null) {
+            return Optional.empty();
+        }
+        long hash = hash(orderId);
+        List<Segment> current = segments;
+        // Newest first: recently archived orders are the likeliest lookups
+        for (int i = current.size() - 1; i >= 0; i--) {
+            Segment segment = current.get(i);
+            if (!segment.mightContain(hash)) {
+                continue;
+            }
+            int row = segment.findRow(orderId, hash);
+            if (row >= 0) {
+                return Optional.of(segment.read(row));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Archived orders placed in [from, to), ordered by order time within each segment
+     */
+    public List<ArchivedOrder> findByOrderTimeBetween(LocalDateTime from, LocalDateTime to) {
+        List<ArchivedOrder> result = new ArrayList<>();
+        forEachByOrderTime(from, to, result::add);
+        return result;
+    }
+
+    /**
+     * Hand each archived order placed in [from, to) to {@code action}, in the
+     * order of {@link #findByOrderTimeBetween}, without collecting them
+     */
+    public void forEachByOrderTime(LocalDateTime from, LocalDateTime to, Consumer<? super ArchivedOrder> action) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Time range cannot be null");
+        }
+        long fromMillis = toEpochMillis(from);
+        long toMillis = toEpochMillis(to);
+        for (Segment segment : segments) {
+            if (segment.maxTime < fromMillis || segment.minTime >= toMillis) {
+                continue;
+            }
+            int end = segment.firstRowAtOrAfter(toMillis);
+            for (int row = segment.firstRowAtOrAfter(fromMillis); row < end; row++) {
+                action.accept(segment.read(row));
+            }
+        }
+    }
+
+    /**
+     * Archived orders of one customer, oldest segment first. There is no
+     * index on customer, so this compares the customer column of every
+     * segment in place and only decodes the matching rows.
+     */
+    public List<ArchivedOrder> findByCustomer(String customerId) {
+        List<ArchivedOrder> result = new ArrayList<>();
+        if (customerId == null) {
+            return result;
+        }
+        byte[] wanted = customerId.getBytes(StandardCharsets.UTF_8);
+        for (Segment segment : segments) {
+            for (int row = 0; row < segment.rows; row++) {
+                if (segment.stringEquals(segment.customerIdColumn, row, wanted)) {
+                    result.add(segment.read(row));
+                }
+            }
+        }
+        return result;
+    }
+
+    public long count() {
+        long count = 0;
+        for (Segment segment : segments) {
+            count += segment.rows;
+        }
+        return count;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    private void loadSegments() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX + ".tmp")) {
+                    // Segment that was being written when the process stopped
+                    Files.deleteIfExists(file);
+                } else if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    files.add(file);
+                }
+            }
+        }
+        files.sort(Comparator.comparing(Path::toString));
+
+        // Newest first, dropping segments a later merge already covers
+        List<Segment> loaded = new ArrayList<>(files.size());
+        int coveredFrom = Integer.MAX_VALUE;
+        for (int i = files.size() - 1; i >= 0; i--) {
+            Path file = files.get(i);
+            int number = segmentNumber(file);
+            nextSegmentNumber = Math.max(nextSegmentNumber, number + 1);
+            if (number >= coveredFrom) {
+                Files.deleteIfExists(file);
+                continue;
+            }
+            Segment segment = openSegment(file, number);
+            loaded.add(segment);
+            coveredFrom = segment.firstSegment;
+        }
+        Collections.reverse(loaded);
+        segments = Collections.unmodifiableList(loaded);
+    }
+
+    private Segment writeSegment(List<ArchivedOrder> rows, int number, int firstSegment) {
+        Path file = segmentFile(number);
+        Path tempFile = directory.resolve(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer encoded = encode(rows, firstSegment);
+            while (encoded.hasRemaining()) {
+                channel.write(encoded);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write archive segment: " + file, e);
+        }
+        return publishSegment(tempFile, file, number);
+    }
+
+    /**
+     * Write the rows of two adjacent segments, in order time, as one new
+     * segment. Each column is copied straight from the two mappings into the
+     * file; only the merge order, the row renumbering and the bloom filter
+     * are held in memory.
+     */
+    private Segment writeMergedSegment(Segment older, Segment newer, int number) {
+        Path file = segmentFile(number);
+        Path tempFile = directory.resolve(file.getFileName() + ".tmp");
+        int rows = older.rows + newer.rows;
+        // Ties keep the older segment's row first, as appends are in time order
+        boolean[] fromNewer = new boolean[rows];
+        int[] olderToMerged = new int[older.rows];
+        int[] newerToMerged = new int[newer.rows];
+        for (int row = 0, i = 0, j = 0; row < rows; row++) {
+            if (i == older.rows || (j < newer.rows && newer.time(j) < older.time(i))) {
+                fromNewer[row] = true;
+                newerToMerged[j++] = row;
+            } else {
+                olderToMerged[i++] = row;
+            }
+        }
+
+        long[] bloom = new long[bloomWords(rows)];
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ColumnWriter out = new ColumnWriter(channel);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(rows);
+            out.putLong(Math.min(older.minTime, newer.minTime));
+            out.putLong(Math.max(older.maxTime, newer.maxTime));
+            out.putInt(older.firstSegment);
+            out.putInt(bloom.length);
+
+            copyColumn(out, fromNewer, older, older.timeColumn, newer, newer.timeColumn, 8);
+            copyColumn(out, fromNewer, older, older.statusColumn, newer, newer.statusColumn, 1);
+            copyColumn(out, fromNewer, older, older.subtotalColumn, newer, newer.subtotalColumn, 8);
+            copyColumn(out, fromNewer, older, older.taxColumn, newer, newer.taxColumn, 8);
+            copyColumn(out, fromNewer, older, older.deliveryFeeColumn, newer, newer.deliveryFeeColumn, 8);
+            copyColumn(out, fromNewer, older, older.totalColumn, newer, newer.totalColumn, 8);
+            copyColumn(out, fromNewer, older, older.itemCountColumn, newer, newer.itemCountColumn, 4);
+
+            // Both hash indexes are sorted, so merging them keeps the result sorted
+            for (int i = 0, j = 0; i + j < rows; ) {
+                long hash = takeOlderHash(older, i, newer, j) ? older.hash(i++) : newer.hash(j++);
+                out.putLong(hash);
+                addToBloom(bloom, hash);
+            }
+            for (int i = 0, j = 0; i + j < rows; ) {
+                out.putInt(takeOlderHash(older, i, newer, j)
+                    ? olderToMerged[older.hashRow(i++)] : newerToMerged[newer.hashRow(j++)]);
+            }
+            for (long word : bloom) {
+                out.putLong(word);
+            }
+
+            copyStringColumn(out, fromNewer, older, older.orderIdColumn, newer, newer.orderIdColumn);
+            copyStringColumn(out, fromNewer, older, older.customerIdColumn, newer, newer.customerIdColumn);
+            copyStringColumn(out, fromNewer, older, older.customerNameColumn, newer, newer.customerNameColumn);
+            copyStringColumn(out, fromNewer, older, older.currencyColumn, newer, newer.currencyColumn);
+            out.flush();
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write merged archive segment: " + file, e);
+        }
+        return publishSegment(tempFile, file, number);
+    }
+
+    private static boolean takeOlderHash(Segment older, int i, Segment newer, int j) {
+        return j == newer.rows || (i < older.rows && older.hash(i) <= newer.hash(j));
+    }
+
+    private static void copyColumn(ColumnWriter out, boolean[] fromNewer, Segment older, int olderColumn,
+                                   Segment newer, int newerColumn, int width) throws IOException {
+        int i = 0;
+        int j = 0;
+        for (boolean newerRow : fromNewer) {
+            if (newerRow) {
+                out.put(newer.data, newerColumn + j++ * width, width);
+            } else {
+                out.put(older.data, olderColumn + i++ * width, width);
+            }
+        }
+    }
+
+    private static void copyStringColumn(ColumnWriter out, boolean[] fromNewer, Segment older, int olderColumn,
+                                         Segment newer, int newerColumn) throws IOException {
+        int offset = 0;
+        out.putInt(offset);
+        int i = 0;
+        int j = 0;
+        for (boolean newerRow : fromNewer) {
+            offset += newerRow ? newer.stringLength(newerColumn, j++) : older.stringLength(olderColumn, i++);
+            out.putInt(offset);
+        }
+        i = 0;
+        j = 0;
+        for (boolean newerRow : fromNewer) {
+            Segment source = newerRow ? newer : older;
+            int column = newerRow ? newerColumn : olderColumn;
+            int row = newerRow ? j++ : i++;
+            out.put(source.data, source.stringStart(column, row), source.stringLength(column, row));
+        }
+    }
+
+    private Segment publishSegment(Path tempFile, Path file, int number) {
+        try {
+            Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE);
+            return openSegment(file, number);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot publish archive segment: " + file, e);
+        }
+    }
+
+    private Path segmentFile(int number) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private void deleteSegmentFile(Segment segment) {
+        Path file = segmentFile(segment.number);
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // The merged segment covers it; it is deleted when the archive is next opened
+            log.warn("Cannot delete merged archive segment %s: %s", file, e.getMessage());
+        }
+    }
+
+    private static int segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static ArchivedOrder summarize(Order order) {
+        return new ArchivedOrder(order.getOrderId(), order.getCustomer().getCustomerId(),
+            order.getCustomer().getName(), order.getOrderTime(), order.getStatus(), order.getSubtotal(),
+            order.getTax(), order.getDeliveryFee(), order.getTotalAmount(), order.getOrderItems().size());
+    }
+
+    private static ByteBuffer encode(List<ArchivedOrder> rows, int firstSegment) {
+        int count = rows.size();
+        byte[][] orderIds = new byte[count][];
+        byte[][] customerIds = new byte[count][];
+        byte[][] customerNames = new byte[count][];
+        byte[][] currencies = new byte[count][];
+        int stringBytes = 0;
+        for (int i = 0; i < count; i++) {
+            ArchivedOrder order = rows.get(i);
+            orderIds[i] = order.getOrderId().getBytes(StandardCharsets.UTF_8);
+            customerIds[i] = order.getCustomerId().getBytes(StandardCharsets.UTF_8);
+            customerNames[i] = order.getCustomerName().getBytes(StandardCharsets.UTF_8);
+            currencies[i] = order.getTotalAmount().getCurrency().getBytes(StandardCharsets.UTF_8);
+            stringBytes += orderIds[i].length + customerIds[i].length + customerNames[i].length + currencies[i].length;
+        }
+
+        long[] hashes = new long[count];
+        for (int i = 0; i < count; i++) {
+            hashes[i] = hash(rows.get(i).getOrderId());
+        }
+        long[] bloom = new long[bloomWords(count)];
+        for (long hash : hashes) {
+            addToBloom(bloom, hash);
+        }
+
+        int size = HEADER_SIZE + count * (8 + 1 + 8 * 4 + 4 + 8 + 4) + bloom.length * 8
+            + 4 * 4 * (count + 1) + stringBytes;
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(MAGIC).putInt(VERSION).putInt(count);
+        out.putLong(toEpochMillis(rows.get(0).getOrderTime()));
+        out.putLong(toEpochMillis(rows.get(count - 1).getOrderTime()));
+        out.putInt(firstSegment).putInt(bloom.length);
+
+        for (ArchivedOrder order : rows) {
+            out.putLong(toEpochMillis(order.getOrderTime()));
+        }
+        for (ArchivedOrder order : rows) {
+            out.put((byte) order.getStatus().ordinal());
+        }
+        for (ArchivedOrder order : rows) {
+            out.putLong(minorUnits(order.getSubtotal()));
+        }
+        for (ArchivedOrder order : rows) {
+            out.putLong(minorUnits(order.getTax()));
+        }
+        for (ArchivedOrder order : rows) {
+            out.putLong(minorUnits(order.getDeliveryFee()));
+        }
+        for (ArchivedOrder order : rows) {
+            out.putLong(minorUnits(order.getTotalAmount()));
+        }
+        for (ArchivedOrder order : rows) {
+            out.putInt(order.getItemCount());
+        }
+
+        // Hash index: hashes sorted ascending, each paired with its row
+        Integer[] byHash = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            byHash[i] = i;
+        }
+        Arrays.sort(byHash, (a, b) -> Long.compare(hashes[a], hashes[b]));
+        for (Integer row : byHash) {
+            out.putLong(hashes[row]);
+        }
+        for (Integer row : byHash) {
+            out.putInt(row);
+        }
+        for (long word : bloom) {
+            out.putLong(word);
+        }
+
+        putStringColumn(out, orderIds);
+        putStringColumn(out, customerIds);
+        putStringColumn(out, customerNames);
+        putStringColumn(out, currencies);
+        out.flip();
+        return out;
+    }
+
+    private static void putStringColumn(ByteBuffer out, byte[][] values) {
+        int offset = 0;
+        out.putInt(offset);
+        for (byte[] value : values) {
+            offset += value.length;
+            out.putInt(offset);
+        }
+        for (byte[] value : values) {
+            out.put(value);
+        }
+    }
+
+    /**
+     * Bloom filter size in 64-bit words: a power of two holding about
+     * {@code BLOOM_BITS_PER_ORDER} bits per order, about a 1% false positive rate
+     */
+    private static int bloomWords(int count) {
+        long bits = Math.max(64, (long) count * BLOOM_BITS_PER_ORDER);
+        long words = Long.highestOneBit(bits - 1) << 1 >>> 6;
+        return (int) Math.min(words, 1 << 24);
+    }
+
+    private static void addToBloom(long[] bloom, long hash) {
+        int mask = bloom.length * 64 - 1;
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < BLOOM_PROBES; i++) {
+            int bit = (h1 + i * h2) & mask;
+            bloom[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private static Segment openSegment(Path file, int number) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int version = data.getInt(4);
+            if (data.getInt(0) != MAGIC || (version != VERSION && version != VERSION_1)) {
+                throw new IOException("Not an order archive segment: " + file);
+            }
+            return new Segment(data, number, version);
+        }
+    }
+
+    private static long minorUnits(Money money) {
+        return money.getMinorUnits();
+    }
+
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static long hash(String value) {
+        // 64-bit FNV-1a over UTF-16 code units
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Buffers small writes to a segment file being built
+     */
+    private static class ColumnWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+
+        ColumnWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        /**
+         * Copy {@code length} bytes of {@code source} starting at {@code position}
+         */
+        void put(ByteBuffer source, int position, int length) throws IOException {
+            ByteBuffer bytes = source.duplicate();
+            bytes.limit(position + length);
+            bytes.position(position);
+            while (bytes.hasRemaining()) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int chunk = Math.min(bytes.remaining(), buffer.remaining());
+                ByteBuffer slice = bytes.duplicate();
+                slice.limit(slice.position() + chunk);
+                buffer.put(slice);
+                bytes.position(bytes.position() + chunk);
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * One memory-mapped segment file and the positions of its columns
+     */
+    private static class Segment {
+        private final ByteBuffer data;
+        private final int number;
+        /** Oldest segment number this one covers; its own number unless it was merged */
+        private final int firstSegment;
+        private final int rows;
+        private final long minTime;
+        private final long maxTime;
+        private final int bloomMask;
+        private final int timeColumn;
+        private final int statusColumn;
+        private final int subtotalColumn;
+        private final int taxColumn;
+        private final int deliveryFeeColumn;
+        private final int totalColumn;
+        private final int itemCountColumn;
+        private final int hashColumn;
+        private final int hashRowColumn;
+        private final int bloomColumn;
+        private final int orderIdColumn;
+        private final int customerIdColumn;
+        private final int customerNameColumn;
+        private final int currencyColumn;
+
+        Segment(ByteBuffer data, int number, int version) {
+            this.data = data;
+            this.number = number;
+            this.rows = data.getInt(8);
+            this.minTime = data.getLong(12);
+            this.maxTime = data.getLong(20);
+            int bloomWords;
+            if (version == VERSION_1) {
+                this.firstSegment = number;
+                bloomWords = 0;
+                this.timeColumn = VERSION_1_HEADER_SIZE;
+            } else {
+                this.firstSegment = data.getInt(28);
+                bloomWords = data.getInt(32);
+                this.timeColumn = HEADER_SIZE;
+            }
+            this.bloomMask = bloomWords * 64 - 1;
+            this.statusColumn = timeColumn + rows * 8;
+            this.subtotalColumn = statusColumn + rows;
+            this.taxColumn = subtotalColumn + rows * 8;
+            this.deliveryFeeColumn = taxColumn + rows * 8;
+            this.totalColumn = deliveryFeeColumn + rows * 8;
+            this.itemCountColumn = totalColumn + rows * 8;
+            this.hashColumn = itemCountColumn + rows * 4;
+            this.hashRowColumn = hashColumn + rows * 8;
+            this.bloomColumn = hashRowColumn + rows * 4;
+            this.orderIdColumn = bloomColumn + bloomWords * 8;
+            this.customerIdColumn = nextStringColumn(orderIdColumn);
+            this.customerNameColumn = nextStringColumn(customerIdColumn);
+            this.currencyColumn = nextStringColumn(customerNameColumn);
+        }
+
+        private int nextStringColumn(int column) {
+            return column + (rows + 1) * 4 + data.getInt(column + rows * 4);
+        }
+
+        /**
+         * False if the order is certainly not in this segment
+         */
+        boolean mightContain(long hash) {
+            if (bloomMask < 0) {
+                return true;
+            }
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32) | 1;
+            for (int i = 0; i < BLOOM_PROBES; i++) {
+                int bit = (h1 + i * h2) & bloomMask;
+                if ((data.getLong(bloomColumn + (bit >>> 6) * 8) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int findRow(String orderId, long hash) {
+            int low = 0;
+            int high = rows - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long midHash = data.getLong(hashColumn + mid * 8);
+                if (midHash < hash) {
+                    low = mid + 1;
+                } else if (midHash > hash) {
+                    high = mid - 1;
+                } else {
+                    // Step back to the first equal hash, then check each candidate
+                    while (mid > 0 && data.getLong(hashColumn + (mid - 1) * 8) == hash) {
+                        mid--;
+                    }
+                    for (; mid < rows && data.getLong(hashColumn + mid * 8) == hash; mid++) {
+                        int row = data.getInt(hashRowColumn + mid * 4);
+                        if (orderId.equals(string(orderIdColumn, row))) {
+                            return row;
+                        }
+                    }
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        int firstRowAtOrAfter(long epochMillis) {
+            int low = 0;
+            int high = rows;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (data.getLong(timeColumn + mid * 8) < epochMillis) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        long time(int row) {
+            return data.getLong(timeColumn + row * 8);
+        }
+
+        /**
+         * The {@code index}-th smallest order ID hash
+         */
+        long hash(int index) {
+            return data.getLong(hashColumn + index * 8);
+        }
+
+        int hashRow(int index) {
+            return data.getInt(hashRowColumn + index * 4);
+        }
+
+        int stringStart(int column, int row) {
+            return column + (rows + 1) * 4 + data.getInt(column + row * 4);
+        }
+
+        int stringLength(int column, int row) {
+            return data.getInt(column + (row + 1) * 4) - data.getInt(column + row * 4);
+        }
+
+        ArchivedOrder read(int row) {
+            String currency = string(currencyColumn, row);
+            return new ArchivedOrder(
+                string(orderIdColumn, row),
+                string(customerIdColumn, row),
+                string(customerNameColumn, row),
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(data.getLong(timeColumn + row * 8)), ZoneOffset.UTC),
+                STATUSES[data.get(statusColumn + row)],
+                money(data.getLong(subtotalColumn + row * 8), currency),
+                money(data.getLong(taxColumn + row * 8), currency),
+                money(data.getLong(deliveryFeeColumn + row * 8), currency),
+                money(data.getLong(totalColumn + row * 8), currency),
+                data.getInt(itemCountColumn + row * 4));
+        }
+
+        private boolean stringEquals(int column, int row, byte[] value) {
+            int start = data.getInt(column + row * 4);
+            int end = data.getInt(column + (row + 1) * 4);
+            if (end - start != value.length) {
+                return false;
+            }
+            int base = column + (rows + 1) * 4 + start;
+            for (int i = 0; i < value.length; i++) {
+                if (data.get(base + i) != value[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String string(int column, int row) {
+            int start = data.getInt(column + row * 4);
+            int end = data.getInt(column + (row + 1) * 4);
+            byte[] bytes = new byte[end - start];
+            int base = column + (rows + 1) * 4 + start;
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = data.get(base + i);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private static Money money(long minorUnits, String currency) {
+            return Money.ofMinor(minorUnits, currency);
+        }
+    }
+}
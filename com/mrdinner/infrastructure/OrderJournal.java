@@ -0,0 +1,939 @@
+package com.mrdinner.infrastructure;
+
+import com.mrdinner.domain.common.Address;
+import com.mrdinner.domain.common.Money;
+import com.mrdinner.domain.customer.Customer;
+import com.mrdinner.domain.menu.ChampagneFeastDinner;
+import com.mrdinner.domain.menu.Dinner;
+import com.mrdinner.domain.menu.EnglishDinner;
+import com.mrdinner.domain.menu.FrenchDinner;
+import com.mrdinner.domain.menu.ItemType;
+import com.mrdinner.domain.menu.MenuCatalog;
+import com.mrdinner.domain.menu.MenuItem;
+import com.mrdinner.domain.menu.ValentineDinner;
+import com.mrdinner.domain.order.Order;
+import com.mrdinner.domain.order.OrderItem;
+import com.mrdinner.domain.order.OrderStatus;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of order state changes stored in a memory-mapped file.
+ *
+ * The file is mapped in fixed-size chunks. Each record is laid out as
+ * [int length][int crc32][byte type][long timestamp][payload], and the length is
+ * written last so a torn record is never mistaken for a complete one. A record
+ * never spans two chunks; a length of -1 marks the unused tail of a chunk.
+ * Appends only copy bytes into the mapping, and a background thread forces dirty
+ * pages to disk every sync interval (group commit). Every status an order
+ * moves through is recorded, so replay brings it back in the status it had.
+ *
+ * Every record's payload starts with its order ID. Once an order has moved to
+ * the order archive, {@link #recordOrderArchived} marks it and replay skips it.
+ * When enough of the journal belongs to archived orders, {@link #compact}
+ * copies the live records into the next generation file ({@code orders.journal},
+ * then {@code orders.journal.1}, {@code orders.journal.2}, ...) and switches
+ * appends to it, so the journal only grows with the orders still live. Opening
+ * a journal picks up its newest generation.
+ */
+public class OrderJournal implements Closeable {
+    private static final EventLogger log = EventLogger.getLogger();
+
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+    public static final long DEFAULT_SYNC_INTERVAL_MILLIS = 10;
+
+    private static final int HEADER_SIZE = 8;
+    private static final int END_OF_CHUNK = -1;
+    private static final int MAX_RECORD_SIZE = 64 * 1024;
+    /** Fraction of journaled orders that must be archived before compacting */
+    private static final double COMPACTION_THRESHOLD = 0.5;
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private static final byte ORDER_CREATED = 1;
+    private static final byte MENU_ITEM_ADDED = 2;
+    private static final byte DINNER_ADDED = 3;
+    private static final byte ITEM_REMOVED = 4;
+    private static final byte CHARGES_UPDATED = 5;
+    private static final byte ORDER_CONFIRMED = 6;
+    private static final byte PAYMENT_COMPLETED = 7;
+    private static final byte ORDER_READY = 8;
+    private static final byte ORDER_CANCELLED = 9;
+    private static final byte ITEM_REPRICED = 10;
+    private static final byte ORDER_ARCHIVED = 11;
+    private static final byte STATUS_CHANGED = 12;
+    /** Record type, then timestamp */
+    private static final int PAYLOAD_OFFSET = HEADER_SIZE + 1 + 8;
+
+    private final Path file;
+    private final Object compactionLock = new Object();
+    private int generation;
+    private FileChannel channel;
+    private final int chunkSize;
+    private final ByteBuffer scratch;
+    private final CRC32 crc;
+    private final ScheduledExecutorService syncScheduler;
+    private volatile MappedByteBuffer currentChunk;
+    private int currentChunkIndex;
+    private long recordCount;
+    private long createdOrders;
+    private long archivedOrders;
+    private volatile boolean dirty;
+    private boolean closed;
+
+    public OrderJournal(Path file) {
+        this(file, DEFAULT_CHUNK_SIZE, DEFAULT_SYNC_INTERVAL_MILLIS);
+    }
+
+    public OrderJournal(Path file, int chunkSize, long syncIntervalMillis) {
+        if (file == null) {
+            throw new IllegalArgumentException("Journal file cannot be null");
+        }
+        if (chunkSize < MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException("Chunk size must be at least " + MAX_RECORD_SIZE + " bytes");
+        }
+        if (syncIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Sync interval must be positive");
+        }
+
+        this.file = file;
+        this.chunkSize = chunkSize;
+        this.scratch = ByteBuffer.allocate(MAX_RECORD_SIZE);
+        this.crc = new CRC32();
+        try {
+            this.generation = newestGeneration();
+            this.channel = FileChannel.open(generationFile(generation), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+            seekToEnd();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open order journal: " + file, e);
+        }
+        removeStaleGenerations();
+
+        this.syncScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "order-journal-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        syncScheduler.scheduleWithFixedDelay(this::syncIfDirty,
+            syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    public synchronized void recordOrderCreated(Order order) {
+        Customer customer = order.getCustomer();
+        ByteBuffer out = begin(ORDER_CREATED);
+        putString(out, order.getOrderId());
+        putDateTime(out, order.getOrderTime());
+        putString(out, customer.getCustomerId());
+        putString(out, customer.getName());
+        putString(out, customer.getEmail());
+        putString(out, customer.getPhoneNumber());
+        putAddress(out, customer.getDeliveryAddress());
+        putAddress(out, order.getDeliveryAddress());
+        commit();
+    }
+
+    public synchronized void recordItemAdded(Order order, OrderItem orderItem) {
+        if (orderItem.isMenuItem()) {
+            MenuItem menuItem = orderItem.getMenuItem();
+            ByteBuffer out = begin(MENU_ITEM_ADDED);
+            putItemHeader(out, order, orderItem);
+            putString(out, menuItem.getItemId());
+            putString(out, menuItem.getName());
+            putString(out, menuItem.getDescription());
+            putMoney(out, menuItem.getPrice());
+            out.put((byte) menuItem.getItemType().ordinal());
+            out.putInt(menuItem.getPreparationTimeMinutes());
+        } else {
+            Dinner dinner = orderItem.getDinner();
+            ByteBuffer out = begin(DINNER_ADDED);
+            putItemHeader(out, order, orderItem);
+            putString(out, dinner.getDinnerId());
+            putString(out, dinner.getDinnerType());
+            putString(out, dinner.getName());
+            putString(out, dinner.getDescription());
+            putMoney(out, dinner.getBasePrice());
+        }
+        commit();
+    }
+
+    public synchronized void recordItemRemoved(Order order, OrderItem orderItem) {
+        ByteBuffer out = begin(ITEM_REMOVED);
+        putString(out, order.getOrderId());
+        putString(out, orderItem.getOrderItemId());
+        commit();
+    }
+
+    public synchronized void recordItemRepriced(Order order, OrderItem orderItem, Money unitPrice) {
+        ByteBuffer out = begin(ITEM_REPRICED);
+        putString(out, order.getOrderId());
+        putString(out, orderItem.getOrderItemId());
+        putMoney(out, unitPrice);
+        commit();
+    }
+
+    public synchronized void recordChargesUpdated(Order order) {
+        recordChargesUpdated(order, order.getTax(), order.getDeliveryFee());
+    }
+
+    /**
+     * Record charges about to be applied to {@code order}
+     */
+    public synchronized void recordChargesUpdated(Order order, Money tax, Money deliveryFee) {
+        ByteBuffer out = begin(CHARGES_UPDATED);
+        putString(out, order.getOrderId());
+        putMoney(out, tax);
+        putMoney(out, deliveryFee);
+        commit();
+    }
+
+    public synchronized void recordOrderConfirmed(Order order) {
+        ByteBuffer out = begin(ORDER_CONFIRMED);
+        putString(out, order.getOrderId());
+        commit();
+    }
+
+    public synchronized void recordPaymentCompleted(Order order, String transactionId) {
+        ByteBuffer out = begin(PAYMENT_COMPLETED);
+        putString(out, order.getOrderId());
+        putString(out, transactionId != null ? transactionId : "");
+        commit();
+    }
+
+    public synchronized void recordOrderReady(Order order) {
+        ByteBuffer out = begin(ORDER_READY);
+        putString(out, order.getOrderId());
+        commit();
+    }
+
+    public synchronized void recordOrderCancelled(Order order, String reason) {
+        ByteBuffer out = begin(ORDER_CANCELLED);
+        putString(out, order.getOrderId());
+        putString(out, reason != null ? reason : "");
+        commit();
+    }
+
+    /**
+     * Record a move to a status without a dedicated record type, such as the
+     * delivery and refund steps
+     */
+    public synchronized void recordStatusChanged(Order order, OrderStatus status) {
+        ByteBuffer out = begin(STATUS_CHANGED);
+        putString(out, order.getOrderId());
+        out.put((byte) status.ordinal());
+        commit();
+    }
+
+    /**
+     * Mark an order as moved to the order archive; replay leaves it out and
+     * {@link #compact} drops its records
+     */
+    public synchronized void recordOrderArchived(Order order) {
+        ByteBuffer out = begin(ORDER_ARCHIVED);
+        putString(out, order.getOrderId());
+        commit();
+    }
+
+    /**
+     * Rebuild all journaled orders by replaying every record in append order.
+     * Customers, menu items and dinners shared between orders are rebuilt once.
+     */
+    public List<Order> replay() {
+        return replay(null);
+    }
+
+    /**
+     * Rebuild all journaled orders, linking their lines to the menu items and
+     * dinners in {@code catalog} by journaled ID. Items no longer in the
+     * catalog, or all items if it is null, are rebuilt from the journal as
+     * detached copies that later menu changes do not reach.
+     * Status changes keep their journaled time and bypass transition
+     * listeners and counters.
+     */
+    public List<Order> replay(MenuCatalog catalog) {
+        Replay replay = new Replay(catalog);
+        // Keeps compaction from switching files under the replay
+        synchronized (compactionLock) {
+            FileChannel source;
+            int lastChunk;
+            int endPosition;
+            synchronized (this) {
+                source = channel;
+                lastChunk = currentChunkIndex;
+                endPosition = currentChunk.position();
+            }
+
+            forEachRecord(source, 0, 0, lastChunk, endPosition, (chunk, start, length) -> {
+                // The checksum was verified when the journal was opened
+                chunk.position(start + HEADER_SIZE);
+                byte type = chunk.get();
+                long timestamp = chunk.getLong();
+                replay.apply(type, timestamp, chunk);
+            });
+        }
+        if (replay.detachedItems > 0) {
+            log.warn("Replayed %d menu items or dinners missing from the menu catalog as detached copies",
+                replay.detachedItems);
+        }
+        return new ArrayList<>(replay.orders.values());
+    }
+
+    /**
+     * Copy the records of orders that are not archived into the next
+     * generation file and continue appending there, once at least half of the
+     * orders in the journal are archived; otherwise do nothing. The bulk of
+     * the copy runs without blocking appends, which only wait while the
+     * records appended meanwhile are copied and the files are switched. A
+     * failed compaction leaves the journal on its current file, still open.
+     *
+     * @return the number of records dropped
+     */
+    public long compact() {
+        synchronized (compactionLock) {
+            FileChannel source;
+            int lastChunk;
+            int endPosition;
+            synchronized (this) {
+                checkOpen();
+                if (archivedOrders == 0 || archivedOrders < createdOrders * COMPACTION_THRESHOLD) {
+                    return 0;
+                }
+                source = channel;
+                lastChunk = currentChunkIndex;
+                endPosition = currentChunk.position();
+            }
+
+            // Records up to the snapshot never change, so they are read without the lock
+            Set<String> archived = new HashSet<>();
+            forEachRecord(source, 0, 0, lastChunk, endPosition, (chunk, start, length) -> {
+                if (chunk.get(start + HEADER_SIZE) == ORDER_ARCHIVED) {
+                    archived.add(orderIdOf(chunk, start));
+                }
+            });
+            Path next = generationFile(generation + 1);
+            Path temporary = next.resolveSibling(next.getFileName() + TEMPORARY_SUFFIX);
+            FileChannel target = null;
+            try {
+                target = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                LiveRecordCopier copier = new LiveRecordCopier(target, archived);
+                forEachRecord(source, 0, 0, lastChunk, endPosition, copier);
+                synchronized (this) {
+                    checkOpen();
+                    forEachRecord(channel, lastChunk, endPosition, currentChunkIndex, currentChunk.position(), copier);
+                    copier.finish();
+                    target.close();
+                    switchTo(temporary, next);
+                    long dropped = copier.visited - copier.kept;
+                    log.info("Compacted order journal into %s: dropped %d records of %d archived orders",
+                        next.getFileName(), dropped, archived.size());
+                    return dropped;
+                }
+            } catch (IOException e) {
+                discard(target, temporary);
+                throw new UncheckedIOException("Cannot compact order journal: " + file, e);
+            } catch (RuntimeException e) {
+                discard(target, temporary);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Force all appended records to disk now
+     */
+    public synchronized void sync() {
+        if (!closed && dirty) {
+            dirty = false;
+            currentChunk.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        syncScheduler.shutdown();
+        sync();
+        closed = true;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot close order journal", e);
+        }
+    }
+
+    /**
+     * Make the fully written {@code temporary} file the next generation and
+     * append to it from now on. Called with the monitor held.
+     */
+    private void switchTo(Path temporary, Path next) throws IOException {
+        currentChunk.force();
+        dirty = false;
+        Files.move(temporary, next);
+        FileChannel previous = channel;
+        try {
+            channel = FileChannel.open(next, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            resetPosition();
+            seekToEnd();
+        } catch (IOException | RuntimeException e) {
+            // Stay on the current generation; the new one must not win on the next open
+            closeQuietly(channel);
+            channel = previous;
+            resetPosition();
+            seekToEnd();
+            deleteQuietly(next);
+            throw e;
+        }
+        Path previousFile = generationFile(generation);
+        generation++;
+        closeQuietly(previous);
+        // May fail while old mappings are still alive; the next open retries
+        deleteQuietly(previousFile);
+    }
+
+    private void resetPosition() {
+        recordCount = 0;
+        createdOrders = 0;
+        archivedOrders = 0;
+    }
+
+    private Path generationFile(int number) {
+        return number == 0 ? file : file.resolveSibling(file.getFileName() + "." + number);
+    }
+
+    /**
+     * Highest generation number with a file, or 0
+     */
+    private int newestGeneration() throws IOException {
+        int newest = 0;
+        for (int number : generationNumbers()) {
+            if (number > newest) {
+                newest = number;
+            }
+        }
+        return newest;
+    }
+
+    private List<Integer> generationNumbers() throws IOException {
+        List<Integer> numbers = new ArrayList<>();
+        Path directory = file.toAbsolutePath().getParent();
+        String prefix = file.getFileName() + ".";
+        try (DirectoryStream<Path> siblings = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path sibling : siblings) {
+                String suffix = sibling.getFileName().toString().substring(prefix.length());
+                if (!suffix.isEmpty() && suffix.length() < 10 && suffix.chars().allMatch(Character::isDigit)) {
+                    numbers.add(Integer.parseInt(suffix));
+                }
+            }
+        }
+        return numbers;
+    }
+
+    /**
+     * Delete generations older than the current one and unfinished
+     * compaction output left by a crash
+     */
+    private void removeStaleGenerations() {
+        try {
+            for (int number : generationNumbers()) {
+                if (number < generation) {
+                    deleteQuietly(generationFile(number));
+                }
+            }
+            if (generation > 0) {
+                deleteQuietly(file);
+            }
+            deleteQuietly(file.resolveSibling(generationFile(generation + 1).getFileName() + TEMPORARY_SUFFIX));
+        } catch (IOException e) {
+            log.warn("Cannot list old order journal generations of %s: %s", file, e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Cannot delete %s: %s", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Drop a compaction target that was not switched to
+     */
+    private static void discard(FileChannel target, Path temporary) {
+        if (target != null) {
+            closeQuietly(target);
+        }
+        deleteQuietly(temporary);
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Cannot close order journal file: %s", e.getMessage());
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Order journal is closed");
+        }
+    }
+
+    private void syncIfDirty() {
+        if (!dirty) {
+            return;
+        }
+        MappedByteBuffer chunk = currentChunk;
+        dirty = false;
+        chunk.force();
+    }
+
+    private ByteBuffer begin(byte type) {
+        checkOpen();
+        scratch.clear();
+        scratch.put(type);
+        scratch.putLong(System.currentTimeMillis());
+        return scratch;
+    }
+
+    private void commit() {
+        scratch.flip();
+        int length = scratch.remaining();
+        if (currentChunk.remaining() < HEADER_SIZE + length + 4) {
+            currentChunk.putInt(END_OF_CHUNK);
+            nextChunk();
+        }
+
+        crc.reset();
+        crc.update(scratch.array(), 0, length);
+        int start = currentChunk.position();
+        currentChunk.position(start + 4);
+        currentChunk.putInt((int) crc.getValue());
+        currentChunk.put(scratch);
+        currentChunk.putInt(start, length);
+        counted(scratch.get(0));
+        dirty = true;
+    }
+
+    private void counted(byte type) {
+        recordCount++;
+        if (type == ORDER_CREATED) {
+            createdOrders++;
+        } else if (type == ORDER_ARCHIVED) {
+            archivedOrders++;
+        }
+    }
+
+    private void nextChunk() {
+        currentChunk.force();
+        try {
+            currentChunkIndex++;
+            currentChunk = mapChunk(currentChunkIndex);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot extend order journal", e);
+        }
+    }
+
+    /**
+     * Visit every complete record from {@code firstPosition} of
+     * {@code firstChunk} up to {@code endPosition} of {@code lastChunk}
+     */
+    private void forEachRecord(FileChannel source, int firstChunk, int firstPosition, int lastChunk, int endPosition,
+                               RecordVisitor visitor) {
+        try {
+            for (int chunkIndex = firstChunk; chunkIndex <= lastChunk; chunkIndex++) {
+                ByteBuffer chunk = source.map(FileChannel.MapMode.READ_ONLY,
+                    (long) chunkIndex * chunkSize, chunkSize);
+                int limit = chunkIndex == lastChunk ? endPosition : chunkSize;
+                int start = chunkIndex == firstChunk ? firstPosition : 0;
+                while (start < limit) {
+                    int length = chunk.getInt(start);
+                    if (length == END_OF_CHUNK) {
+                        break;
+                    }
+                    visitor.visit(chunk, start, length);
+                    start += HEADER_SIZE + length;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read order journal", e);
+        }
+    }
+
+    /**
+     * Copies the records of orders that are not archived into a fresh
+     * journal file, laid out in chunks like the original. Writes go through
+     * the channel rather than a mapping, so the file can be renamed as soon
+     * as it is closed.
+     */
+    private final class LiveRecordCopier implements RecordVisitor {
+        private final FileChannel target;
+        private final Set<String> archived;
+        private final ByteBuffer endOfChunk = ByteBuffer.allocate(4).putInt(0, END_OF_CHUNK);
+        private long chunkStart;
+        private int used;
+        private long visited;
+        private long kept;
+
+        LiveRecordCopier(FileChannel target, Set<String> archived) {
+            this.target = target;
+            this.archived = archived;
+        }
+
+        @Override
+        public void visit(ByteBuffer chunk, int start, int length) throws IOException {
+            visited++;
+            if (archived.contains(orderIdOf(chunk, start))) {
+                return;
+            }
+            if (chunkSize - used < HEADER_SIZE + length + 4) {
+                endOfChunk.rewind();
+                write(endOfChunk, chunkStart + used);
+                chunkStart += chunkSize;
+                used = 0;
+            }
+            ByteBuffer record = chunk.duplicate();
+            record.limit(start + HEADER_SIZE + length);
+            record.position(start);
+            write(record, chunkStart + used);
+            used += HEADER_SIZE + length;
+            kept++;
+        }
+
+        private void write(ByteBuffer bytes, long position) throws IOException {
+            while (bytes.hasRemaining()) {
+                position += target.write(bytes, position);
+            }
+        }
+
+        void finish() throws IOException {
+            target.force(true);
+        }
+    }
+
+    private static String orderIdOf(ByteBuffer chunk, int start) {
+        ByteBuffer payload = chunk.duplicate();
+        payload.position(start + PAYLOAD_OFFSET);
+        return getString(payload);
+    }
+
+    private interface RecordVisitor {
+        void visit(ByteBuffer chunk, int start, int length) throws IOException;
+    }
+
+    private MappedByteBuffer mapChunk(int chunkIndex) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_WRITE, (long) chunkIndex * chunkSize, chunkSize);
+    }
+
+    /**
+     * Scan existing records to find the append position; stops at the first
+     * empty, torn or corrupt record
+     */
+    private void seekToEnd() throws IOException {
+        long chunkCount = Math.max(1, (channel.size() + chunkSize - 1) / chunkSize);
+        for (int chunkIndex = 0; chunkIndex < chunkCount; chunkIndex++) {
+            MappedByteBuffer chunk = mapChunk(chunkIndex);
+            currentChunk = chunk;
+            currentChunkIndex = chunkIndex;
+            boolean sealed = false;
+            while (chunk.remaining() >= 4) {
+                int start = chunk.position();
+                int length = chunk.getInt();
+                if (length == END_OF_CHUNK) {
+                    sealed = true;
+                    break;
+                }
+                if (length <= 0 || length > chunk.remaining() - 4 || !checksumMatches(chunk, start, length)) {
+                    chunk.position(start);
+                    return;
+                }
+                chunk.position(start + HEADER_SIZE + length);
+                counted(chunk.get(start + HEADER_SIZE));
+            }
+            if (!sealed) {
+                return;
+            }
+        }
+        // Every existing chunk is full, continue in a fresh one
+        nextChunk();
+    }
+
+    private boolean checksumMatches(ByteBuffer chunk, int start, int length) {
+        int expected = chunk.getInt(start + 4);
+        ByteBuffer body = chunk.duplicate();
+        body.limit(start + HEADER_SIZE + length);
+        body.position(start + HEADER_SIZE);
+        crc.reset();
+        crc.update(body);
+        return (int) crc.getValue() == expected;
+    }
+
+    private void putItemHeader(ByteBuffer out, Order order, OrderItem orderItem) {
+        putString(out, order.getOrderId());
+        putString(out, orderItem.getOrderItemId());
+        out.putInt(orderItem.getQuantity());
+        putMoney(out, orderItem.getUnitPrice());
+    }
+
+    private static void putString(ByteBuffer out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Journal string too long: " + bytes.length + " bytes");
+        }
+        try {
+            out.putShort((short) bytes.length);
+            out.put(bytes);
+        } catch (BufferOverflowException e) {
+            throw new IllegalArgumentException("Journal record exceeds " + MAX_RECORD_SIZE + " bytes");
+        }
+    }
+
+    private static String getString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putMoney(ByteBuffer out, Money money) {
+        out.putLong(money.getMinorUnits());
+        putString(out, money.getCurrency());
+    }
+
+    private static Money getMoney(ByteBuffer in) {
+        long minorUnits = in.getLong();
+        return Money.ofMinor(minorUnits, getString(in));
+    }
+
+    private static void putDateTime(ByteBuffer out, LocalDateTime dateTime) {
+        out.putLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+        out.putInt(dateTime.getNano());
+    }
+
+    private static LocalDateTime getDateTime(ByteBuffer in) {
+        long epochSecond = in.getLong();
+        return LocalDateTime.ofEpochSecond(epochSecond, in.getInt(), ZoneOffset.UTC);
+    }
+
+    private static void putAddress(ByteBuffer out, Address address) {
+        putString(out, address.getStreet());
+        putString(out, address.getCity());
+        putString(out, address.getState());
+        putString(out, address.getZipCode());
+        putString(out, address.getCountry());
+    }
+
+    private static Address getAddress(ByteBuffer in) {
+        return new Address(getString(in), getString(in), getString(in), getString(in), getString(in));
+    }
+
+    /**
+     * State rebuilt while replaying the journal
+     */
+    private static class Replay {
+        private final MenuCatalog catalog;
+        private final Map<String, Order> orders = new LinkedHashMap<>();
+        private final Map<String, OrderItem> orderItems = new HashMap<>();
+        private final Map<String, Customer> customers = new HashMap<>();
+        private final Map<String, MenuItem> menuItems = new HashMap<>();
+        private final Map<String, Dinner> dinners = new HashMap<>();
+        private int detachedItems;
+
+        Replay(MenuCatalog catalog) {
+            this.catalog = catalog;
+        }
+
+        void apply(byte type, long timestamp, ByteBuffer in) {
+            try {
+                switch (type) {
+                    case ORDER_CREATED:
+                        applyOrderCreated(in);
+                        break;
+                    case MENU_ITEM_ADDED:
+                        applyMenuItemAdded(in);
+                        break;
+                    case DINNER_ADDED:
+                        applyDinnerAdded(in);
+                        break;
+                    case ITEM_REMOVED: {
+                        Order order = order(getString(in));
+                        order.removeOrderItem(orderItems.remove(getString(in)));
+                        break;
+                    }
+                    case ITEM_REPRICED: {
+                        order(getString(in));
+                        String orderItemId = getString(in);
+                        OrderItem orderItem = orderItems.get(orderItemId);
+                        if (orderItem == null) {
+                            throw new IllegalStateException("Journal references unknown order item: " + orderItemId);
+                        }
+                        orderItem.setUnitPrice(getMoney(in));
+                        break;
+                    }
+                    case CHARGES_UPDATED: {
+                        Order order = order(getString(in));
+                        order.setCharges(getMoney(in), getMoney(in));
+                        break;
+                    }
+                    case ORDER_CONFIRMED:
+                        restoreStatus(order(getString(in)), OrderStatus.CONFIRMED, timestamp);
+                        break;
+                    case PAYMENT_COMPLETED:
+                        restoreStatus(order(getString(in)), OrderStatus.PREPARING, timestamp);
+                        break;
+                    case ORDER_READY:
+                        restoreStatus(order(getString(in)), OrderStatus.READY, timestamp);
+                        break;
+                    case ORDER_CANCELLED:
+                        restoreStatus(order(getString(in)), OrderStatus.CANCELLED, timestamp);
+                        break;
+                    case STATUS_CHANGED: {
+                        Order order = order(getString(in));
+                        restoreStatus(order, OrderStatus.values()[in.get()], timestamp);
+                        break;
+                    }
+                    case ORDER_ARCHIVED: {
+                        Order order = orders.remove(getString(in));
+                        if (order != null) {
+                            for (OrderItem orderItem : order.getOrderItems()) {
+                                orderItems.remove(orderItem.getOrderItemId());
+                            }
+                        }
+                        break;
+                    }
+                    default:
+                        throw new IllegalStateException("Unknown journal record type: " + type);
+                }
+            } catch (BufferUnderflowException e) {
+                throw new IllegalStateException("Truncated journal record of type " + type, e);
+            }
+        }
+
+        private void applyOrderCreated(ByteBuffer in) {
+            String orderId = getString(in);
+            LocalDateTime orderTime = getDateTime(in);
+            String customerId = getString(in);
+            String name = getString(in);
+            String email = getString(in);
+            String phoneNumber = getString(in);
+            Address customerAddress = getAddress(in);
+            Address deliveryAddress = getAddress(in);
+
+            Customer customer = customers.computeIfAbsent(customerId,
+                id -> new Customer(id, name, email, phoneNumber, customerAddress));
+            orders.put(orderId, new Order(orderId, customer, deliveryAddress, orderTime));
+        }
+
+        private void applyMenuItemAdded(ByteBuffer in) {
+            Order order = order(getString(in));
+            String orderItemId = getString(in);
+            int quantity = in.getInt();
+            Money unitPrice = getMoney(in);
+            String itemId = getString(in);
+            String name = getString(in);
+            String description = getString(in);
+            Money price = getMoney(in);
+            ItemType itemType = ItemType.values()[in.get()];
+            int preparationTimeMinutes = in.getInt();
+
+            MenuItem menuItem = menuItems.computeIfAbsent(itemId, id -> {
+                MenuItem live = catalog != null ? catalog.findMenuItem(id) : null;
+                if (live != null) {
+                    return live;
+                }
+                detachedItems++;
+                MenuItem restored = new MenuItem(name, description, price, itemType);
+                restored.setPreparationTimeMinutes(preparationTimeMinutes);
+                return restored;
+            });
+            addItem(order, new OrderItem(orderItemId, menuItem, quantity, unitPrice));
+        }
+
+        private void applyDinnerAdded(ByteBuffer in) {
+            Order order = order(getString(in));
+            String orderItemId = getString(in);
+            int quantity = in.getInt();
+            Money unitPrice = getMoney(in);
+            String dinnerId = getString(in);
+            String dinnerType = getString(in);
+            String name = getString(in);
+            String description = getString(in);
+            Money basePrice = getMoney(in);
+
+            Dinner dinner = dinners.computeIfAbsent(dinnerId, id -> {
+                Dinner live = catalog != null ? catalog.findDinner(id) : null;
+                if (live != null) {
+                    return live;
+                }
+                detachedItems++;
+                return newDinner(dinnerType, name, description, basePrice);
+            });
+            addItem(order, new OrderItem(orderItemId, dinner, quantity, unitPrice));
+        }
+
+        private void addItem(Order order, OrderItem orderItem) {
+            order.addOrderItem(orderItem);
+            orderItems.put(orderItem.getOrderItemId(), orderItem);
+        }
+
+        private static void restoreStatus(Order order, OrderStatus status, long timestamp) {
+            order.restoreStatus(status,
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault()));
+        }
+
+        private Order order(String orderId) {
+            Order order = orders.get(orderId);
+            if (order == null) {
+                throw new IllegalStateException("Journal references unknown order: " + orderId);
+            }
+            return order;
+        }
+
+        private static Dinner newDinner(String dinnerType, String name, String description, Money basePrice) {
+            switch (dinnerType) {
+                case "ValentineDinner":
+                    return new ValentineDinner(name, description, basePrice);
+                case "FrenchDinner":
+                    return new FrenchDinner(name, description, basePrice);
+                case "EnglishDinner":
+                    return new EnglishDinner(name, description, basePrice);
+                case "ChampagneFeastDinner":
+                    return new ChampagneFeastDinner(name, description, basePrice);
+                default:
+                    throw new IllegalStateException("Unknown dinner type in journal: " + dinnerType);
+            }
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.mrdinner.service;
+
+import com.mrdinner.domain.common.Address;
+import com.mrdinner.domain.common.Money;
+import com.mrdinner.domain.menu.Dinner;
+import com.mrdinner.infrastructure.EventLogger;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Prices large batches of dinner quotes in parallel, e.g. for price sheets
+ * or what-if runs. Each quote is {@code quantity} of one dinner priced as a
+ * whole order: the volume-discounted line total as
+ * {@link PricingService#calculateDinnerPrice} prices it, then tax for the
+ * delivery address, delivery fee and total as
+ * {@link PricingService#calculateOrderPricing} prices a one-line order.
+ * Quotes have no serving style dimension: no price depends on a dinner's
+ * serving style, so every style would repeat the same quote.
+ * All dinners in a batch must be priced in the same currency.
+ *
+ * A batch reads the pricing rules, tax rate and dinner prices once, then
+ * splits the quotes across a fork-join pool. Workers share only that
+ * read-only snapshot and write to disjoint ranges of the result arrays.
+ */
+public class BatchQuoter {
+    private static final EventLogger log = EventLogger.getLogger();
+    private static final int LEAF_SIZE = 4096;
+    /** Quantities below this have their volume multiplier cached per task */
+    private static final int CACHED_QUANTITIES = 64;
+
+    private final PricingService pricingService;
+    private final ForkJoinPool pool;
+
+    public BatchQuoter(PricingService pricingService) {
+        this(pricingService, ForkJoinPool.commonPool());
+    }
+
+    public BatchQuoter(PricingService pricingService, ForkJoinPool pool) {
+        if (pricingService == null) {
+            throw new IllegalArgumentException("Pricing service cannot be null");
+        }
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool cannot be null");
+        }
+        this.pricingService = pricingService;
+        this.pool = pool;
+    }
+
+    /**
+     * Quote every dinner at every quantity; quote {@code d * quantities.length + q}
+     * is dinner {@code d} at {@code quantities[q]}
+     *
+     * @param deliveryAddress chooses the tax jurisdiction; null for the default rate
+     * @throws IllegalArgumentException if the dinners are priced in different currencies
+     */
+    public QuoteSheet quoteGrid(List<Dinner> dinners, int[] quantities, Address deliveryAddress) {
+        if (dinners == null || quantities == null) {
+            throw new IllegalArgumentException("Dinners and quantities cannot be null");
+        }
+        int count = Math.multiplyExact(dinners.size(), quantities.length);
+        int[] dinnerIndexes = new int[count];
+        int[] gridQuantities = new int[count];
+        for (int d = 0, i = 0; d < dinners.size(); d++) {
+            for (int q = 0; q < quantities.length; q++, i++) {
+                dinnerIndexes[i] = d;
+                gridQuantities[i] = quantities[q];
+            }
+        }
+        return quote(dinners, dinnerIndexes, gridQuantities, deliveryAddress);
+    }
+
+    /**
+     * Quote {@code quantities[i]} of {@code dinners.get(dinnerIndexes[i])} for every i
+     *
+     * @param deliveryAddress chooses the tax jurisdiction; null for the default rate
+     * @throws IllegalArgumentException if the dinners are priced in different currencies
+     */
+    public QuoteSheet quote(List<Dinner> dinners, int[] dinnerIndexes, int[] quantities, Address deliveryAddress) {
+        if (dinners == null || dinnerIndexes == null || quantities == null) {
+            throw new IllegalArgumentException("Dinners, indexes and quantities cannot be null");
+        }
+        if (dinnerIndexes.length != quantities.length) {
+            throw new IllegalArgumentException("Each quote needs one dinner index and one quantity");
+        }
+        for (int i = 0; i < quantities.length; i++) {
+            if (quantities[i] <= 0) {
+                throw new IllegalArgumentException("Quantity must be positive at quote " + i);
+            }
+            if (dinnerIndexes[i] < 0 || dinnerIndexes[i] >= dinners.size()) {
+                throw new IllegalArgumentException("Dinner index out of range at quote " + i);
+            }
+        }
+
+        PricingRules rules = pricingService.getRules();
+        TaxJurisdictions.Jurisdiction jurisdiction = deliveryAddress != null
+            ? pricingService.getTaxJurisdictions().resolve(deliveryAddress) : null;
+        BigDecimal taxRate = jurisdiction != null ? jurisdiction.getRate() : rules.getTaxRate();
+        Money[] unitPrices = new Money[dinners.size()];
+        for (int d = 0; d < unitPrices.length; d++) {
+            unitPrices[d] = dinners.get(d).calculateTotalPrice();
+        }
+        String currency = unitPrices.length > 0 ? unitPrices[0].getCurrency() : rules.getCurrency();
+        for (int d = 1; d < unitPrices.length; d++) {
+            if (!unitPrices[d].getCurrency().equals(currency)) {
+                throw new IllegalArgumentException("Cannot quote dinners priced in " + currency + " and "
+                    + unitPrices[d].getCurrency() + " in one batch");
+            }
+        }
+
+        QuoteSheet sheet = new QuoteSheet(quantities.length, currency);
+        long start = System.nanoTime();
+        pool.invoke(new QuoteTask(new Snapshot(rules, taxRate, unitPrices, dinnerIndexes, quantities, sheet),
+            0, quantities.length));
+        log.debug("Quoted %d dinners in %d us", quantities.length, (System.nanoTime() - start) / 1000);
+        return sheet;
+    }
+
+    /**
+     * Read-only inputs shared by every task of one batch
+     */
+    private static final class Snapshot {
+        private final PricingRules rules;
+        private final BigDecimal taxRate;
+        private final Money[] unitPrices;
+        private final int[] dinnerIndexes;
+        private final int[] quantities;
+        private final QuoteSheet sheet;
+
+        private Snapshot(PricingRules rules, BigDecimal taxRate, Money[] unitPrices, int[] dinnerIndexes,
+                         int[] quantities, QuoteSheet sheet) {
+            this.rules = rules;
+            this.taxRate = taxRate;
+            this.unitPrices = unitPrices;
+            this.dinnerIndexes = dinnerIndexes;
+            this.quantities = quantities;
+            this.sheet = sheet;
+        }
+    }
+
+    private static final class QuoteTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Snapshot snapshot;
+        private final int from;
+        private final int to;
+
+        private QuoteTask(Snapshot snapshot, int from, int to) {
+            this.snapshot = snapshot;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SIZE) {
+                quoteRange();
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new QuoteTask(snapshot, from, middle), new QuoteTask(snapshot, middle, to));
+        }
+
+        private void quoteRange() {
+            PricingRules rules = snapshot.rules;
+            QuoteSheet sheet = snapshot.sheet;
+            // Per-task scratch: volume multipliers for small quantities
+            BigDecimal[] multipliers = new BigDecimal[CACHED_QUANTITIES];
+            for (int i = from; i < to; i++) {
+                int quantity = snapshot.quantities[i];
+                BigDecimal multiplier;
+                if (quantity < CACHED_QUANTITIES) {
+                    multiplier = multipliers[quantity];
+                    if (multiplier == null) {
+                        multiplier = rules.volumeMultiplier(quantity);
+                        multipliers[quantity] = multiplier;
+                    }
+                } else {
+                    multiplier = rules.volumeMultiplier(quantity);
+                }
+                Money line = snapshot.unitPrices[snapshot.dinnerIndexes[i]].multiply(multiplier).multiply(quantity);
+                Money tax = line.multiply(snapshot.taxRate);
+                Money fee = rules.deliveryFee(line);
+                sheet.lineTotals[i] = line.getMinorUnits();
+                sheet.taxes[i] = tax.getMinorUnits();
+                sheet.deliveryFees[i] = fee.getMinorUnits();
+                sheet.totals[i] = line.getMinorUnits() + tax.getMinorUnits() + fee.getMinorUnits();
+            }
+        }
+    }
+
+    /**
+     * Batch results as parallel arrays of minor units, one slot per quote
+     */
+    public static class QuoteSheet {
+        private final String currency;
+        private final long[] lineTotals;
+        private final long[] taxes;
+        private final long[] deliveryFees;
+        private final long[] totals;
+
+        private QuoteSheet(int size, String currency) {
+            this.currency = currency;
+            this.lineTotals = new long[size];
+            this.taxes = new long[size];
+            this.deliveryFees = new long[size];
+            this.totals = new long[size];
+        }
+
+        public int size() { return totals.length; }
+        public String getCurrency() { return currency; }
+
+        public long getLineTotalMinorUnits(int index) { return lineTotals[index]; }
+        public long getTaxMinorUnits(int index) { return taxes[index]; }
+        public long getDeliveryFeeMinorUnits(int index) { return deliveryFees[index]; }
+        public long getTotalMinorUnits(int index) { return totals[index]; }
+
+        /**
+         * One quote as an {@link PricingService.OrderPricing}
+         */
+        public PricingService.OrderPricing getPricing(int index) {
+            return new PricingService.OrderPricing(Money.ofMinor(lineTotals[index], currency),
+                Money.ofMinor(taxes[index], currency), Money.ofMinor(deliveryFees[index], currency),
+                Money.ofMinor(totals[index], currency));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("QuoteSheet{quotes=%d, currency=%s}", totals.length, currency);
+        }
+    }
+}
@@ -4,23 +4,51 @@ import com.mrdinner.domain.common.Address;
 import com.mrdinner.domain.common.Money;
 import com.mrdinner.domain.delivery.Delivery;
 import com.mrdinner.domain.delivery.DeliveryStatus;
+import com.mrdinner.domain.event.DeliveryAssignedEvent;
+import com.mrdinner.domain.event.DeliveryCompletedEvent;
+import com.mrdinner.domain.event.DomainEvent;
 import com.mrdinner.domain.order.Order;
+import com.mrdinner.domain.order.OrderStatus;
 import com.mrdinner.domain.staff.Courier;
+import com.mrdinner.infrastructure.EventBus;
+import com.mrdinner.infrastructure.EventLogger;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Service for managing delivery operations
  */
 public class DeliveryService {
-    private List<Delivery> deliveries;
+    private static final EventLogger log = EventLogger.getLogger();
+
+    private Queue<Delivery> deliveries;
     private List<Courier> couriers;
+    private volatile EventBus eventBus;
+    private volatile OrderService orderService;
 
     public DeliveryService() {
-        this.deliveries = new ArrayList<>();
-        this.couriers = new ArrayList<>();
+        this.deliveries = new ConcurrentLinkedQueue<>();
+        this.couriers = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Publish delivery events to the given bus from now on; null stops publishing
+     */
+    public void setEventBus(EventBus eventBus) {
+        this.eventBus = eventBus;
+    }
+
+    /**
+     * Route order status changes made by deliveries through the given order
+     * service, so they are locked and journaled like its own changes
+     */
+    void setOrderService(OrderService orderService) {
+        this.orderService = orderService;
     }
 
     /**
@@ -32,7 +60,24 @@ public class DeliveryService {
         }
         
         deliveries.add(delivery);
-        System.out.println("Added delivery: " + delivery.getDeliveryId());
+        log.info("Added delivery: %s", delivery.getDeliveryId());
+    }
+
+    /**
+     * Add a batch of deliveries to the system
+     */
+    public void addDeliveries(List<Delivery> newDeliveries) {
+        if (newDeliveries == null) {
+            throw new IllegalArgumentException("Deliveries cannot be null");
+        }
+        for (Delivery delivery : newDeliveries) {
+            if (delivery == null) {
+                throw new IllegalArgumentException("Delivery cannot be null");
+            }
+        }
+        
+        deliveries.addAll(newDeliveries);
+        log.info("Added %d deliveries", newDeliveries.size());
     }
 
     /**
@@ -47,8 +92,8 @@ public class DeliveryService {
         }
         
         delivery.assignCourier(courier);
-        System.out.println(String.format("Assigned courier %s to delivery %s", 
-            courier.getFullName(), delivery.getDeliveryId()));
+        publish(new DeliveryAssignedEvent(delivery, courier));
+        log.info("Assigned courier %s to delivery %s", courier.getFullName(), delivery.getDeliveryId());
     }
 
     /**
@@ -60,7 +105,11 @@ public class DeliveryService {
         }
         
         delivery.markPickedUp();
-        System.out.println("Delivery picked up: " + delivery.getDeliveryId());
+        // An order cancelled while awaiting pickup keeps its status
+        if (delivery.getOrder().getStatus() == OrderStatus.READY) {
+            updateOrderStatus(delivery.getOrder(), OrderStatus.OUT_FOR_DELIVERY);
+        }
+        log.info("Delivery picked up: %s", delivery.getDeliveryId());
     }
 
     /**
@@ -72,7 +121,7 @@ public class DeliveryService {
         }
         
         delivery.markInTransit();
-        System.out.println("Delivery in transit: " + delivery.getDeliveryId());
+        log.info("Delivery in transit: %s", delivery.getDeliveryId());
     }
 
     /**
@@ -84,12 +133,10 @@ public class DeliveryService {
         }
         
         delivery.markDelivered(tip);
+        updateOrderStatus(delivery.getOrder(), OrderStatus.DELIVERED);
+        publish(new DeliveryCompletedEvent(delivery));
         
-        // Update order status
-        delivery.getOrder().setStatus(com.mrdinner.domain.order.OrderStatus.DELIVERED);
-        
-        System.out.println(String.format("Delivery completed: %s (tip: %s)", 
-            delivery.getDeliveryId(), tip != null ? tip : "None"));
+        log.info("Delivery completed: %s (tip: %s)", delivery.getDeliveryId(), tip != null ? tip : "None");
     }
 
     /**
@@ -101,7 +148,7 @@ public class DeliveryService {
         }
         
         delivery.markFailed(reason);
-        System.out.println("Delivery failed: " + delivery.getDeliveryId() + " - " + reason);
+        log.warn("Delivery failed: %s - %s", delivery.getDeliveryId(), reason);
     }
 
     /**
@@ -113,7 +160,7 @@ public class DeliveryService {
         }
         
         delivery.cancel();
-        System.out.println("Delivery cancelled: " + delivery.getDeliveryId() + " - " + reason);
+        log.info("Delivery cancelled: %s - %s", delivery.getDeliveryId(), reason);
     }
 
     /**
@@ -170,7 +217,7 @@ public class DeliveryService {
         }
         
         couriers.add(courier);
-        System.out.println("Added courier: " + courier.getFullName());
+        log.info("Added courier: %s", courier.getFullName());
     }
 
     /**
@@ -217,7 +264,7 @@ public class DeliveryService {
             if (bestCourier.isPresent()) {
                 assignCourier(delivery, bestCourier.get());
             } else {
-                System.out.println("No available courier found for delivery: " + delivery.getDeliveryId());
+                log.warn("No available courier found for delivery: %s", delivery.getDeliveryId());
             }
         }
     }
@@ -295,6 +342,24 @@ public class DeliveryService {
         }
     }
 
+    private void updateOrderStatus(Order order, OrderStatus status) {
+        OrderService service = orderService;
+        if (service == null) {
+            order.setStatus(status);
+        } else if (status == OrderStatus.OUT_FOR_DELIVERY) {
+            service.markOrderOutForDelivery(order);
+        } else {
+            service.markOrderDelivered(order);
+        }
+    }
+
+    private void publish(DomainEvent event) {
+        EventBus bus = eventBus;
+        if (bus != null) {
+            bus.publish(event);
+        }
+    }
+
     private double calculateDistance(Address address1, Address address2) {
         // Simplified distance calculation - in real system would use geocoding
         // For demo purposes, return a random distance between 1-10 miles
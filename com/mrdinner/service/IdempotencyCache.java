@@ -0,0 +1,118 @@
+package com.mrdinner.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of results by client idempotency key. The first call for a
+ * key runs the operation; repeats within the time-to-live get the same
+ * result, and concurrent repeats wait for the first call instead of running
+ * the operation again. Failed operations are not cached, so a retry after a
+ * failure runs again.
+ *
+ * Every entry lives for the same time, so expiry order is insertion order:
+ * a FIFO queue drives both expiry and eviction at constant cost per insert.
+ */
+class IdempotencyCache<V> {
+    private final Map<String, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry<V>> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final long ttlNanos;
+    private final int maxEntries;
+
+    IdempotencyCache(Duration ttl, int maxEntries) {
+        if (ttl == null || ttl.isZero() || ttl.isNegative()) {
+            throw new IllegalArgumentException("Time-to-live must be positive");
+        }
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Maximum entries must be positive");
+        }
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+    }
+
+    V getOrCompute(String key, Supplier<V> operation) {
+        long now = System.nanoTime();
+        Entry<V> entry = entries.get(key);
+        if (entry != null && entry.isExpired(now)) {
+            remove(entry);
+            entry = null;
+        }
+        if (entry == null) {
+            Entry<V> created = new Entry<>(key, now + ttlNanos);
+            entry = entries.putIfAbsent(key, created);
+            if (entry == null) {
+                insertionOrder.add(created);
+                size.incrementAndGet();
+                evict(now);
+                return run(created, operation);
+            }
+        }
+        try {
+            return entry.result.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    private V run(Entry<V> entry, Supplier<V> operation) {
+        try {
+            V value = operation.get();
+            entry.result.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            remove(entry);
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private void evict(long now) {
+        Entry<V> oldest;
+        while ((oldest = insertionOrder.peek()) != null
+                && (size.get() > maxEntries || oldest.isExpired(now))) {
+            if (insertionOrder.remove(oldest)) {
+                if (entries.remove(oldest.key, oldest)) {
+                    size.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    private void remove(Entry<V> entry) {
+        // The queue node is left for evict() to discard
+        if (entries.remove(entry.key, entry)) {
+            size.decrementAndGet();
+        }
+    }
+
+    private static class Entry<V> {
+        private final String key;
+        private final long expiresAt;
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+
+        private Entry(String key, long expiresAt) {
+            this.key = key;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+}
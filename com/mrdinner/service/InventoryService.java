@@ -1,27 +1,49 @@
 package com.mrdinner.service;
 
 import com.mrdinner.domain.common.Money;
+import com.mrdinner.domain.event.DomainEvent;
+import com.mrdinner.domain.event.StockLowEvent;
 import com.mrdinner.domain.inventory.Inventory;
+import com.mrdinner.domain.inventory.RecipeBook;
 import com.mrdinner.domain.inventory.StockItem;
+import com.mrdinner.domain.menu.Dinner;
 import com.mrdinner.domain.menu.MenuItem;
 import com.mrdinner.domain.order.Order;
-import com.mrdinner.domain.order.OrderItem;
+import com.mrdinner.infrastructure.EventBus;
+import com.mrdinner.infrastructure.EventLogger;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Service for managing inventory operations
  */
 public class InventoryService {
+    private static final EventLogger log = EventLogger.getLogger();
+
     private final Inventory inventory;
+    private final RecipeBook recipes;
+    /** Stock taken by each confirmed order, returned if it is cancelled */
+    private final Map<String, RecipeBook.Requirements> reservations = new ConcurrentHashMap<>();
+    private volatile EventBus eventBus;
 
     public InventoryService() {
         this.inventory = new Inventory();
+        this.recipes = new RecipeBook();
         initializeDefaultInventory();
     }
 
+    /**
+     * Publish stock events to the given bus from now on; null stops publishing
+     */
+    public void setEventBus(EventBus eventBus) {
+        this.eventBus = eventBus;
+    }
+
     /**
      * Add a new stock item to inventory
      */
@@ -35,7 +57,7 @@ public class InventoryService {
         
         inventory.addStockItem(stockItem);
         
-        System.out.println("Added stock item: " + stockItem.getItemName());
+        log.info("Added stock item: %s", stockItem.getItemName());
         return stockItem;
     }
 
@@ -46,7 +68,8 @@ public class InventoryService {
         StockItem stockItem = inventory.getStockItem(stockItemId);
         if (stockItem != null) {
             inventory.removeStockItem(stockItemId);
-            System.out.println("Removed stock item: " + stockItem.getItemName());
+            recipes.stockRemoved(stockItem);
+            log.info("Removed stock item: %s", stockItem.getItemName());
         }
     }
 
@@ -57,30 +80,119 @@ public class InventoryService {
         inventory.updateStockQuantity(stockItemId, newQuantity);
         
         StockItem stockItem = inventory.getStockItem(stockItemId);
-        System.out.println(String.format("Updated stock for %s: %d units", 
-            stockItem.getItemName(), newQuantity));
+        if (stockItem.isLowStock()) {
+            publish(new StockLowEvent(stockItem));
+        }
+        log.info("Updated stock for %s: %d units", stockItem.getItemName(), newQuantity);
+    }
+
+    /**
+     * Set the stock one unit of a menu item consumes
+     */
+    public void defineRecipe(MenuItem menuItem, Map<StockItem, Integer> ingredients) {
+        recipes.defineRecipe(menuItem, ingredients);
+        log.info("Defined recipe for %s: %d stock items", menuItem.getName(), ingredients.size());
     }
 
     /**
-     * Consume stock for an order
+     * Set the stock one unit of a dinner consumes besides its menu items
+     */
+    public void defineRecipe(Dinner dinner, Map<StockItem, Integer> extras) {
+        recipes.defineRecipe(dinner, extras);
+        log.info("Defined recipe for %s: %d extra stock items", dinner.getName(), extras.size());
+    }
+
+    public RecipeBook getRecipeBook() {
+        return recipes;
+    }
+
+    /**
+     * Reserve every stock item an order's recipes need, all of them or none,
+     * without locking; see {@link Inventory#reserveStock}. The reservation is
+     * remembered so {@link #restoreStockForOrder} returns exactly what was taken.
+     */
+    public StockReservation reserveStock(Order order) {
+        RecipeBook.Requirements requirements = recipes.requirementsFor(order);
+        StockReservation reservation = reserve(requirements, "Order " + order.getOrderId());
+        if (reservation.isReserved()) {
+            reservations.put(order.getOrderId(), requirements);
+            log.info("Reserved stock for order: %s", order.getOrderId());
+        }
+        return reservation;
+    }
+
+    /**
+     * Reserve the stock several orders need in one all-or-nothing step
+     */
+    public StockReservation reserveStock(List<Order> orders) {
+        List<RecipeBook.Requirements> perOrder = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            perOrder.add(recipes.requirementsFor(order));
+        }
+        StockReservation reservation = reserve(recipes.requirementsFor(orders),
+            "Batch of " + orders.size() + " orders");
+        if (reservation.isReserved()) {
+            for (int i = 0; i < orders.size(); i++) {
+                reservations.put(orders.get(i).getOrderId(), perOrder.get(i));
+            }
+            log.info("Reserved stock for %d orders", orders.size());
+        }
+        return reservation;
+    }
+
+    /**
+     * Consume the stock an order's recipes need; nothing is consumed if any
+     * stock item is short
+     *
+     * @throws IllegalStateException if stock is insufficient
      */
     public void consumeStockForOrder(Order order) {
-        for (OrderItem orderItem : order.getOrderItems()) {
-            consumeStockForOrderItem(orderItem);
+        StockReservation reservation = reserveStock(order);
+        if (!reservation.isReserved()) {
+            throw new IllegalStateException(reservation.getFailureReason());
         }
-        
-        System.out.println("Consumed stock for order: " + order.getOrderId());
     }
 
     /**
-     * Restore stock for a cancelled order
+     * Consume the stock several orders need, all together or not at all
+     *
+     * @throws IllegalStateException if stock is insufficient
      */
-    public void restoreStockForOrder(Order order) {
-        for (OrderItem orderItem : order.getOrderItems()) {
-            restoreStockForOrderItem(orderItem);
+    public void consumeStockForOrders(List<Order> orders) {
+        StockReservation reservation = reserveStock(orders);
+        if (!reservation.isReserved()) {
+            throw new IllegalStateException(reservation.getFailureReason());
         }
-        
-        System.out.println("Restored stock for cancelled order: " + order.getOrderId());
+    }
+
+    /**
+     * Restore stock for a cancelled order: exactly what its reservation took.
+     * Reservations are kept in memory only, so an order confirmed before a
+     * restart, e.g. one restored from the order journal, has none; nothing
+     * is returned for it rather than stock that was never taken.
+     *
+     * @return true if a reservation was found and its stock returned
+     */
+    public boolean restoreStockForOrder(Order order) {
+        RecipeBook.Requirements requirements = reservations.remove(order.getOrderId());
+        if (requirements == null) {
+            log.warn("No stock reservation recorded for order %s; nothing restored", order.getOrderId());
+            return false;
+        }
+        int notReturned = inventory.returnStock(requirements, "Cancelled order " + order.getOrderId());
+        if (notReturned > 0) {
+            log.warn("%d units for cancelled order %s did not fit back into stock", notReturned, order.getOrderId());
+        }
+        log.info("Restored stock for cancelled order: %s", order.getOrderId());
+        return true;
+    }
+
+    /**
+     * Forget an order's reservation once its stock is used for good, e.g.
+     * when it is delivered
+     */
+    public void completeReservation(Order order) {
+        reservations.remove(order.getOrderId());
     }
 
     /**
@@ -137,12 +249,14 @@ public class InventoryService {
      * Check if sufficient stock is available for an order
      */
     public boolean hasSufficientStock(Order order) {
-        for (OrderItem orderItem : order.getOrderItems()) {
-            if (!hasSufficientStockForOrderItem(orderItem)) {
-                return false;
-            }
-        }
-        return true;
+        return recipes.requirementsFor(order).isAvailable();
+    }
+
+    /**
+     * Check if sufficient stock is available for several orders together
+     */
+    public boolean hasSufficientStock(List<Order> orders) {
+        return recipes.requirementsFor(orders).isAvailable();
     }
 
     /**
@@ -157,7 +271,7 @@ public class InventoryService {
      */
     public void performInventoryCheck() {
         inventory.performInventoryCheck();
-        System.out.println("Inventory check completed");
+        log.info("Inventory check completed");
     }
 
     /**
@@ -181,8 +295,7 @@ public class InventoryService {
         inventory.restockItem(stockItemId, quantity, reason);
         
         StockItem stockItem = inventory.getStockItem(stockItemId);
-        System.out.println(String.format("Restocked %s: +%d units (%s)", 
-            stockItem.getItemName(), quantity, reason));
+        log.info("Restocked %s: +%d units (%s)", stockItem.getItemName(), quantity, reason);
     }
 
     /**
@@ -199,47 +312,28 @@ public class InventoryService {
         );
     }
 
-    private void consumeStockForOrderItem(OrderItem orderItem) {
-        if (orderItem.isMenuItem()) {
-            consumeStockForMenuItem(orderItem.getMenuItem(), orderItem.getQuantity());
-        } else if (orderItem.isDinner()) {
-            consumeStockForDinner(orderItem.getDinner(), orderItem.getQuantity());
+    private void publish(DomainEvent event) {
+        EventBus bus = eventBus;
+        if (bus != null) {
+            bus.publish(event);
         }
     }
 
-    private void restoreStockForOrderItem(OrderItem orderItem) {
-        if (orderItem.isMenuItem()) {
-            restoreStockForMenuItem(orderItem.getMenuItem(), orderItem.getQuantity());
-        } else if (orderItem.isDinner()) {
-            restoreStockForDinner(orderItem.getDinner(), orderItem.getQuantity());
+    private StockReservation reserve(RecipeBook.Requirements requirements, String reason) {
+        if (requirements.isEmpty()) {
+            return StockReservation.RESERVED;
         }
-    }
-
-    private void consumeStockForMenuItem(MenuItem menuItem, int quantity) {
-        // This would consume specific ingredients based on the menu item
-        // For now, we'll simulate by consuming generic stock
-        System.out.println(String.format("Consuming stock for %dx %s", quantity, menuItem.getName()));
-    }
-
-    private void restoreStockForMenuItem(MenuItem menuItem, int quantity) {
-        // This would restore specific ingredients
-        System.out.println(String.format("Restoring stock for %dx %s", quantity, menuItem.getName()));
-    }
-
-    private void consumeStockForDinner(com.mrdinner.domain.menu.Dinner dinner, int quantity) {
-        // This would consume ingredients for all items in the dinner
-        System.out.println(String.format("Consuming stock for %dx %s", quantity, dinner.getName()));
-    }
-
-    private void restoreStockForDinner(com.mrdinner.domain.menu.Dinner dinner, int quantity) {
-        // This would restore ingredients for all items in the dinner
-        System.out.println(String.format("Restoring stock for %dx %s", quantity, dinner.getName()));
-    }
-
-    private boolean hasSufficientStockForOrderItem(OrderItem orderItem) {
-        // This would check if sufficient ingredients are available
-        // For now, we'll assume stock is always sufficient
-        return true;
+        int shortItem = inventory.reserveStock(requirements, reason);
+        if (shortItem >= 0) {
+            return new StockReservation(requirements.getStockItem(shortItem), requirements.getQuantity(shortItem));
+        }
+        for (int i = 0; i < requirements.size(); i++) {
+            StockItem stockItem = requirements.getStockItem(i);
+            if (stockItem.isLowStock()) {
+                publish(new StockLowEvent(stockItem));
+            }
+        }
+        return StockReservation.RESERVED;
     }
 
     private void initializeDefaultInventory() {
@@ -257,6 +351,41 @@ public class InventoryService {
             Money.of(45.00, "USD"), LocalDate.now().plusYears(3), "Wine Distributors", "Wine Cellar");
     }
 
+    /**
+     * Outcome of a stock reservation; a failed one names the first stock
+     * item found short
+     */
+    public static class StockReservation {
+        private static final StockReservation RESERVED = new StockReservation(null, 0);
+
+        private final StockItem shortStockItem;
+        private final int requiredQuantity;
+
+        private StockReservation(StockItem shortStockItem, int requiredQuantity) {
+            this.shortStockItem = shortStockItem;
+            this.requiredQuantity = requiredQuantity;
+        }
+
+        public boolean isReserved() { return this == RESERVED; }
+        public StockItem getShortStockItem() { return shortStockItem; }
+        public int getRequiredQuantity() { return requiredQuantity; }
+
+        public String getFailureReason() {
+            if (isReserved()) {
+                return null;
+            }
+            return shortStockItem == null ? "Stock item no longer in inventory"
+                : String.format("Insufficient %s: need %d, have %d", shortStockItem.getItemName(),
+                    requiredQuantity, shortStockItem.getCurrentQuantity());
+        }
+
+        @Override
+        public String toString() {
+            return isReserved() ? "StockReservation{reserved}"
+                : String.format("StockReservation{failed: %s}", getFailureReason());
+        }
+    }
+
     /**
      * Data class for inventory statistics
      */
@@ -0,0 +1,95 @@
+package com.mrdinner.service;
+
+import com.mrdinner.domain.order.ArchivedOrder;
+import com.mrdinner.infrastructure.EventLogger;
+import com.mrdinner.infrastructure.OrderArchive;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background task that periodically moves finished orders from an
+ * {@link OrderService} into a cold {@link OrderArchive}, and the read API for
+ * orders that have been archived
+ */
+public class OrderArchiver {
+    private static final EventLogger log = EventLogger.getLogger();
+
+    private final OrderService orderService;
+    private final OrderArchive archive;
+    private final Duration minimumAge;
+    private ScheduledExecutorService scheduler;
+
+    public OrderArchiver(OrderService orderService, OrderArchive archive, Duration minimumAge) {
+        if (orderService == null) {
+            throw new IllegalArgumentException("Order service cannot be null");
+        }
+        if (archive == null) {
+            throw new IllegalArgumentException("Archive cannot be null");
+        }
+        if (minimumAge == null || minimumAge.isNegative()) {
+            throw new IllegalArgumentException("Minimum age must be non-negative");
+        }
+        this.orderService = orderService;
+        this.archive = archive;
+        this.minimumAge = minimumAge;
+    }
+
+    /**
+     * Start archiving in the background at a fixed interval
+     */
+    public synchronized void start(Duration interval) {
+        if (interval == null || interval.isZero() || interval.isNegative()) {
+            throw new IllegalArgumentException("Interval must be positive");
+        }
+        if (scheduler != null) {
+            throw new IllegalStateException("Archiver is already running");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "order-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::archiveSafely,
+            interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Run one archiving pass now
+     */
+    public int archiveNow() {
+        return orderService.archiveFinalOrders(archive, minimumAge);
+    }
+
+    public Optional<ArchivedOrder> findArchivedOrder(String orderId) {
+        return archive.findById(orderId);
+    }
+
+    public List<ArchivedOrder> findArchivedOrders(LocalDateTime from, LocalDateTime to) {
+        return archive.findByOrderTimeBetween(from, to);
+    }
+
+    public long getArchivedOrderCount() {
+        return archive.count();
+    }
+
+    private void archiveSafely() {
+        try {
+            archiveNow();
+        } catch (RuntimeException e) {
+            // Keep the schedule alive; the next pass retries the same orders
+            log.warn("Order archiving failed: %s", e.getMessage());
+        }
+    }
+}
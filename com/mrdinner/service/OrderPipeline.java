@@ -0,0 +1,369 @@
+package com.mrdinner.service;
+
+import com.mrdinner.domain.order.Order;
+import com.mrdinner.domain.payment.Payment;
+import com.mrdinner.domain.payment.PaymentMethod;
+import com.mrdinner.infrastructure.EventLogger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Optional asynchronous mode for taking a pending order through confirmation,
+ * payment and dispatch. Each stage has its own bounded queue and worker pool;
+ * a worker that finishes an order blocks until the next stage has room, so a
+ * saturated stage pushes back all the way to {@link #submit}.
+ *
+ * An order that fails or is abandoned after {@link Stage#RESERVE_STOCK} has
+ * already been confirmed and holds stock; the pipeline cancels it, which
+ * returns the stock, before failing its future.
+ */
+public class OrderPipeline {
+    private static final EventLogger log = EventLogger.getLogger();
+
+    /**
+     * Pipeline stages, in processing order
+     */
+    public enum Stage {
+        VALIDATE, RESERVE_STOCK, PRICE, PAY, DISPATCH
+    }
+
+    private final OrderService orderService;
+    private final Map<Stage, StageWorkers> stages = new EnumMap<>(Stage.class);
+    private final List<Thread> workers = new ArrayList<>();
+    private final LongAdder compensated = new LongAdder();
+    private volatile boolean running = true;
+
+    public OrderPipeline(OrderService orderService, int queueCapacity, int workersPerStage) {
+        this(orderService, queueCapacity, uniformWorkers(workersPerStage));
+    }
+
+    public OrderPipeline(OrderService orderService, int queueCapacity, Map<Stage, Integer> workerCounts) {
+        if (orderService == null) {
+            throw new IllegalArgumentException("Order service cannot be null");
+        }
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be positive");
+        }
+        if (workerCounts == null) {
+            throw new IllegalArgumentException("Worker counts cannot be null");
+        }
+        this.orderService = orderService;
+
+        for (Stage stage : Stage.values()) {
+            Integer count = workerCounts.get(stage);
+            if (count == null || count <= 0) {
+                throw new IllegalArgumentException("Worker count for " + stage + " must be positive");
+            }
+            stages.put(stage, new StageWorkers(stage, queueCapacity, count));
+        }
+        for (StageWorkers stage : stages.values()) {
+            for (int i = 0; i < stage.workerCount; i++) {
+                Thread thread = new Thread(() -> runWorker(stage),
+                    "order-pipeline-" + stage.stage.name().toLowerCase() + "-" + i);
+                thread.setDaemon(true);
+                workers.add(thread);
+            }
+        }
+        workers.forEach(Thread::start);
+    }
+
+    /**
+     * Queue a pending order, blocking while the first stage is full. The
+     * returned future completes with the payment once the order has been
+     * dispatched, or exceptionally with the failure of whichever stage
+     * rejected it.
+     */
+    public CompletableFuture<Payment> submit(Order order, PaymentMethod paymentMethod, String customerEmail)
+            throws InterruptedException {
+        Job job = newJob(order, paymentMethod, customerEmail);
+        stages.get(Stage.VALIDATE).enqueue(job);
+        return job.result;
+    }
+
+    /**
+     * Queue a pending order, waiting at most the given time for room in the
+     * first stage. Returns null if the pipeline stayed full.
+     */
+    public CompletableFuture<Payment> trySubmit(Order order, PaymentMethod paymentMethod, String customerEmail,
+                                                long timeout, TimeUnit unit) throws InterruptedException {
+        Job job = newJob(order, paymentMethod, customerEmail);
+        return stages.get(Stage.VALIDATE).offer(job, timeout, unit) ? job.result : null;
+    }
+
+    public List<StageMetrics> getStageMetrics() {
+        List<StageMetrics> metrics = new ArrayList<>(stages.size());
+        for (StageWorkers stage : stages.values()) {
+            metrics.add(stage.snapshot());
+        }
+        return Collections.unmodifiableList(metrics);
+    }
+
+    public StageMetrics getStageMetrics(Stage stage) {
+        return stages.get(stage).snapshot();
+    }
+
+    /**
+     * Orders cancelled because they failed after their stock was reserved
+     */
+    public long getCompensatedCount() {
+        return compensated.sum();
+    }
+
+    /**
+     * Stop all workers. Orders still queued are failed with a
+     * {@link CancellationException}, and cancelled if they had reserved stock;
+     * orders already inside a stage finish it but go no further.
+     */
+    public void shutdown() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+        for (Thread worker : workers) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        for (StageWorkers stage : stages.values()) {
+            List<Job> abandoned = new ArrayList<>();
+            stage.queue.drainTo(abandoned);
+            for (Job job : abandoned) {
+                fail(job, new CancellationException("Order pipeline shut down"));
+            }
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    private Job newJob(Order order, PaymentMethod paymentMethod, String customerEmail) {
+        if (!running) {
+            throw new IllegalStateException("Order pipeline is shut down");
+        }
+        if (order == null) {
+            throw new IllegalArgumentException("Order cannot be null");
+        }
+        if (paymentMethod == null) {
+            throw new IllegalArgumentException("Payment method cannot be null");
+        }
+        return new Job(order, paymentMethod, customerEmail);
+    }
+
+    private void runWorker(StageWorkers stage) {
+        StageWorkers next = nextStage(stage.stage);
+        while (running) {
+            Job job;
+            try {
+                job = stage.queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long started = System.nanoTime();
+            stage.waitNanos.add(started - job.enqueuedAt);
+            boolean succeeded = false;
+            try {
+                process(stage.stage, job);
+                succeeded = true;
+            } catch (RuntimeException e) {
+                fail(job, e);
+            }
+            stage.recordProcessed(System.nanoTime() - started, succeeded);
+
+            if (!succeeded) {
+                continue;
+            }
+            if (next == null) {
+                job.result.complete(job.payment);
+                continue;
+            }
+            try {
+                next.enqueue(job);
+            } catch (InterruptedException e) {
+                fail(job, new CancellationException("Order pipeline shut down"));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Fail the job's future, first cancelling the order if it already holds
+     * reserved stock. A failed cancellation is attached to the original cause.
+     */
+    private void fail(Job job, RuntimeException cause) {
+        if (job.stockReserved && job.order.isModifiable()) {
+            try {
+                orderService.cancelOrder(job.order, "Order pipeline: " + cause.getMessage());
+                compensated.increment();
+            } catch (RuntimeException e) {
+                cause.addSuppressed(e);
+                log.warn("Could not cancel order %s after pipeline failure: %s",
+                    job.order.getOrderId(), e.getMessage());
+            }
+        }
+        job.result.completeExceptionally(cause);
+    }
+
+    private void process(Stage stage, Job job) {
+        switch (stage) {
+            case VALIDATE:
+                orderService.validateForConfirmation(job.order);
+                break;
+            case RESERVE_STOCK:
+                orderService.confirmOrder(job.order);
+                job.stockReserved = true;
+                break;
+            case PRICE:
+                orderService.repriceOrder(job.order);
+                break;
+            case PAY:
+                job.payment = orderService.processPayment(job.order, job.paymentMethod, job.customerEmail);
+                if (!job.payment.isSuccessful()) {
+                    throw new IllegalStateException("Payment failed for order " + job.order.getOrderId());
+                }
+                break;
+            case DISPATCH:
+                orderService.markOrderReady(job.order);
+                break;
+            default:
+                throw new IllegalStateException("Unknown stage: " + stage);
+        }
+    }
+
+    private StageWorkers nextStage(Stage stage) {
+        int next = stage.ordinal() + 1;
+        return next < Stage.values().length ? stages.get(Stage.values()[next]) : null;
+    }
+
+    private static Map<Stage, Integer> uniformWorkers(int workersPerStage) {
+        Map<Stage, Integer> counts = new EnumMap<>(Stage.class);
+        for (Stage stage : Stage.values()) {
+            counts.put(stage, workersPerStage);
+        }
+        return counts;
+    }
+
+    private static class Job {
+        private final Order order;
+        private final PaymentMethod paymentMethod;
+        private final String customerEmail;
+        private final CompletableFuture<Payment> result = new CompletableFuture<>();
+        private volatile long enqueuedAt;
+        private volatile Payment payment;
+        private volatile boolean stockReserved;
+
+        private Job(Order order, PaymentMethod paymentMethod, String customerEmail) {
+            this.order = order;
+            this.paymentMethod = paymentMethod;
+            this.customerEmail = customerEmail;
+        }
+    }
+
+    private static class StageWorkers {
+        private final Stage stage;
+        private final BlockingQueue<Job> queue;
+        private final int queueCapacity;
+        private final int workerCount;
+        private final LongAdder processed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder serviceNanos = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final AtomicLong maxServiceNanos = new AtomicLong();
+
+        private StageWorkers(Stage stage, int queueCapacity, int workerCount) {
+            this.stage = stage;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.queueCapacity = queueCapacity;
+            this.workerCount = workerCount;
+        }
+
+        private void enqueue(Job job) throws InterruptedException {
+            job.enqueuedAt = System.nanoTime();
+            queue.put(job);
+        }
+
+        private boolean offer(Job job, long timeout, TimeUnit unit) throws InterruptedException {
+            job.enqueuedAt = System.nanoTime();
+            return queue.offer(job, timeout, unit);
+        }
+
+        private void recordProcessed(long nanos, boolean succeeded) {
+            processed.increment();
+            if (!succeeded) {
+                failed.increment();
+            }
+            serviceNanos.add(nanos);
+            maxServiceNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        private StageMetrics snapshot() {
+            return new StageMetrics(stage, queue.size(), queueCapacity, workerCount, processed.sum(),
+                failed.sum(), serviceNanos.sum(), waitNanos.sum(), maxServiceNanos.get());
+        }
+    }
+
+    /**
+     * Point-in-time view of one stage. Average and maximum latencies cover the
+     * time spent inside the stage; queue wait is reported separately so a
+     * stage that is slow can be told apart from one that is starved.
+     */
+    public static class StageMetrics {
+        private final Stage stage;
+        private final int queueDepth;
+        private final int queueCapacity;
+        private final int workerCount;
+        private final long processedCount;
+        private final long failedCount;
+        private final long totalServiceNanos;
+        private final long totalWaitNanos;
+        private final long maxServiceNanos;
+
+        StageMetrics(Stage stage, int queueDepth, int queueCapacity, int workerCount, long processedCount,
+                     long failedCount, long totalServiceNanos, long totalWaitNanos, long maxServiceNanos) {
+            this.stage = stage;
+            this.queueDepth = queueDepth;
+            this.queueCapacity = queueCapacity;
+            this.workerCount = workerCount;
+            this.processedCount = processedCount;
+            this.failedCount = failedCount;
+            this.totalServiceNanos = totalServiceNanos;
+            this.totalWaitNanos = totalWaitNanos;
+            this.maxServiceNanos = maxServiceNanos;
+        }
+
+        public Stage getStage() { return stage; }
+        public int getQueueDepth() { return queueDepth; }
+        public int getQueueCapacity() { return queueCapacity; }
+        public int getWorkerCount() { return workerCount; }
+        public long getProcessedCount() { return processedCount; }
+        public long getFailedCount() { return failedCount; }
+        public long getMaxServiceNanos() { return maxServiceNanos; }
+
+        public long getAverageServiceNanos() {
+            return processedCount == 0 ? 0 : totalServiceNanos / processedCount;
+        }
+
+        public long getAverageQueueWaitNanos() {
+            return processedCount == 0 ? 0 : totalWaitNanos / processedCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s{queue=%d/%d, workers=%d, processed=%d, failed=%d, avg=%.3fms, max=%.3fms, wait=%.3fms}",
+                stage, queueDepth, queueCapacity, workerCount, processedCount, failedCount,
+                getAverageServiceNanos() / 1e6, maxServiceNanos / 1e6, getAverageQueueWaitNanos() / 1e6);
+        }
+    }
+}
@@ -1,42 +1,125 @@
 package com.mrdinner.service;
 
 import com.mrdinner.domain.common.Address;
+import com.mrdinner.domain.common.Ids;
 import com.mrdinner.domain.common.Money;
+import com.mrdinner.domain.common.MultiCurrencyAccumulator;
 import com.mrdinner.domain.customer.Customer;
 import com.mrdinner.domain.delivery.Delivery;
 import com.mrdinner.domain.delivery.DeliveryStatus;
+import com.mrdinner.domain.event.DeliveryAssignedEvent;
+import com.mrdinner.domain.event.DomainEvent;
+import com.mrdinner.domain.event.OrderCancelledEvent;
+import com.mrdinner.domain.event.OrderConfirmedEvent;
+import com.mrdinner.domain.event.OrderReadyEvent;
+import com.mrdinner.domain.event.PaymentFailedEvent;
+import com.mrdinner.domain.event.PaymentSucceededEvent;
 import com.mrdinner.domain.menu.Dinner;
+import com.mrdinner.domain.menu.MenuCatalog;
 import com.mrdinner.domain.menu.MenuItem;
+import com.mrdinner.domain.order.OpenOrderItemIndex;
 import com.mrdinner.domain.order.Order;
 import com.mrdinner.domain.order.OrderItem;
+import com.mrdinner.domain.order.OrderPage;
+import com.mrdinner.domain.order.OrderRepository;
 import com.mrdinner.domain.order.OrderStatus;
 import com.mrdinner.domain.payment.Payment;
 import com.mrdinner.domain.payment.PaymentMethod;
 import com.mrdinner.domain.payment.PaymentStatus;
 import com.mrdinner.domain.staff.Courier;
+import com.mrdinner.infrastructure.EventBus;
+import com.mrdinner.infrastructure.EventLogger;
+import com.mrdinner.infrastructure.OrderArchive;
+import com.mrdinner.infrastructure.OrderJournal;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Service for managing orders and order-related operations
+ * Service for managing orders and order-related operations.
+ * Safe for concurrent callers: operations on the same order are serialized by a
+ * striped lock keyed on the order ID, operations on different orders run in parallel.
+ * With a journal, each change is validated, appended to the journal and only
+ * then applied, so an append that fails leaves the order, its stock and its
+ * events untouched.
  */
 public class OrderService {
+    private static final EventLogger log = EventLogger.getLogger();
+    private static final Address RESTAURANT_ADDRESS =
+        new Address("123 Restaurant St", "Food City", "FC", "12345", "USA");
+    private static final Duration IDEMPOTENCY_TTL = Duration.ofMinutes(15);
+    private static final int IDEMPOTENCY_MAX_ENTRIES = 100_000;
+
     private final PricingService pricingService;
     private final DeliveryService deliveryService;
     private final InventoryService inventoryService;
     
-    private List<Order> orders;
+    private final OrderRepository orderRepository;
+    private final OpenOrderItemIndex openOrderItems;
+    private final StripedLocks orderLocks;
+    private final OrderJournal journal;
+    private final IdempotencyCache<Order> createdOrders;
+    private final IdempotencyCache<Payment> processedPayments;
+    private volatile EventBus eventBus;
     private List<Courier> availableCouriers;
 
     public OrderService(PricingService pricingService, DeliveryService deliveryService, 
                        InventoryService inventoryService) {
+        this(pricingService, deliveryService, inventoryService, null);
+    }
+
+    /**
+     * Create a service backed by an order journal. Orders already in the journal
+     * are restored by replaying it, and every later state change is appended to it.
+     * Restored orders hold detached copies of their menu items and dinners; use
+     * {@link #OrderService(PricingService, DeliveryService, InventoryService, OrderJournal, MenuCatalog)}
+     * to link them to the live menu.
+     */
+    public OrderService(PricingService pricingService, DeliveryService deliveryService, 
+                       InventoryService inventoryService, OrderJournal journal) {
+        this(pricingService, deliveryService, inventoryService, journal, null);
+    }
+
+    /**
+     * Create a service backed by an order journal whose restored orders point
+     * at the menu items and dinners in {@code menuCatalog}, so menu changes,
+     * the open-order index and recipes apply to them as to new orders
+     */
+    public OrderService(PricingService pricingService, DeliveryService deliveryService,
+                       InventoryService inventoryService, OrderJournal journal, MenuCatalog menuCatalog) {
         this.pricingService = pricingService;
         this.deliveryService = deliveryService;
         this.inventoryService = inventoryService;
-        this.orders = new ArrayList<>();
-        this.availableCouriers = new ArrayList<>();
+        this.orderRepository = new OrderRepository();
+        this.openOrderItems = new OpenOrderItemIndex();
+        this.orderLocks = new StripedLocks(Runtime.getRuntime().availableProcessors() * 16);
+        this.journal = journal;
+        this.createdOrders = new IdempotencyCache<>(IDEMPOTENCY_TTL, IDEMPOTENCY_MAX_ENTRIES);
+        this.processedPayments = new IdempotencyCache<>(IDEMPOTENCY_TTL, IDEMPOTENCY_MAX_ENTRIES);
+        this.availableCouriers = new CopyOnWriteArrayList<>();
+        if (deliveryService != null) {
+            deliveryService.setOrderService(this);
+        }
+
+        if (journal != null) {
+            restoreFromJournal(menuCatalog);
+        }
+    }
+
+    /**
+     * Publish order and payment events to the given bus from now on; null stops publishing
+     */
+    public void setEventBus(EventBus eventBus) {
+        this.eventBus = eventBus;
     }
 
     /**
@@ -51,159 +134,602 @@ public class OrderService {
         }
 
         Order order = new Order(customer, deliveryAddress);
-        orders.add(order);
+        if (journal != null) {
+            journal.recordOrderCreated(order);
+        }
+        orderRepository.save(order);
         
-        System.out.println("Created new order: " + order.getOrderId());
+        log.info("Created new order: %s", order.getOrderId());
         return order;
     }
 
+    /**
+     * Create a new order, or return the order already created for the same
+     * customer and idempotency key if the client is retrying
+     */
+    public Order createOrder(Customer customer, Address deliveryAddress, String idempotencyKey) {
+        if (customer == null) {
+            throw new IllegalArgumentException("Customer cannot be null");
+        }
+        validateIdempotencyKey(idempotencyKey);
+        return createdOrders.getOrCompute(customer.getCustomerId() + ':' + idempotencyKey,
+            () -> createOrder(customer, deliveryAddress));
+    }
+
     /**
      * Add a menu item to the order
      */
     public void addMenuItemToOrder(Order order, MenuItem menuItem, int quantity) {
-        validateOrderModifiable(order);
-        validateMenuItemAvailable(menuItem);
-        
-        OrderItem orderItem = new OrderItem(menuItem, quantity);
-        order.addOrderItem(orderItem);
-        
-        // Update order pricing
-        updateOrderPricing(order);
+        ReentrantLock lock = lockFor(order);
+        lock.lock();
+        try {
+            validateOrderModifiable(order);
+            validateMenuItemAvailable(menuItem);
+
+            OrderItem orderItem = new OrderItem(menuItem, quantity);
+            if (journal != null) {
+                journal.recordItemAdded(order, orderItem);
+            }
+            order.addOrderItem(orderItem);
+            openOrderItems.add(orderItem);
+
+            // Update order pricing
+            updateOrderPricing(order);
+        } finally {
+            lock.unlock();
+        }
         
-        System.out.println(String.format("Added %dx %s to order %s", 
-            quantity, menuItem.getName(), order.getOrderId()));
+        log.info("Added %dx %s to order %s", quantity, menuItem.getName(), order.getOrderId());
     }
 
     /**
      * Add a dinner to the order
      */
     public void addDinnerToOrder(Order order, Dinner dinner, int quantity) {
-        validateOrderModifiable(order);
-        validateDinnerAvailable(dinner);
-        
-        OrderItem orderItem = new OrderItem(dinner, quantity);
-        order.addOrderItem(orderItem);
-        
-        // Update order pricing
-        updateOrderPricing(order);
+        ReentrantLock lock = lockFor(order);
+        lock.lock();
+        try {
+            validateOrderModifiable(order);
+            validateDinnerAvailable(dinner);
+
+            OrderItem orderItem = new OrderItem(dinner, quantity);
+            if (journal != null) {
+                journal.recordItemAdded(order, orderItem);
+            }
+            order.addOrderItem(orderItem);
+            openOrderItems.add(orderItem);
+
+            // Update order pricing
+            updateOrderPricing(order);
+        } finally {
+            lock.unlock();
+        }
         
-        System.out.println(String.format("Added %dx %s to order %s", 
-            quantity, dinner.getName(), order.getOrderId()));
+        log.info("Added %dx %s to order %s", quantity, dinner.getName(), order.getOrderId());
     }
 
     /**
      * Remove an item from the order
      */
     public void removeItemFromOrder(Order order, OrderItem orderItem) {
-        validateOrderModifiable(order);
-        
-        order.removeOrderItem(orderItem);
-        updateOrderPricing(order);
+        ReentrantLock lock = lockFor(order);
+        lock.lock();
+        try {
+            validateOrderModifiable(order);
+
+            if (journal != null) {
+                journal.recordItemRemoved(order, orderItem);
+            }
+            order.removeOrderItem(orderItem);
+            openOrderItems.remove(orderItem);
+            updateOrderPricing(order);
+        } finally {
+            lock.unlock();
+        }
         
-        System.out.println(String.format("Removed %s from order %s", 
-            orderItem.getItemName(), order.getOrderId()));
+        log.info("Removed %s from order %s", orderItem.getItemName(), order.getOrderId());
     }
 
     /**
      * Confirm the order
      */
     public void confirmOrder(Order order) {
-        validateOrderConfirmable(order);
-        
-        // Check inventory availability
-        validateInventoryAvailability(order);
-        
-        // Update inventory
-        consumeInventoryForOrder(order);
-        
-        order.confirm();
+        ReentrantLock lock = lockFor(order);
+        lock.lock();
+        try {
+            if (order.getStatus() != OrderStatus.PENDING) {
+                throw new IllegalStateException("Only pending orders can be confirmed");
+            }
+            validateOrderConfirmable(order);
+
+            // Check and take every ingredient in one atomic step
+            reserveInventoryForOrder(order);
+            journalConfirmation(order);
+            order.confirm();
+            publish(new OrderConfirmedEvent(order));
+        } finally {
+            lock.unlock();
+        }
         
-        System.out.println("Order confirmed: " + order.getOrderId());
+        log.info("Order confirmed: %s", order.getOrderId());
+    }
+
+    /**
+     * Check that an order can be confirmed, without changing it
+     */
+    void validateForConfirmation(Order order) {
+        ReentrantLock lock = lockFor(order);
+        lock.lock();
+        try {
+            if (order.getStatus() != OrderStatus.PENDING) {
+                throw new IllegalStateException("Only pending orders can be confirmed");
+            }
+            validateOrderConfirmable(order);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Recalculate tax and delivery fee for an order that is not yet final
+     */
+    void repriceOrder(Order order) {
+        ReentrantLock lock = lockFor(order);
+        lock.lock();
+        try {
+            validateOrderModifiable(order);
+            updateOrderPricing(order);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Bring open orders in line with a menu item whose price or availability
+     * changed. Pending orders containing it, directly or inside a dinner, are
+     * repriced; confirmed orders keep the price they were confirmed at. Open
+     * orders with lines that are no longer available are reported.
+     */
+    public MenuChangeResult menuItemChanged(MenuItem menuItem) {
+        if (menuItem == null) {
+            throw new IllegalArgumentException("Menu item cannot be null");
+        }
+        MenuChangeResult result = applyMenuChange(openOrderItems.findOpenOrdersUsing(menuItem));
+        log.info("Menu item %s changed: %s", menuItem.getName(), result);
+        return result;
+    }
+
+    /**
+     * Like {@link #menuItemChanged(MenuItem)}, for a dinner whose base price,
+     * items or availability changed
+     */
+    public MenuChangeResult dinnerChanged(Dinner dinner) {
+        if (dinner == null) {
+            throw new IllegalArgumentException("Dinner cannot be null");
+        }
+        openOrderItems.dinnerChanged(dinner);
+        MenuChangeResult result = applyMenuChange(openOrderItems.findOpenOrdersUsing(dinner));
+        log.info("Dinner %s changed: %s", dinner.getName(), result);
+        return result;
     }
 
     /**
      * Process payment for the order
      */
     public Payment processPayment(Order order, PaymentMethod paymentMethod, String customerEmail) {
-        if (order.getStatus() != OrderStatus.CONFIRMED) {
-            throw new IllegalStateException("Order must be confirmed before payment");
+        Payment payment;
+        ReentrantLock lock = lockFor(order);
+        lock.lock();
+        try {
+            if (order.getStatus() != OrderStatus.CONFIRMED) {
+                throw new IllegalStateException("Order must be confirmed before payment");
+            }
+
+            Money orderTotal = order.getTotalAmount();
+            payment = new Payment(order, orderTotal, paymentMethod, customerEmail);
+
+            // Simulate payment processing
+            processPaymentTransaction(payment);
+
+            if (payment.isSuccessful()) {
+                if (journal != null) {
+                    journal.recordPaymentCompleted(order, payment.getTransactionId());
+                }
+                order.setStatus(OrderStatus.PREPARING);
+                openOrderItems.removeOrder(order);
+                publish(new PaymentSucceededEvent(payment));
+            } else {
+                publish(new PaymentFailedEvent(payment));
+            }
+        } finally {
+            lock.unlock();
         }
         
-        Money orderTotal = order.getTotalAmount();
-        Payment payment = new Payment(order, orderTotal, paymentMethod, customerEmail);
-        
-        // Simulate payment processing
-        processPaymentTransaction(payment);
-        
         if (payment.isSuccessful()) {
-            order.setStatus(OrderStatus.PREPARING);
-            System.out.println("Payment processed successfully for order: " + order.getOrderId());
+            log.info("Payment processed successfully for order: %s", order.getOrderId());
         } else {
-            System.out.println("Payment failed for order: " + order.getOrderId());
+            log.warn("Payment failed for order: %s", order.getOrderId());
         }
         
         return payment;
     }
 
+    /**
+     * Process payment for the order, or return the payment already made for
+     * the same order and idempotency key if the client is retrying, so a
+     * retry never charges twice
+     */
+    public Payment processPayment(Order order, PaymentMethod paymentMethod, String customerEmail,
+                                  String idempotencyKey) {
+        if (order == null) {
+            throw new IllegalArgumentException("Order cannot be null");
+        }
+        validateIdempotencyKey(idempotencyKey);
+        return processedPayments.getOrCompute(order.getOrderId() + ':' + idempotencyKey,
+            () -> processPayment(order, paymentMethod, customerEmail));
+    }
+
     /**
      * Mark order as ready for pickup/delivery
      */
     public void markOrderReady(Order order) {
-        if (order.getStatus() != OrderStatus.PREPARING) {
-            throw new IllegalStateException("Order must be in preparing status");
-        }
-        
-        order.setStatus(OrderStatus.READY);
-        
-        // Create delivery if needed
-        if (needsDelivery(order)) {
-            createDeliveryForOrder(order);
+        ReentrantLock lock = lockFor(order);
+        lock.lock();
+        try {
+            if (order.getStatus() != OrderStatus.PREPARING) {
+                throw new IllegalStateException("Order must be in preparing status");
+            }
+
+            if (journal != null) {
+                journal.recordOrderReady(order);
+            }
+            order.setStatus(OrderStatus.READY);
+            inventoryService.completeReservation(order);
+            publish(new OrderReadyEvent(order));
+
+            // Create delivery if needed
+            if (needsDelivery(order)) {
+                createDeliveryForOrder(order);
+            }
+        } finally {
+            lock.unlock();
         }
         
-        System.out.println("Order ready: " + order.getOrderId());
+        log.info("Order ready: %s", order.getOrderId());
     }
 
     /**
      * Cancel an order
      */
     public void cancelOrder(Order order, String reason) {
-        validateOrderCancellable(order);
-        
-        // Restore inventory if order was confirmed
-        if (order.getStatus() == OrderStatus.CONFIRMED || order.getStatus() == OrderStatus.PREPARING) {
-            restoreInventoryForOrder(order);
+        ReentrantLock lock = lockFor(order);
+        lock.lock();
+        try {
+            validateOrderCancellable(order);
+            if (journal != null) {
+                journal.recordOrderCancelled(order, reason);
+            }
+
+            // Restore inventory if order was confirmed
+            if (order.getStatus() == OrderStatus.CONFIRMED || order.getStatus() == OrderStatus.PREPARING) {
+                restoreInventoryForOrder(order);
+            }
+
+            order.cancel();
+            openOrderItems.removeOrder(order);
+            publish(new OrderCancelledEvent(order, reason));
+        } finally {
+            lock.unlock();
         }
         
-        order.cancel();
-        
-        System.out.println("Order cancelled: " + order.getOrderId() + " - " + reason);
+        log.info("Order cancelled: %s - %s", order.getOrderId(), reason);
     }
 
     /**
-     * Get order by ID
+     * Mark a ready order as handed to its courier
+     */
+    public void markOrderOutForDelivery(Order order) {
+        advanceStatus(order, OrderStatus.READY, OrderStatus.OUT_FOR_DELIVERY);
+        log.info("Order out for delivery: %s", order.getOrderId());
+    }
+
+    /**
+     * Mark an order that is out for delivery as delivered
+     */
+    public void markOrderDelivered(Order order) {
+        advanceStatus(order, OrderStatus.OUT_FOR_DELIVERY, OrderStatus.DELIVERED);
+        log.info("Order delivered: %s", order.getOrderId());
+    }
+
+    /**
+     * Mark a delivered order as refunded; it no longer counts as revenue
+     */
+    public void refundOrder(Order order, String reason) {
+        advanceStatus(order, OrderStatus.DELIVERED, OrderStatus.REFUNDED);
+        log.info("Order refunded: %s - %s", order.getOrderId(), reason);
+    }
+
+    /**
+     * Create a batch of orders. Each order is priced once after all of its items
+     * are added; a failed request is reported in the result without affecting the rest.
+     */
+    public OrderBatchResult createOrders(List<OrderRequest> requests) {
+        if (requests == null) {
+            throw new IllegalArgumentException("Order requests cannot be null");
+        }
+
+        OrderBatchResult result = new OrderBatchResult(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            try {
+                Order order = buildOrder(requests.get(i));
+                if (journal != null) {
+                    journalNewOrder(order);
+                }
+                orderRepository.save(order);
+                indexOpenOrder(order);
+                result.recordSuccess(i, order);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                result.recordFailure(i, null, e.getMessage());
+            }
+        }
+
+        log.info("Created %d of %d orders in batch", result.getSuccessCount(), requests.size());
+        return result;
+    }
+
+    /**
+     * Confirm a batch of orders. Each order reserves its own stock, so an order
+     * that fails validation, is short of stock or fails to confirm is reported
+     * in the result without holding up the rest; a failed confirm releases
+     * that order's reservation.
+     */
+    public OrderBatchResult confirmOrders(List<Order> ordersToConfirm) {
+        if (ordersToConfirm == null) {
+            throw new IllegalArgumentException("Orders cannot be null");
+        }
+
+        OrderBatchResult result = new OrderBatchResult(ordersToConfirm.size());
+        List<ReentrantLock> locks = lockAll(ordersToConfirm);
+        try {
+            Set<String> seenOrderIds = new HashSet<>();
+            for (int i = 0; i < ordersToConfirm.size(); i++) {
+                Order order = ordersToConfirm.get(i);
+                try {
+                    validateBatchMember(order, seenOrderIds);
+                    if (order.getStatus() != OrderStatus.PENDING) {
+                        throw new IllegalStateException("Only pending orders can be confirmed");
+                    }
+                    validateOrderConfirmable(order);
+                    reserveInventoryForOrder(order);
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    result.recordFailure(i, order, e.getMessage());
+                    continue;
+                }
+
+                try {
+                    journalConfirmation(order);
+                } catch (RuntimeException e) {
+                    result.recordFailure(i, order, e.getMessage());
+                    continue;
+                }
+                order.confirm();
+                publish(new OrderConfirmedEvent(order));
+                result.recordSuccess(i, order);
+            }
+        } finally {
+            unlockAll(locks);
+        }
+
+        log.info("Confirmed %d of %d orders in batch", result.getSuccessCount(), ordersToConfirm.size());
+        return result;
+    }
+
+    /**
+     * Mark a batch of orders ready and hand all of their deliveries to the
+     * delivery service together
+     */
+    public OrderBatchResult markOrdersReady(List<Order> readyOrders) {
+        if (readyOrders == null) {
+            throw new IllegalArgumentException("Orders cannot be null");
+        }
+
+        OrderBatchResult result = new OrderBatchResult(readyOrders.size());
+        List<Delivery> newDeliveries = new ArrayList<>();
+        List<ReentrantLock> locks = lockAll(readyOrders);
+        try {
+            Set<String> seenOrderIds = new HashSet<>();
+            LocalDateTime deliveryTime = LocalDateTime.now().plusHours(1);
+            Optional<Courier> availableCourier = getAvailableCouriers().stream().findFirst();
+            for (int i = 0; i < readyOrders.size(); i++) {
+                Order order = readyOrders.get(i);
+                try {
+                    validateBatchMember(order, seenOrderIds);
+                    if (order.getStatus() != OrderStatus.PREPARING) {
+                        throw new IllegalStateException("Order must be in preparing status");
+                    }
+                    if (journal != null) {
+                        journal.recordOrderReady(order);
+                    }
+                    order.setStatus(OrderStatus.READY);
+                    inventoryService.completeReservation(order);
+                    publish(new OrderReadyEvent(order));
+                    if (needsDelivery(order)) {
+                        newDeliveries.add(newDelivery(order, deliveryTime, availableCourier));
+                    }
+                    result.recordSuccess(i, order);
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    result.recordFailure(i, order, e.getMessage());
+                }
+            }
+        } finally {
+            unlockAll(locks);
+        }
+
+        if (!newDeliveries.isEmpty()) {
+            deliveryService.addDeliveries(newDeliveries);
+        }
+        log.info("Marked %d of %d orders ready in batch", result.getSuccessCount(), readyOrders.size());
+        return result;
+    }
+
+    /**
+     * Move finished orders placed more than {@code minimumAge} ago out of the
+     * live repository into the given cold archive. Returns the number archived.
+     * Archived orders are marked in the journal, so they are not restored
+     * into the live repository on the next start, and the journal is
+     * compacted once enough of it belongs to archived orders.
+     */
+    public int archiveFinalOrders(OrderArchive archive, Duration minimumAge) {
+        if (archive == null) {
+            throw new IllegalArgumentException("Archive cannot be null");
+        }
+        if (minimumAge == null || minimumAge.isNegative()) {
+            throw new IllegalArgumentException("Minimum age must be non-negative");
+        }
+
+        LocalDateTime cutoff = LocalDateTime.now().minus(minimumAge);
+        List<Order> candidates = new ArrayList<>();
+        for (OrderStatus status : OrderStatus.values()) {
+            if (status.isFinal()) {
+                for (Order order : orderRepository.findByStatus(status)) {
+                    if (order.getOrderTime().isBefore(cutoff)) {
+                        candidates.add(order);
+                    }
+                }
+            }
+        }
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+
+        int archived;
+        List<ReentrantLock> locks = lockAll(candidates);
+        try {
+            // Re-check under the locks in case an order changed since it was selected
+            List<Order> finalOrders = new ArrayList<>(candidates.size());
+            for (Order order : candidates) {
+                if (order.getStatus().isFinal()) {
+                    finalOrders.add(order);
+                }
+            }
+            archived = archive.append(finalOrders);
+            for (Order order : finalOrders) {
+                if (journal != null) {
+                    journal.recordOrderArchived(order);
+                }
+                orderRepository.remove(order);
+            }
+        } finally {
+            unlockAll(locks);
+        }
+
+        // Housekeeping outside the order locks: keep segment count and journal size bounded.
+        // The orders are already archived, so a failure here only delays the cleanup.
+        archive.mergeSegments();
+        if (journal != null) {
+            try {
+                journal.compact();
+            } catch (RuntimeException e) {
+                log.warn("Order journal compaction failed, will retry on the next archive run: %s", e.getMessage());
+            }
+        }
+        log.info("Archived %d finished orders", archived);
+        return archived;
+    }
+
+    /**
+     * Get a live order by ID. Orders moved out by {@link #archiveFinalOrders}
+     * are found with {@link OrderArchive#findById}.
      */
     public Optional<Order> getOrderById(String orderId) {
-        return orders.stream()
-            .filter(order -> order.getOrderId().equals(orderId))
-            .findFirst();
+        return orderRepository.findById(orderId);
     }
 
     /**
-     * Get all orders for a customer
+     * Get all live orders for a customer. Orders moved out by
+     * {@link #archiveFinalOrders} are found with {@link OrderArchive#findByCustomer}.
      */
     public List<Order> getOrdersByCustomer(Customer customer) {
-        return orders.stream()
-            .filter(order -> order.getCustomer().equals(customer))
-            .collect(java.util.stream.Collectors.toList());
+        return orderRepository.findByCustomer(customer);
     }
 
     /**
      * Get orders by status
      */
     public List<Order> getOrdersByStatus(OrderStatus status) {
-        return orders.stream()
-            .filter(order -> order.getStatus() == status)
-            .collect(java.util.stream.Collectors.toList());
+        return orderRepository.findByStatus(status);
+    }
+
+    /**
+     * Orders placed within the last {@code window}, oldest first, limited to
+     * the given statuses (all statuses if null or empty)
+     */
+    public List<Order> getRecentOrders(Duration window, Set<OrderStatus> statuses) {
+        if (window == null || window.isNegative()) {
+            throw new IllegalArgumentException("Window must be non-negative");
+        }
+        LocalDateTime from = LocalDateTime.now().minus(window);
+        return orderRepository.findByOrderTimeBetween(from, LocalDateTime.MAX, statuses);
+    }
+
+    /**
+     * One page of orders placed in [from, to); see {@link OrderRepository#findPageByOrderTime}
+     */
+    public OrderPage getOrdersByTime(LocalDateTime from, LocalDateTime to, Set<OrderStatus> statuses,
+                                     String cursor, int limit) {
+        return orderRepository.findPageByOrderTime(from, to, statuses, cursor, limit);
+    }
+
+    /**
+     * Total charged for live orders placed in [from, to) that have been paid
+     * and not cancelled or refunded. Orders in other currencies are summed per
+     * currency and each sum is converted to {@code currency} once, at the
+     * current exchange rates. Orders moved out by {@link #archiveFinalOrders}
+     * are not counted; use {@link #calculateRevenue(LocalDateTime, LocalDateTime, String, OrderArchive)}
+     * to include them.
+     */
+    public Money calculateRevenue(LocalDateTime from, LocalDateTime to, String currency) {
+        MultiCurrencyAccumulator revenue = new MultiCurrencyAccumulator();
+        orderRepository.forEachByOrderTime(from, to, order -> {
+            if (isRevenueStatus(order.getStatus())) {
+                revenue.add(order.getTotalAmount());
+            }
+        });
+        return revenue.toMoney(currency);
+    }
+
+    /**
+     * Like {@link #calculateRevenue(LocalDateTime, LocalDateTime, String)},
+     * also counting the orders already moved to {@code archive}. An order
+     * being archived while this runs is counted exactly once.
+     */
+    public Money calculateRevenue(LocalDateTime from, LocalDateTime to, String currency, OrderArchive archive) {
+        if (archive == null) {
+            throw new IllegalArgumentException("Archive cannot be null");
+        }
+        MultiCurrencyAccumulator revenue = new MultiCurrencyAccumulator();
+        // Orders reach the archive before they leave the repository, so one
+        // missed here is found there; one counted here is skipped there
+        Set<String> counted = new HashSet<>();
+        orderRepository.forEachByOrderTime(from, to, order -> {
+            if (isRevenueStatus(order.getStatus())) {
+                revenue.add(order.getTotalAmount());
+                counted.add(order.getOrderId());
+            }
+        });
+        archive.forEachByOrderTime(from, to, order -> {
+            if (isRevenueStatus(order.getStatus()) && !counted.contains(order.getOrderId())) {
+                revenue.add(order.getTotalAmount());
+            }
+        });
+        return revenue.toMoney(currency);
+    }
+
+    /**
+     * Count orders currently in the given status
+     */
+    public int countOrdersByStatus(OrderStatus status) {
+        return orderRepository.countByStatus(status);
     }
 
     /**
@@ -230,6 +756,80 @@ public class OrderService {
             .collect(java.util.stream.Collectors.toList());
     }
 
+    private ReentrantLock lockFor(Order order) {
+        if (order == null) {
+            throw new IllegalArgumentException("Order cannot be null");
+        }
+        return orderLocks.lockFor(order.getOrderId());
+    }
+
+    private List<ReentrantLock> lockAll(List<Order> batch) {
+        List<String> orderIds = new ArrayList<>(batch.size());
+        for (Order order : batch) {
+            if (order != null) {
+                orderIds.add(order.getOrderId());
+            }
+        }
+        List<ReentrantLock> locks = orderLocks.locksFor(orderIds);
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+        return locks;
+    }
+
+    private void unlockAll(List<ReentrantLock> locks) {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            locks.get(i).unlock();
+        }
+    }
+
+    private void advanceStatus(Order order, OrderStatus expected, OrderStatus next) {
+        ReentrantLock lock = lockFor(order);
+        lock.lock();
+        try {
+            if (order.getStatus() != expected) {
+                throw new IllegalStateException("Order must be " + expected + " to become " + next
+                    + ", but is " + order.getStatus());
+            }
+            if (journal != null) {
+                journal.recordStatusChanged(order, next);
+            }
+            order.setStatus(next);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void validateBatchMember(Order order, Set<String> seenOrderIds) {
+        if (order == null) {
+            throw new IllegalArgumentException("Order cannot be null");
+        }
+        if (!seenOrderIds.add(order.getOrderId())) {
+            throw new IllegalArgumentException("Order appears more than once in batch: " + order.getOrderId());
+        }
+    }
+
+    private Order buildOrder(OrderRequest request) {
+        if (request == null) {
+            throw new IllegalArgumentException("Order request cannot be null");
+        }
+
+        Order order = new Order(request.getCustomer(), request.getDeliveryAddress());
+        for (OrderRequest.Line line : request.getLines()) {
+            if (line.getMenuItem() != null) {
+                validateMenuItemAvailable(line.getMenuItem());
+                order.addOrderItem(new OrderItem(line.getMenuItem(), line.getQuantity()));
+            } else {
+                validateDinnerAvailable(line.getDinner());
+                order.addOrderItem(new OrderItem(line.getDinner(), line.getQuantity()));
+            }
+        }
+
+        // Price once per order rather than once per item
+        applyOrderPricing(order);
+        return order;
+    }
+
     private void validateOrderModifiable(Order order) {
         if (!order.isModifiable()) {
             throw new IllegalStateException("Order cannot be modified in current status: " + order.getStatus());
@@ -259,27 +859,139 @@ public class OrderService {
         }
     }
 
-    private void validateInventoryAvailability(Order order) {
-        // This would check if all required ingredients are available
-        // For now, we'll assume inventory is always available
-        System.out.println("Validating inventory availability for order: " + order.getOrderId());
-    }
-
-    private void consumeInventoryForOrder(Order order) {
-        // This would consume inventory items based on the order
-        // For now, we'll just log the action
-        System.out.println("Consuming inventory for order: " + order.getOrderId());
+    private void reserveInventoryForOrder(Order order) {
+        InventoryService.StockReservation reservation = inventoryService.reserveStock(order);
+        if (!reservation.isReserved()) {
+            throw new IllegalStateException("Cannot confirm order " + order.getOrderId() + ": "
+                + reservation.getFailureReason());
+        }
     }
 
     private void restoreInventoryForOrder(Order order) {
-        // This would restore inventory items that were consumed
-        System.out.println("Restoring inventory for cancelled order: " + order.getOrderId());
+        inventoryService.restoreStockForOrder(order);
     }
 
     private void updateOrderPricing(Order order) {
         PricingService.OrderPricing pricing = pricingService.calculateOrderPricing(order);
-        order.setTax(pricing.getTax());
-        order.setDeliveryFee(pricing.getDeliveryFee());
+        if (journal != null) {
+            journal.recordChargesUpdated(order, pricing.getTax(), pricing.getDeliveryFee());
+        }
+        order.setCharges(pricing.getTax(), pricing.getDeliveryFee());
+    }
+
+    private void applyOrderPricing(Order order) {
+        PricingService.OrderPricing pricing = pricingService.calculateOrderPricing(order);
+        order.setCharges(pricing.getTax(), pricing.getDeliveryFee());
+    }
+
+    private void indexOpenOrder(Order order) {
+        if (OpenOrderItemIndex.isOpen(order)) {
+            for (OrderItem orderItem : order.getOrderItems()) {
+                openOrderItems.add(orderItem);
+            }
+        }
+    }
+
+    private MenuChangeResult applyMenuChange(Map<Order, List<OrderItem>> affected) {
+        MenuChangeResult result = new MenuChangeResult(affected.size());
+        for (Map.Entry<Order, List<OrderItem>> entry : affected.entrySet()) {
+            Order order = entry.getKey();
+            ReentrantLock lock = lockFor(order);
+            lock.lock();
+            try {
+                if (!OpenOrderItemIndex.isOpen(order)) {
+                    continue;
+                }
+                boolean repriced = false;
+                boolean unavailable = false;
+                for (OrderItem orderItem : entry.getValue()) {
+                    if (!order.getOrderItems().contains(orderItem)) {
+                        // Removed after the index was read
+                        continue;
+                    }
+                    if (order.getStatus() == OrderStatus.PENDING) {
+                        repriced |= repriceItem(order, orderItem);
+                    }
+                    unavailable |= !orderItem.isAvailable();
+                }
+                if (repriced) {
+                    updateOrderPricing(order);
+                    result.repricedOrders.add(order);
+                }
+                if (unavailable) {
+                    result.ordersWithUnavailableItems.add(order);
+                    log.warn("Order %s has items that are no longer available", order.getOrderId());
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return result;
+    }
+
+    private boolean repriceItem(Order order, OrderItem orderItem) {
+        Money currentPrice = orderItem.isMenuItem()
+            ? orderItem.getMenuItem().getPrice()
+            : orderItem.getDinner().calculateTotalPrice();
+        if (currentPrice.equals(orderItem.getUnitPrice())) {
+            return false;
+        }
+        if (journal != null) {
+            journal.recordItemRepriced(order, orderItem, currentPrice);
+        }
+        orderItem.setUnitPrice(currentPrice);
+        return true;
+    }
+
+    /**
+     * Journal a confirmation whose stock is already reserved, giving the
+     * stock back if the append fails
+     */
+    private void journalConfirmation(Order order) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.recordOrderConfirmed(order);
+        } catch (RuntimeException e) {
+            inventoryService.restoreStockForOrder(order);
+            throw e;
+        }
+    }
+
+    private void journalNewOrder(Order order) {
+        journal.recordOrderCreated(order);
+        for (OrderItem orderItem : order.getOrderItems()) {
+            journal.recordItemAdded(order, orderItem);
+        }
+        journal.recordChargesUpdated(order);
+    }
+
+    private void restoreFromJournal(MenuCatalog menuCatalog) {
+        List<Order> restored = journal.replay(menuCatalog);
+        for (Order order : restored) {
+            orderRepository.save(order);
+            indexOpenOrder(order);
+        }
+        log.info("Restored %d orders from %d journal records", restored.size(), journal.getRecordCount());
+    }
+
+    private void publish(DomainEvent event) {
+        EventBus bus = eventBus;
+        if (bus != null) {
+            bus.publish(event);
+        }
+    }
+
+    private static boolean isRevenueStatus(OrderStatus status) {
+        return status == OrderStatus.PREPARING || status == OrderStatus.READY
+            || status == OrderStatus.OUT_FOR_DELIVERY || status == OrderStatus.DELIVERED;
+    }
+
+    private void validateIdempotencyKey(String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.trim().isEmpty()) {
+            throw new IllegalArgumentException("Idempotency key cannot be null or empty");
+        }
     }
 
     private void processPaymentTransaction(Payment payment) {
@@ -287,12 +999,12 @@ public class OrderService {
         // In a real system, this would integrate with payment gateways
         
         if (payment.getPaymentMethod().isInstantPayment()) {
-            payment.processPayment("TXN-" + System.currentTimeMillis());
+            payment.processPayment("TXN-" + Ids.next());
         } else {
             // Simulate processing delay
             payment.setStatus(PaymentStatus.PROCESSING);
             // Simulate success after processing
-            payment.processPayment("TXN-" + System.currentTimeMillis());
+            payment.processPayment("TXN-" + Ids.next());
         }
     }
 
@@ -302,20 +1014,24 @@ public class OrderService {
     }
 
     private void createDeliveryForOrder(Order order) {
-        Address pickupAddress = new Address("123 Restaurant St", "Food City", "FC", "12345", "USA");
         LocalDateTime deliveryTime = LocalDateTime.now().plusHours(1);
+        Optional<Courier> availableCourier = getAvailableCouriers().stream().findFirst();
+        
+        deliveryService.addDelivery(newDelivery(order, deliveryTime, availableCourier));
+    }
+
+    private Delivery newDelivery(Order order, LocalDateTime deliveryTime, Optional<Courier> availableCourier) {
         Money deliveryFee = order.getDeliveryFee();
         
-        Delivery delivery = new Delivery(order, pickupAddress, order.getDeliveryAddress(), 
+        Delivery delivery = new Delivery(order, RESTAURANT_ADDRESS, order.getDeliveryAddress(), 
                                        deliveryTime, deliveryFee);
         
         // Assign courier if available
-        Optional<Courier> availableCourier = getAvailableCouriers().stream().findFirst();
         if (availableCourier.isPresent()) {
             delivery.assignCourier(availableCourier.get());
+            publish(new DeliveryAssignedEvent(delivery, availableCourier.get()));
         }
-        
-        deliveryService.addDelivery(delivery);
+        return delivery;
     }
 
     private void validateOrderCancellable(Order order) {
@@ -323,4 +1039,174 @@ public class OrderService {
             throw new IllegalStateException("Cannot cancel order in final status: " + order.getStatus());
         }
     }
+
+    /**
+     * Request describing one order in a batch submitted to {@link #createOrders}
+     */
+    public static class OrderRequest {
+        private final Customer customer;
+        private final Address deliveryAddress;
+        private final List<Line> lines;
+
+        public OrderRequest(Customer customer, Address deliveryAddress) {
+            if (customer == null) {
+                throw new IllegalArgumentException("Customer cannot be null");
+            }
+            if (deliveryAddress == null) {
+                throw new IllegalArgumentException("Delivery address cannot be null");
+            }
+            this.customer = customer;
+            this.deliveryAddress = deliveryAddress;
+            this.lines = new ArrayList<>();
+        }
+
+        public OrderRequest addMenuItem(MenuItem menuItem, int quantity) {
+            if (menuItem == null) {
+                throw new IllegalArgumentException("Menu item cannot be null");
+            }
+            lines.add(new Line(menuItem, null, quantity));
+            return this;
+        }
+
+        public OrderRequest addDinner(Dinner dinner, int quantity) {
+            if (dinner == null) {
+                throw new IllegalArgumentException("Dinner cannot be null");
+            }
+            lines.add(new Line(null, dinner, quantity));
+            return this;
+        }
+
+        public Customer getCustomer() { return customer; }
+        public Address getDeliveryAddress() { return deliveryAddress; }
+        public List<Line> getLines() { return Collections.unmodifiableList(lines); }
+
+        /**
+         * One menu item or dinner with its quantity
+         */
+        public static class Line {
+            private final MenuItem menuItem;
+            private final Dinner dinner;
+            private final int quantity;
+
+            private Line(MenuItem menuItem, Dinner dinner, int quantity) {
+                this.menuItem = menuItem;
+                this.dinner = dinner;
+                this.quantity = quantity;
+            }
+
+            public MenuItem getMenuItem() { return menuItem; }
+            public Dinner getDinner() { return dinner; }
+            public int getQuantity() { return quantity; }
+        }
+    }
+
+    /**
+     * Per-order outcome of a batch operation, in the same order as the input
+     */
+    public static class OrderBatchResult {
+        private final OrderResult[] results;
+        private int successCount;
+
+        public OrderBatchResult(int size) {
+            this.results = new OrderResult[size];
+            this.successCount = 0;
+        }
+
+        void recordSuccess(int index, Order order) {
+            results[index] = new OrderResult(index, order, null);
+            successCount++;
+        }
+
+        void recordFailure(int index, Order order, String failureReason) {
+            results[index] = new OrderResult(index, order, 
+                failureReason != null ? failureReason : "Unknown failure");
+        }
+
+        public List<OrderResult> getResults() {
+            return Collections.unmodifiableList(Arrays.asList(results));
+        }
+
+        public List<Order> getSuccessfulOrders() {
+            List<Order> successful = new ArrayList<>(successCount);
+            for (OrderResult result : results) {
+                if (result.isSuccessful()) {
+                    successful.add(result.getOrder());
+                }
+            }
+            return successful;
+        }
+
+        public List<OrderResult> getFailures() {
+            List<OrderResult> failures = new ArrayList<>(results.length - successCount);
+            for (OrderResult result : results) {
+                if (!result.isSuccessful()) {
+                    failures.add(result);
+                }
+            }
+            return failures;
+        }
+
+        public int getSuccessCount() { return successCount; }
+        public int getFailureCount() { return results.length - successCount; }
+        public boolean isAllSuccessful() { return successCount == results.length; }
+
+        @Override
+        public String toString() {
+            return String.format("OrderBatchResult{total=%d, succeeded=%d, failed=%d}", 
+                results.length, successCount, getFailureCount());
+        }
+    }
+
+    /**
+     * Open orders touched by a menu change
+     */
+    public static class MenuChangeResult {
+        private final int affectedOrderCount;
+        private final List<Order> repricedOrders = new ArrayList<>();
+        private final List<Order> ordersWithUnavailableItems = new ArrayList<>();
+
+        MenuChangeResult(int affectedOrderCount) {
+            this.affectedOrderCount = affectedOrderCount;
+        }
+
+        /**
+         * Open orders with a line using the changed item
+         */
+        public int getAffectedOrderCount() { return affectedOrderCount; }
+        public List<Order> getRepricedOrders() { return Collections.unmodifiableList(repricedOrders); }
+        public List<Order> getOrdersWithUnavailableItems() { return Collections.unmodifiableList(ordersWithUnavailableItems); }
+
+        @Override
+        public String toString() {
+            return String.format("MenuChangeResult{affected=%d, repriced=%d, unavailable=%d}",
+                affectedOrderCount, repricedOrders.size(), ordersWithUnavailableItems.size());
+        }
+    }
+
+    /**
+     * Outcome for a single order within a batch
+     */
+    public static class OrderResult {
+        private final int index;
+        private final Order order;
+        private final String failureReason;
+
+        public OrderResult(int index, Order order, String failureReason) {
+            this.index = index;
+            this.order = order;
+            this.failureReason = failureReason;
+        }
+
+        public int getIndex() { return index; }
+        public Order getOrder() { return order; }
+        public String getFailureReason() { return failureReason; }
+        public boolean isSuccessful() { return failureReason == null; }
+
+        @Override
+        public String toString() {
+            return isSuccessful()
+                ? String.format("OrderResult{index=%d, order='%s'}", index, order.getOrderId())
+                : String.format("OrderResult{index=%d, failure='%s'}", index, failureReason);
+        }
+    }
 }
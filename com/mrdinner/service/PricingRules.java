@@ -0,0 +1,245 @@
+package com.mrdinner.service;
+
+import com.mrdinner.domain.common.Money;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Immutable, compiled set of pricing rules. Rules are parsed and validated
+ * once; evaluation then uses only precomputed {@link Money} and
+ * {@link BigDecimal} constants and array lookups. {@link PricingService}
+ * holds one instance at a time and swaps in a new one atomically.
+ *
+ * Rules load from a properties file; every key is optional and defaults to
+ * the built-in rule:
+ * <pre>
+ * rules.version=2024-06
+ * currency=USD
+ * tax.rate=0.08
+ * order.minimum=15.00
+ * delivery.fee=4.99
+ * delivery.freeThreshold=50.00
+ * volume.discount.3=0.05     # 5% off 3 or more of one dinner
+ * volume.discount.5=0.10
+ * volume.discount.10=0.15
+ * promo.maxDiscount=1.0
+ * </pre>
+ */
+public final class PricingRules {
+    private static final BigDecimal MAX_FRACTION = BigDecimal.ONE;
+    private static final PricingRules DEFAULTS = fromProperties(new Properties());
+
+    private final String version;
+    private final String currency;
+    private final BigDecimal taxRate;
+    private final Money minimumOrder;
+    private final Money deliveryFee;
+    private final Money freeDeliveryThreshold;
+    private final Money zero;
+    private final int[] volumeThresholds;
+    private final BigDecimal[] volumeMultipliers;
+    private final BigDecimal maxPromoDiscount;
+
+    private PricingRules(String version, String currency, BigDecimal taxRate, Money minimumOrder,
+                         Money deliveryFee, Money freeDeliveryThreshold, int[] volumeThresholds,
+                         BigDecimal[] volumeMultipliers, BigDecimal maxPromoDiscount) {
+        this.version = version;
+        this.currency = currency;
+        this.taxRate = taxRate;
+        this.minimumOrder = minimumOrder;
+        this.deliveryFee = deliveryFee;
+        this.freeDeliveryThreshold = freeDeliveryThreshold;
+        this.zero = Money.zero(currency);
+        this.volumeThresholds = volumeThresholds;
+        this.volumeMultipliers = volumeMultipliers;
+        this.maxPromoDiscount = maxPromoDiscount;
+    }
+
+    /**
+     * The built-in rules: 8% tax, $15 minimum, $4.99 delivery free from $50,
+     * and 5/10/15% off 3/5/10 or more of one dinner
+     */
+    public static PricingRules defaults() {
+        return DEFAULTS;
+    }
+
+    public static PricingRules load(Path file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("Rules file cannot be null");
+        }
+        try (InputStream in = Files.newInputStream(file);
+             Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            Properties properties = new Properties();
+            properties.load(reader);
+            return fromProperties(properties);
+        }
+    }
+
+    /**
+     * Compile rules from properties; an invalid value fails with the key it
+     * came from
+     */
+    public static PricingRules fromProperties(Properties properties) {
+        if (properties == null) {
+            throw new IllegalArgumentException("Properties cannot be null");
+        }
+        String version = properties.getProperty("rules.version", "default").trim();
+        String currency = properties.getProperty("currency", "USD").trim();
+        if (currency.isEmpty()) {
+            throw new IllegalArgumentException("Invalid pricing rule currency: empty");
+        }
+        BigDecimal taxRate = fraction(properties, "tax.rate", "0.08");
+        Money minimumOrder = amount(properties, "order.minimum", "15.00", currency);
+        Money deliveryFee = amount(properties, "delivery.fee", "4.99", currency);
+        Money freeDeliveryThreshold = amount(properties, "delivery.freeThreshold", "50.00", currency);
+        BigDecimal maxPromoDiscount = fraction(properties, "promo.maxDiscount", "1.0");
+
+        Map<Integer, BigDecimal> tiers = new TreeMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith("volume.discount.")) {
+                int threshold = parseThreshold(key);
+                tiers.put(threshold, MAX_FRACTION.subtract(fraction(properties, key, null)));
+            }
+        }
+        if (tiers.isEmpty()) {
+            tiers.put(3, new BigDecimal("0.95"));
+            tiers.put(5, new BigDecimal("0.90"));
+            tiers.put(10, new BigDecimal("0.85"));
+        }
+        int[] thresholds = new int[tiers.size()];
+        BigDecimal[] multipliers = new BigDecimal[tiers.size()];
+        int i = 0;
+        for (Map.Entry<Integer, BigDecimal> tier : tiers.entrySet()) {
+            thresholds[i] = tier.getKey();
+            multipliers[i] = tier.getValue();
+            i++;
+        }
+        return new PricingRules(version, currency, taxRate, minimumOrder, deliveryFee,
+            freeDeliveryThreshold, thresholds, multipliers, maxPromoDiscount);
+    }
+
+    /**
+     * Price an order subtotal: tax, then delivery fee, then total
+     */
+    public PricingService.OrderPricing price(Money subtotal) {
+        return price(subtotal, taxRate);
+    }
+
+    /**
+     * Price an order subtotal with a jurisdiction's tax rate in place of the
+     * default rate
+     */
+    public PricingService.OrderPricing price(Money subtotal, BigDecimal jurisdictionTaxRate) {
+        Money tax = subtotal.multiply(jurisdictionTaxRate);
+        Money fee = deliveryFee(subtotal);
+        Money total = Money.ofMinor(subtotal.getMinorUnits() + tax.getMinorUnits() + fee.getMinorUnits(),
+            subtotal.getCurrency());
+        return new PricingService.OrderPricing(subtotal, tax, fee, total);
+    }
+
+    public Money tax(Money amount) {
+        return amount.multiply(taxRate);
+    }
+
+    public Money deliveryFee(Money orderAmount) {
+        return orderAmount.compareTo(freeDeliveryThreshold) >= 0 ? zero : deliveryFee;
+    }
+
+    public boolean meetsMinimum(Money orderAmount) {
+        return orderAmount.compareTo(minimumOrder) >= 0;
+    }
+
+    /**
+     * Price multiplier for {@code quantity} of one dinner; 1 below the first tier
+     */
+    public BigDecimal volumeMultiplier(int quantity) {
+        int index = Arrays.binarySearch(volumeThresholds, quantity);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        return index >= 0 ? volumeMultipliers[index] : BigDecimal.ONE;
+    }
+
+    public BigDecimal getMaxPromoDiscount() {
+        return maxPromoDiscount;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public BigDecimal getTaxRate() {
+        return taxRate;
+    }
+
+    public Money getMinimumOrder() {
+        return minimumOrder;
+    }
+
+    public Money getDeliveryFee() {
+        return deliveryFee;
+    }
+
+    public Money getFreeDeliveryThreshold() {
+        return freeDeliveryThreshold;
+    }
+
+    private static BigDecimal fraction(Properties properties, String key, String defaultValue) {
+        BigDecimal value = decimal(properties, key, defaultValue);
+        if (value.compareTo(MAX_FRACTION) > 0) {
+            throw new IllegalArgumentException("Invalid pricing rule " + key + ": must be between 0 and 1");
+        }
+        return value;
+    }
+
+    private static Money amount(Properties properties, String key, String defaultValue, String currency) {
+        return new Money(decimal(properties, key, defaultValue), currency);
+    }
+
+    private static BigDecimal decimal(Properties properties, String key, String defaultValue) {
+        String raw = properties.getProperty(key, defaultValue);
+        BigDecimal value;
+        try {
+            value = new BigDecimal(raw.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid pricing rule " + key + ": " + raw, e);
+        }
+        if (value.signum() < 0) {
+            throw new IllegalArgumentException("Invalid pricing rule " + key + ": cannot be negative");
+        }
+        return value;
+    }
+
+    private static int parseThreshold(String key) {
+        String suffix = key.substring("volume.discount.".length());
+        try {
+            int threshold = Integer.parseInt(suffix);
+            if (threshold <= 0) {
+                throw new IllegalArgumentException("Invalid pricing rule " + key + ": quantity must be positive");
+            }
+            return threshold;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid pricing rule " + key + ": quantity must be a number", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PricingRules{version='%s', currency=%s, tax=%s, volumeTiers=%d}",
+            version, currency, taxRate, volumeThresholds.length);
+    }
+}
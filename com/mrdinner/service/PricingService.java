@@ -1,21 +1,111 @@
 package com.mrdinner.service;
 
+import com.mrdinner.domain.common.Address;
 import com.mrdinner.domain.common.Money;
 import com.mrdinner.domain.menu.Dinner;
 import com.mrdinner.domain.menu.MenuItem;
 import com.mrdinner.domain.order.Order;
-import com.mrdinner.domain.order.OrderItem;
+import com.mrdinner.infrastructure.EventLogger;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 
 /**
- * Service for handling pricing calculations and business rules
+ * Service for handling pricing calculations and business rules.
+ *
+ * Tax, minimum order, delivery fee and volume discount rules come from a
+ * compiled {@link PricingRules} set. Each calculation reads the current set
+ * once, so replacing the rules never mixes old and new rules in one price.
+ * Order tax uses the delivery address's jurisdiction from
+ * {@link TaxJurisdictions} when it has one, and the rules' rate otherwise.
  */
 public class PricingService {
-    private static final BigDecimal DEFAULT_TAX_RATE = new BigDecimal("0.08"); // 8% tax
-    private static final Money MINIMUM_ORDER_AMOUNT = Money.of(15.00, "USD");
-    private static final Money FREE_DELIVERY_THRESHOLD = Money.of(50.00, "USD");
-    private static final Money STANDARD_DELIVERY_FEE = Money.of(4.99, "USD");
+    private static final EventLogger log = EventLogger.getLogger();
+    private static final List<BigDecimal> STANDARD_TIP_PERCENTAGES = List.of(
+        new BigDecimal("0.15"), // 15%
+        new BigDecimal("0.18"), // 18%
+        new BigDecimal("0.20")  // 20%
+    );
+
+    private volatile PricingRules rules;
+    private volatile TaxJurisdictions taxJurisdictions;
+    private volatile PromoCodeService promoCodes;
+
+    /**
+     * Uses the rules file named by the {@code mrdinner.pricing.rules} system
+     * property, or the built-in rules if it is not set, and the tax rate file
+     * named by {@code mrdinner.tax.rates}, if set
+     */
+    public PricingService() {
+        this(initialRules());
+        this.taxJurisdictions = initialTaxJurisdictions();
+    }
+
+    public PricingService(PricingRules rules) {
+        if (rules == null) {
+            throw new IllegalArgumentException("Pricing rules cannot be null");
+        }
+        this.rules = rules;
+        this.taxJurisdictions = TaxJurisdictions.empty();
+    }
+
+    public PricingRules getRules() {
+        return rules;
+    }
+
+    /**
+     * Replace the rules; calculations already running finish with the old set
+     */
+    public void setRules(PricingRules newRules) {
+        if (newRules == null) {
+            throw new IllegalArgumentException("Pricing rules cannot be null");
+        }
+        PricingRules previous = rules;
+        rules = newRules;
+        log.info("Pricing rules %s replaced by %s", previous.getVersion(), newRules.getVersion());
+    }
+
+    /**
+     * Load, compile and swap in rules from a file. Invalid rules leave the
+     * current set in place.
+     */
+    public PricingRules reloadRules(Path file) throws IOException {
+        PricingRules loaded = PricingRules.load(file);
+        setRules(loaded);
+        return loaded;
+    }
+
+    public TaxJurisdictions getTaxJurisdictions() {
+        return taxJurisdictions;
+    }
+
+    public void setTaxJurisdictions(TaxJurisdictions jurisdictions) {
+        if (jurisdictions == null) {
+            throw new IllegalArgumentException("Tax jurisdictions cannot be null");
+        }
+        this.taxJurisdictions = jurisdictions;
+        log.info("Tax jurisdictions replaced: %d zip prefixes, %d states",
+            jurisdictions.getZipPrefixCount(), jurisdictions.getStateCount());
+    }
+
+    /**
+     * Load and swap in tax jurisdictions from a rate file. An invalid file
+     * leaves the current table in place.
+     */
+    public TaxJurisdictions reloadTaxJurisdictions(Path file) throws IOException {
+        TaxJurisdictions loaded = TaxJurisdictions.load(file);
+        setTaxJurisdictions(loaded);
+        return loaded;
+    }
+
+    /**
+     * Check promo codes against the given store from now on; null stops checking
+     */
+    public void setPromoCodeService(PromoCodeService promoCodes) {
+        this.promoCodes = promoCodes;
+    }
 
     /**
      * Calculate the total price for an order including tax and delivery fees
@@ -24,22 +114,32 @@ public class PricingService {
         if (order == null) {
             throw new IllegalArgumentException("Order cannot be null");
         }
+        return calculatePricing(calculateSubtotal(order), order.getDeliveryAddress());
+    }
 
-        Money subtotal = calculateSubtotal(order);
-        Money tax = calculateTax(subtotal);
-        Money deliveryFee = calculateDeliveryFee(subtotal);
-        Money total = subtotal.add(tax).add(deliveryFee);
-
-        return new OrderPricing(subtotal, tax, deliveryFee, total);
+    /**
+     * Tax, delivery fee and total for a subtotal delivered to {@code address}
+     */
+    public OrderPricing calculatePricing(Money subtotal, Address address) {
+        if (subtotal == null) {
+            throw new IllegalArgumentException("Subtotal cannot be null");
+        }
+        PricingRules current = rules;
+        TaxJurisdictions.Jurisdiction jurisdiction = address != null ? taxJurisdictions.resolve(address) : null;
+        return jurisdiction != null
+            ? current.price(subtotal, jurisdiction.getRate())
+            : current.price(subtotal);
     }
 
     /**
-     * Calculate subtotal for all items in the order
+     * Calculate subtotal for all items in the order.
+     * The order keeps its subtotal current as items change, so no scan is needed.
      */
     public Money calculateSubtotal(Order order) {
-        return order.getOrderItems().stream()
-            .map(OrderItem::getTotalPrice)
-            .reduce(Money.zero("USD"), Money::add);
+        if (order == null) {
+            throw new IllegalArgumentException("Order cannot be null");
+        }
+        return order.getSubtotal();
     }
 
     /**
@@ -49,7 +149,18 @@ public class PricingService {
         if (amount == null) {
             throw new IllegalArgumentException("Amount cannot be null");
         }
-        return amount.multiply(DEFAULT_TAX_RATE);
+        return rules.tax(amount);
+    }
+
+    /**
+     * Calculate tax for the given amount delivered to {@code address}
+     */
+    public Money calculateTax(Money amount, Address address) {
+        if (amount == null) {
+            throw new IllegalArgumentException("Amount cannot be null");
+        }
+        TaxJurisdictions.Jurisdiction jurisdiction = taxJurisdictions.resolve(address);
+        return jurisdiction != null ? amount.multiply(jurisdiction.getRate()) : rules.tax(amount);
     }
 
     /**
@@ -59,13 +170,7 @@ public class PricingService {
         if (orderAmount == null) {
             throw new IllegalArgumentException("Order amount cannot be null");
         }
-
-        // Free delivery for orders above threshold
-        if (orderAmount.getAmount().compareTo(FREE_DELIVERY_THRESHOLD.getAmount()) >= 0) {
-            return Money.zero("USD");
-        }
-
-        return STANDARD_DELIVERY_FEE;
+        return rules.deliveryFee(orderAmount);
     }
 
     /**
@@ -82,25 +187,11 @@ public class PricingService {
         Money basePrice = dinner.calculateTotalPrice();
         
         // Apply volume discount for multiple dinners
-        BigDecimal discountMultiplier = calculateVolumeDiscount(quantity);
+        BigDecimal discountMultiplier = rules.volumeMultiplier(quantity);
         
         return basePrice.multiply(discountMultiplier).multiply(quantity);
     }
 
-    /**
-     * Apply volume discount based on quantity
-     */
-    private BigDecimal calculateVolumeDiscount(int quantity) {
-        if (quantity >= 10) {
-            return new BigDecimal("0.85"); // 15% discount for 10+ items
-        } else if (quantity >= 5) {
-            return new BigDecimal("0.90"); // 10% discount for 5+ items
-        } else if (quantity >= 3) {
-            return new BigDecimal("0.95"); // 5% discount for 3+ items
-        }
-        return BigDecimal.ONE; // No discount
-    }
-
     /**
      * Validate if order meets minimum order amount
      */
@@ -108,7 +199,7 @@ public class PricingService {
         if (orderAmount == null) {
             return false;
         }
-        return orderAmount.getAmount().compareTo(MINIMUM_ORDER_AMOUNT.getAmount()) >= 0;
+        return rules.meetsMinimum(orderAmount);
     }
 
     /**
@@ -129,15 +220,15 @@ public class PricingService {
      * Get standard tip percentages
      */
     public List<BigDecimal> getStandardTipPercentages() {
-        return List.of(
-            new BigDecimal("0.15"), // 15%
-            new BigDecimal("0.18"), // 18%
-            new BigDecimal("0.20")  // 20%
-        );
+        return STANDARD_TIP_PERCENTAGES;
     }
 
     /**
-     * Apply promotional discount
+     * Apply promotional discount. Once a promo code store is configured the
+     * discount must come from an active code: {@code promoCode} must name one
+     * and {@code discountPercentage} must be its defined discount. This only
+     * prices the discount; checkout should go through {@link #applyPromoCode}
+     * so the redemption is counted.
      */
     public Money applyPromotionalDiscount(Money amount, BigDecimal discountPercentage, String promoCode) {
         if (amount == null) {
@@ -146,19 +237,76 @@ public class PricingService {
         if (discountPercentage == null || discountPercentage.compareTo(BigDecimal.ZERO) < 0) {
             throw new IllegalArgumentException("Discount percentage must be non-negative");
         }
-        if (discountPercentage.compareTo(new BigDecimal("1.0")) > 0) {
-            throw new IllegalArgumentException("Discount percentage cannot exceed 100%");
+        PromoCodeService store = promoCodes;
+        if (store != null) {
+            PromoCodeService.PromoCode code = promoCode != null ? store.findCode(promoCode).orElse(null) : null;
+            if (code == null || !store.isActive(promoCode)) {
+                throw new IllegalArgumentException("Promo code is not valid: " + promoCode);
+            }
+            if (code.getDiscountPercentage().compareTo(discountPercentage) != 0) {
+                throw new IllegalArgumentException("Promo code " + promoCode + " gives "
+                    + code.getDiscountPercentage() + ", not " + discountPercentage);
+            }
         }
+        return discounted(amount, discountPercentage);
+    }
 
-        Money discount = amount.multiply(discountPercentage);
-        Money discountedAmount = amount.subtract(discount);
-        
-        // Ensure discounted amount is not negative
-        if (discountedAmount.getAmount().compareTo(BigDecimal.ZERO) < 0) {
-            return Money.zero(amount.getCurrency());
+    /**
+     * Redeem a promo code for a customer and apply its discount. The
+     * redemption counts against the code's caps; release it through the
+     * promo code store if the order does not go ahead.
+     */
+    public Money applyPromoCode(Money amount, String promoCode, String customerId) {
+        if (amount == null) {
+            throw new IllegalArgumentException("Amount cannot be null");
+        }
+        PromoCodeService store = promoCodes;
+        if (store == null) {
+            throw new IllegalStateException("No promo code store configured");
+        }
+        PromoCodeService.Redemption redemption = store.redeem(promoCode, customerId);
+        if (!redemption.isSuccessful()) {
+            throw new IllegalArgumentException("Promo code " + promoCode + " cannot be redeemed: "
+                + redemption.getStatus());
+        }
+        try {
+            return discounted(amount, redemption.getDiscountPercentage());
+        } catch (RuntimeException e) {
+            store.release(redemption);
+            throw e;
+        }
+    }
+
+    private Money discounted(Money amount, BigDecimal discountPercentage) {
+        BigDecimal maxDiscount = rules.getMaxPromoDiscount();
+        if (discountPercentage.compareTo(maxDiscount) > 0) {
+            throw new IllegalArgumentException("Discount percentage cannot exceed " + maxDiscount);
+        }
+        return amount.subtract(amount.multiply(discountPercentage));
+    }
+
+    private static PricingRules initialRules() {
+        String configured = System.getProperty("mrdinner.pricing.rules");
+        if (configured == null) {
+            return PricingRules.defaults();
+        }
+        try {
+            return PricingRules.load(Paths.get(configured.trim()));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read mrdinner.pricing.rules: " + configured, e);
+        }
+    }
+
+    private static TaxJurisdictions initialTaxJurisdictions() {
+        String configured = System.getProperty("mrdinner.tax.rates");
+        if (configured == null) {
+            return TaxJurisdictions.empty();
+        }
+        try {
+            return TaxJurisdictions.load(Paths.get(configured.trim()));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read mrdinner.tax.rates: " + configured, e);
         }
-        
-        return discountedAmount;
     }
 
     /**
@@ -194,7 +342,7 @@ public class PricingService {
         }
 
         public boolean hasDeliveryFee() {
-            return deliveryFee.getAmount().compareTo(BigDecimal.ZERO) > 0;
+            return !deliveryFee.isZero();
         }
 
         @Override
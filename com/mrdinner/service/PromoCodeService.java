@@ -0,0 +1,329 @@
+package com.mrdinner.service;
+
+import com.mrdinner.infrastructure.EventLogger;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Store of promo codes with validity windows, a global redemption cap and a
+ * per-customer cap. Codes are looked up by their normalized text in a hash
+ * map. Redemption counts are claimed with compare-and-set against the cap,
+ * so concurrent redemptions of a popular code never take locks and never
+ * exceed either cap.
+ *
+ * A store built with a {@link PricingService} refuses codes whose discount is
+ * above the active rules' maximum promo discount. The rules can be replaced
+ * later, so the maximum is checked again when a discount is applied, and a
+ * lower maximum set after a code was defined wins.
+ */
+public class PromoCodeService {
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    private static final EventLogger log = EventLogger.getLogger();
+
+    private final Map<String, PromoCode> codes = new ConcurrentHashMap<>();
+    private final Clock clock;
+    private final PricingService pricingService;
+
+    public PromoCodeService() {
+        this(Clock.systemDefaultZone());
+    }
+
+    public PromoCodeService(Clock clock) {
+        this(clock, null);
+    }
+
+    public PromoCodeService(PricingService pricingService) {
+        this(Clock.systemDefaultZone(), pricingService);
+    }
+
+    /**
+     * @param pricingService whose rules cap the discounts of new codes, or
+     *                       null to allow any discount up to 1
+     */
+    public PromoCodeService(Clock clock, PricingService pricingService) {
+        if (clock == null) {
+            throw new IllegalArgumentException("Clock cannot be null");
+        }
+        this.clock = clock;
+        this.pricingService = pricingService;
+    }
+
+    /**
+     * Define a code valid from {@code validFrom} (inclusive) until
+     * {@code validUntil} (exclusive). Pass {@link #UNLIMITED} for no cap.
+     * The discount cannot exceed the active pricing rules' maximum promo
+     * discount, if this store has a pricing service.
+     */
+    public PromoCode defineCode(String code, BigDecimal discountPercentage, LocalDateTime validFrom,
+                                LocalDateTime validUntil, int maxRedemptions, int maxPerCustomer) {
+        String key = normalize(code);
+        if (key == null) {
+            throw new IllegalArgumentException("Promo code cannot be null or empty");
+        }
+        if (discountPercentage == null || discountPercentage.signum() < 0
+                || discountPercentage.compareTo(BigDecimal.ONE) > 0) {
+            throw new IllegalArgumentException("Discount percentage must be between 0 and 1");
+        }
+        if (pricingService != null) {
+            BigDecimal maxDiscount = pricingService.getRules().getMaxPromoDiscount();
+            if (discountPercentage.compareTo(maxDiscount) > 0) {
+                throw new IllegalArgumentException("Discount percentage cannot exceed " + maxDiscount);
+            }
+        }
+        if (validFrom == null || validUntil == null || !validUntil.isAfter(validFrom)) {
+            throw new IllegalArgumentException("Validity window must end after it starts");
+        }
+        if (maxRedemptions <= 0 || maxPerCustomer <= 0) {
+            throw new IllegalArgumentException("Redemption caps must be positive");
+        }
+        PromoCode promoCode = new PromoCode(key, discountPercentage, validFrom, validUntil,
+            toEpochMillis(validFrom), toEpochMillis(validUntil), maxRedemptions, maxPerCustomer);
+        if (codes.putIfAbsent(key, promoCode) != null) {
+            throw new IllegalArgumentException("Promo code already exists: " + key);
+        }
+        log.info("Defined promo code %s, %s off", promoCode, discountPercentage);
+        return promoCode;
+    }
+
+    public boolean removeCode(String code) {
+        String key = normalize(code);
+        return key != null && codes.remove(key) != null;
+    }
+
+    public Optional<PromoCode> findCode(String code) {
+        return Optional.ofNullable(lookup(code));
+    }
+
+    /**
+     * Check that a code exists and is inside its validity window, without
+     * redeeming it
+     */
+    public boolean isActive(String code) {
+        PromoCode promoCode = lookup(code);
+        return promoCode != null && promoCode.isActiveAtMillis(clock.millis());
+    }
+
+    /**
+     * Redeem a code for a customer. Either both caps are charged and the
+     * result is successful, or nothing is charged and the result says why.
+     */
+    public Redemption redeem(String code, String customerId) {
+        if (customerId == null || customerId.trim().isEmpty()) {
+            throw new IllegalArgumentException("Customer ID cannot be null or empty");
+        }
+        PromoCode promoCode = lookup(code);
+        if (promoCode == null) {
+            return new Redemption(RedemptionStatus.UNKNOWN_CODE, null, customerId);
+        }
+        long now = clock.millis();
+        if (now < promoCode.validFromMillis) {
+            return new Redemption(RedemptionStatus.NOT_STARTED, promoCode, customerId);
+        }
+        if (now >= promoCode.validUntilMillis) {
+            return new Redemption(RedemptionStatus.EXPIRED, promoCode, customerId);
+        }
+
+        // Claim the customer's slot first so a refused global claim only has
+        // to give back the customer's count, never another customer's.
+        // Codes without a per-customer cap skip per-customer counting.
+        AtomicInteger customerCount = promoCode.tracksCustomers() ? promoCode.customerCount(customerId) : null;
+        if (customerCount != null && !tryIncrement(customerCount, promoCode.maxPerCustomer)) {
+            return new Redemption(RedemptionStatus.CUSTOMER_LIMIT_REACHED, promoCode, customerId);
+        }
+        if (!tryIncrement(promoCode.redemptions, promoCode.maxRedemptions)) {
+            if (customerCount != null) {
+                decrement(customerCount);
+            }
+            return new Redemption(RedemptionStatus.EXHAUSTED, promoCode, customerId);
+        }
+        return new Redemption(RedemptionStatus.REDEEMED, promoCode, customerId);
+    }
+
+    /**
+     * Give back a successful redemption, e.g. when the order is cancelled
+     */
+    public void release(Redemption redemption) {
+        if (redemption == null || !redemption.isSuccessful()) {
+            throw new IllegalArgumentException("Only successful redemptions can be released");
+        }
+        if (!redemption.released.compareAndSet(false, true)) {
+            throw new IllegalStateException("Redemption already released");
+        }
+        PromoCode promoCode = redemption.promoCode;
+        decrement(promoCode.redemptions);
+        if (promoCode.tracksCustomers()) {
+            decrement(promoCode.customerCount(redemption.customerId));
+        }
+    }
+
+    public int getCodeCount() {
+        return codes.size();
+    }
+
+    private static boolean tryIncrement(AtomicInteger counter, int cap) {
+        int current;
+        do {
+            current = counter.get();
+            if (current >= cap) {
+                return false;
+            }
+        } while (!counter.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private static void decrement(AtomicInteger counter) {
+        int current;
+        do {
+            current = counter.get();
+            if (current == 0) {
+                return;
+            }
+        } while (!counter.compareAndSet(current, current - 1));
+    }
+
+    /**
+     * Codes are usually entered as defined, so try the text as given before
+     * normalizing it
+     */
+    private PromoCode lookup(String code) {
+        if (code == null) {
+            return null;
+        }
+        PromoCode promoCode = codes.get(code);
+        if (promoCode == null) {
+            String key = normalize(code);
+            promoCode = key != null ? codes.get(key) : null;
+        }
+        return promoCode;
+    }
+
+    private long toEpochMillis(LocalDateTime time) {
+        return time.atZone(clock.getZone()).toInstant().toEpochMilli();
+    }
+
+    private static String normalize(String code) {
+        if (code == null) {
+            return null;
+        }
+        String normalized = code.trim().toUpperCase();
+        return normalized.isEmpty() ? null : normalized;
+    }
+
+    public enum RedemptionStatus {
+        REDEEMED,
+        UNKNOWN_CODE,
+        NOT_STARTED,
+        EXPIRED,
+        EXHAUSTED,
+        CUSTOMER_LIMIT_REACHED
+    }
+
+    /**
+     * A promo code definition with its live redemption counts
+     */
+    public static class PromoCode {
+        private final String code;
+        private final BigDecimal discountPercentage;
+        private final LocalDateTime validFrom;
+        private final LocalDateTime validUntil;
+        private final long validFromMillis;
+        private final long validUntilMillis;
+        private final int maxRedemptions;
+        private final int maxPerCustomer;
+        private final AtomicInteger redemptions = new AtomicInteger();
+        private final Map<String, AtomicInteger> redemptionsByCustomer = new ConcurrentHashMap<>();
+
+        private PromoCode(String code, BigDecimal discountPercentage, LocalDateTime validFrom,
+                          LocalDateTime validUntil, long validFromMillis, long validUntilMillis,
+                          int maxRedemptions, int maxPerCustomer) {
+            this.code = code;
+            this.discountPercentage = discountPercentage;
+            this.validFrom = validFrom;
+            this.validUntil = validUntil;
+            this.validFromMillis = validFromMillis;
+            this.validUntilMillis = validUntilMillis;
+            this.maxRedemptions = maxRedemptions;
+            this.maxPerCustomer = maxPerCustomer;
+        }
+
+        private AtomicInteger customerCount(String customerId) {
+            AtomicInteger count = redemptionsByCustomer.get(customerId);
+            return count != null ? count : redemptionsByCustomer.computeIfAbsent(customerId, id -> new AtomicInteger());
+        }
+
+        private boolean tracksCustomers() {
+            return maxPerCustomer != UNLIMITED;
+        }
+
+        public boolean isActiveAt(LocalDateTime time) {
+            return !time.isBefore(validFrom) && time.isBefore(validUntil);
+        }
+
+        private boolean isActiveAtMillis(long millis) {
+            return millis >= validFromMillis && millis < validUntilMillis;
+        }
+
+        public String getCode() { return code; }
+        public BigDecimal getDiscountPercentage() { return discountPercentage; }
+        public LocalDateTime getValidFrom() { return validFrom; }
+        public LocalDateTime getValidUntil() { return validUntil; }
+        public int getMaxRedemptions() { return maxRedemptions; }
+        public int getMaxPerCustomer() { return maxPerCustomer; }
+        public int getRedemptionCount() { return redemptions.get(); }
+
+        public int getRedemptionCount(String customerId) {
+            AtomicInteger count = redemptionsByCustomer.get(customerId);
+            return count != null ? count.get() : 0;
+        }
+
+        public int getRemainingRedemptions() {
+            return maxRedemptions == UNLIMITED ? UNLIMITED : maxRedemptions - redemptions.get();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("PromoCode{code='%s', valid=%s..%s, redeemed=%d/%s, perCustomer=%s}",
+                code, validFrom, validUntil, redemptions.get(),
+                maxRedemptions == UNLIMITED ? "unlimited" : String.valueOf(maxRedemptions),
+                maxPerCustomer == UNLIMITED ? "unlimited" : String.valueOf(maxPerCustomer));
+        }
+    }
+
+    /**
+     * Outcome of one redemption attempt
+     */
+    public static class Redemption {
+        private final RedemptionStatus status;
+        private final PromoCode promoCode;
+        private final String customerId;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Redemption(RedemptionStatus status, PromoCode promoCode, String customerId) {
+            this.status = status;
+            this.promoCode = promoCode;
+            this.customerId = customerId;
+        }
+
+        public boolean isSuccessful() { return status == RedemptionStatus.REDEEMED; }
+        public RedemptionStatus getStatus() { return status; }
+        public PromoCode getPromoCode() { return promoCode; }
+        public String getCustomerId() { return customerId; }
+
+        public BigDecimal getDiscountPercentage() {
+            return isSuccessful() ? promoCode.discountPercentage : BigDecimal.ZERO;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Redemption{code='%s', customer='%s', status=%s}",
+                promoCode != null ? promoCode.code : "?", customerId, status);
+        }
+    }
+}
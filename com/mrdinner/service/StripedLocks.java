@@ -0,0 +1,61 @@
+package com.mrdinner.service;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed pool of locks selected by key hash, so operations on the same key are
+ * serialized while operations on different keys mostly run in parallel
+ */
+class StripedLocks {
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    StripedLocks(int minimumStripes) {
+        if (minimumStripes <= 0) {
+            throw new IllegalArgumentException("Stripe count must be positive");
+        }
+        int stripes = Integer.highestOneBit(minimumStripes);
+        if (stripes < minimumStripes) {
+            stripes <<= 1;
+        }
+        this.locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.mask = stripes - 1;
+    }
+
+    ReentrantLock lockFor(String key) {
+        return locks[indexFor(key)];
+    }
+
+    /**
+     * Distinct locks covering all keys, in stripe order. Callers that acquire
+     * several stripes must take them in this order to stay deadlock-free.
+     */
+    List<ReentrantLock> locksFor(Collection<String> keys) {
+        BitSet stripes = new BitSet(locks.length);
+        for (String key : keys) {
+            stripes.set(indexFor(key));
+        }
+        List<ReentrantLock> result = new ArrayList<>(stripes.cardinality());
+        for (int i = stripes.nextSetBit(0); i >= 0; i = stripes.nextSetBit(i + 1)) {
+            result.add(locks[i]);
+        }
+        return result;
+    }
+
+    private int indexFor(String key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return hash & mask;
+    }
+
+    int stripeCount() {
+        return locks.length;
+    }
+}
@@ -0,0 +1,274 @@
+package com.mrdinner.service;
+
+import com.mrdinner.domain.common.Address;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable table of tax jurisdictions resolved from a delivery address.
+ * Zip code prefixes are stored in a digit trie and the longest matching
+ * prefix wins; an address whose zip code matches no prefix falls back to
+ * its state's rate, if one is defined.
+ *
+ * The trie is flattened into arrays, ten child slots per node, so a lookup
+ * is one array read per zip digit. A small direct-mapped cache of recent
+ * resolutions sits in front of it.
+ *
+ * Rates load from a text file with one jurisdiction per line:
+ * <pre>
+ * # zip prefix or state:CODE, rate, name
+ * state:NY, 0.04, New York State
+ * 100, 0.08875, New York City
+ * 9021, 0.095, Beverly Hills
+ * </pre>
+ */
+public final class TaxJurisdictions {
+    private static final int NO_NODE = 0;
+    private static final int NO_JURISDICTION = -1;
+    private static final int CACHE_SIZE = 1024;
+    private static final TaxJurisdictions EMPTY = new Builder().build();
+
+    private final int[] children;
+    private final int[] jurisdictionAt;
+    private final Jurisdiction[] jurisdictions;
+    private final Map<String, Jurisdiction> byState;
+    private final CacheEntry[] cache = new CacheEntry[CACHE_SIZE];
+
+    private TaxJurisdictions(int[] children, int[] jurisdictionAt, Jurisdiction[] jurisdictions,
+                             Map<String, Jurisdiction> byState) {
+        this.children = children;
+        this.jurisdictionAt = jurisdictionAt;
+        this.jurisdictions = jurisdictions;
+        this.byState = byState;
+    }
+
+    public static TaxJurisdictions empty() {
+        return EMPTY;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static TaxJurisdictions load(Path file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("Rate file cannot be null");
+        }
+        Builder builder = new Builder();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                int comment = line.indexOf('#');
+                String content = (comment >= 0 ? line.substring(0, comment) : line).trim();
+                if (content.isEmpty()) {
+                    continue;
+                }
+                String[] fields = content.split(",", 3);
+                if (fields.length < 2) {
+                    throw new IllegalArgumentException("Invalid tax rate line " + lineNumber + ": " + line);
+                }
+                String key = fields[0].trim();
+                String name = fields.length == 3 ? fields[2].trim() : key;
+                BigDecimal rate;
+                try {
+                    rate = new BigDecimal(fields[1].trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid tax rate on line " + lineNumber + ": " + fields[1], e);
+                }
+                try {
+                    if (key.regionMatches(true, 0, "state:", 0, 6)) {
+                        builder.addState(key.substring(6), rate, name);
+                    } else {
+                        builder.addZipPrefix(key, rate, name);
+                    }
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Invalid tax rate line " + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Jurisdiction for a delivery address, or null if neither its zip code
+     * nor its state has a rate
+     */
+    public Jurisdiction resolve(Address address) {
+        if (address == null) {
+            throw new IllegalArgumentException("Address cannot be null");
+        }
+        return resolve(address.getZipCode(), address.getState());
+    }
+
+    public Jurisdiction resolve(String zipCode, String state) {
+        int slot = (zipCode.hashCode() * 31 + (state != null ? state.hashCode() : 0)) & (CACHE_SIZE - 1);
+        CacheEntry entry = cache[slot];
+        if (entry != null && entry.matches(zipCode, state)) {
+            return entry.jurisdiction;
+        }
+        Jurisdiction jurisdiction = lookup(zipCode, state);
+        // Entries are immutable, so a racing overwrite only costs a later miss
+        cache[slot] = new CacheEntry(zipCode, state, jurisdiction);
+        return jurisdiction;
+    }
+
+    public int getZipPrefixCount() {
+        int count = 0;
+        for (int index : jurisdictionAt) {
+            if (index != NO_JURISDICTION) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int getStateCount() {
+        return byState.size();
+    }
+
+    private Jurisdiction lookup(String zipCode, String state) {
+        int node = 0;
+        int best = jurisdictionAt[0];
+        for (int i = 0; i < zipCode.length(); i++) {
+            int digit = zipCode.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                // ZIP+4 separator or other trailing text
+                break;
+            }
+            node = children[node * 10 + digit];
+            if (node == NO_NODE) {
+                break;
+            }
+            if (jurisdictionAt[node] != NO_JURISDICTION) {
+                best = jurisdictionAt[node];
+            }
+        }
+        if (best != NO_JURISDICTION) {
+            return jurisdictions[best];
+        }
+        return state != null ? byState.get(state.trim().toUpperCase()) : null;
+    }
+
+    /**
+     * A tax rate and the jurisdiction it belongs to
+     */
+    public static class Jurisdiction {
+        private final String name;
+        private final BigDecimal rate;
+
+        private Jurisdiction(String name, BigDecimal rate) {
+            this.name = name;
+            this.rate = rate;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public BigDecimal getRate() {
+            return rate;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Jurisdiction{name='%s', rate=%s}", name, rate);
+        }
+    }
+
+    /**
+     * Collects jurisdictions and builds the flattened trie
+     */
+    public static class Builder {
+        private int[] children = new int[10 * 64];
+        private int[] jurisdictionAt = new int[64];
+        private int nodeCount = 1;
+        private final List<Jurisdiction> jurisdictions = new ArrayList<>();
+        private final Map<String, Jurisdiction> byState = new HashMap<>();
+
+        private Builder() {
+            Arrays.fill(jurisdictionAt, NO_JURISDICTION);
+        }
+
+        public Builder addZipPrefix(String prefix, BigDecimal rate, String name) {
+            if (prefix == null || prefix.isEmpty()) {
+                throw new IllegalArgumentException("Zip prefix cannot be null or empty");
+            }
+            Jurisdiction jurisdiction = newJurisdiction(rate, name);
+            int node = 0;
+            for (int i = 0; i < prefix.length(); i++) {
+                int digit = prefix.charAt(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new IllegalArgumentException("Zip prefix must be digits: " + prefix);
+                }
+                int child = children[node * 10 + digit];
+                if (child == NO_NODE) {
+                    child = newNode();
+                    children[node * 10 + digit] = child;
+                }
+                node = child;
+            }
+            jurisdictionAt[node] = jurisdictions.size();
+            jurisdictions.add(jurisdiction);
+            return this;
+        }
+
+        public Builder addState(String state, BigDecimal rate, String name) {
+            if (state == null || state.trim().isEmpty()) {
+                throw new IllegalArgumentException("State cannot be null or empty");
+            }
+            byState.put(state.trim().toUpperCase(), newJurisdiction(rate, name));
+            return this;
+        }
+
+        public TaxJurisdictions build() {
+            return new TaxJurisdictions(Arrays.copyOf(children, nodeCount * 10),
+                Arrays.copyOf(jurisdictionAt, nodeCount),
+                jurisdictions.toArray(new Jurisdiction[0]), new HashMap<>(byState));
+        }
+
+        private int newNode() {
+            if (nodeCount == jurisdictionAt.length) {
+                int capacity = nodeCount * 2;
+                children = Arrays.copyOf(children, capacity * 10);
+                jurisdictionAt = Arrays.copyOf(jurisdictionAt, capacity);
+                Arrays.fill(jurisdictionAt, nodeCount, capacity, NO_JURISDICTION);
+            }
+            return nodeCount++;
+        }
+
+        private static Jurisdiction newJurisdiction(BigDecimal rate, String name) {
+            if (rate == null || rate.signum() < 0 || rate.compareTo(BigDecimal.ONE) > 0) {
+                throw new IllegalArgumentException("Tax rate must be between 0 and 1");
+            }
+            return new Jurisdiction(name != null ? name : "", rate);
+        }
+    }
+
+    private static final class CacheEntry {
+        private final String zipCode;
+        private final String state;
+        private final Jurisdiction jurisdiction;
+
+        private CacheEntry(String zipCode, String state, Jurisdiction jurisdiction) {
+            this.zipCode = zipCode;
+            this.state = state;
+            this.jurisdiction = jurisdiction;
+        }
+
+        private boolean matches(String otherZip, String otherState) {
+            return (zipCode == otherZip || zipCode.equals(otherZip))
+                && (state == otherState || (state != null && state.equals(otherState)));
+        }
+    }
+}